@@ -0,0 +1,117 @@
+package bench;
+
+import java.time.LocalDate;
+import java.util.Random;
+import parking.service.*;
+import parking.util.LotConfig;
+import parking.util.TimeUtils;
+
+/**
+ * Replays one demand trace through each allocation strategy and compares how well they pack the lot
+ *
+ * A request asks for a start slot and a length. It is served in full when the chosen spot's free
+ * run covers the length, shortened when the strategy falls back to a shorter run (the booking is
+ * then cut to that run, as the server does), and rejected when no spot is free at its start.
+ * Every strategy sees the same requests in the same order on an empty lot, so the rejection rate
+ * and the booked spot-hours are directly comparable.
+ *
+ * Usage: java bench.AllocationReplay -Dreplay.requests=2000 -Dreplay.spots=100 -Dreplay.seed=42
+ */
+public class AllocationReplay {
+    
+    private final int spotCount;
+    private final int[] startSlots;
+    private final int[] requestedSlots;
+    
+    public AllocationReplay(int spotCount, int requestCount, long seed) {
+        this.spotCount = spotCount;
+        this.startSlots = new int[requestCount];
+        this.requestedSlots = new int[requestCount];
+        
+        // Starts between 06:00 and 20:00; mostly short stays, with a tail of long ones
+        Random random = new Random(seed);
+        for (int i = 0; i < requestCount; i++) {
+            startSlots[i] = 24 + random.nextInt(57);
+            int mix = random.nextInt(10);
+            if (mix < 5) {
+                requestedSlots[i] = 1 + random.nextInt(4);
+            } else if (mix < 8) {
+                requestedSlots[i] = 5 + random.nextInt(4);
+            } else {
+                requestedSlots[i] = 9 + random.nextInt(TimeUtils.MAX_SLOTS_PER_BOOKING - 8);
+            }
+        }
+    }
+    
+    /**
+     * Outcome of one strategy on the trace
+     */
+    public static class Result {
+        int served;
+        int shortened;
+        int rejected;
+        long bookedSlots;
+        
+        public double getRejectedRate(int requests) { return requests == 0 ? 0 : 100.0 * rejected / requests; }
+        public double getShortenedRate(int requests) { return requests == 0 ? 0 : 100.0 * shortened / requests; }
+        public double getSpotHours() { return bookedSlots * TimeUtils.HOURS_PER_SLOT; }
+    }
+    
+    /**
+     * Replay the trace on an empty lot with the given strategy
+     */
+    public Result replay(AllocationStrategy strategy) {
+        LocalDate date = LocalDate.now();
+        OccupancyState occupancy = new OccupancyState(spotCount);
+        SpotCandidates candidates = new SpotCandidates(spotCount);
+        Result result = new Result();
+        
+        for (int i = 0; i < startSlots.length; i++) {
+            int fromSlot = startSlots[i];
+            int wanted = requestedSlots[i]; // Late bookings run past midnight like the lot's writer makes them
+            occupancy.collectFreeRuns(date, fromSlot, TimeUtils.MAX_SLOTS_PER_BOOKING, candidates);
+            long chosen = strategy.select(candidates, wanted);
+            
+            if (chosen == SpotCandidates.NONE) {
+                result.rejected++;
+                continue;
+            }
+            
+            int slots = Math.min(SpotCandidates.runLengthOf(chosen), wanted);
+            if (slots < wanted) {
+                result.shortened++;
+            } else {
+                result.served++;
+            }
+            occupancy.occupy(date, SpotCandidates.spotOf(chosen), fromSlot, fromSlot + slots);
+            result.bookedSlots += slots;
+        }
+        return result;
+    }
+    
+    /**
+     * Replay the trace with every built-in strategy and print the comparison
+     */
+    public void printComparison() {
+        int requests = startSlots.length;
+        System.out.printf("%d requests on %d spots%n", requests, spotCount);
+        System.out.printf("%-16s %10s %10s %12s %12s%n", "Strategy", "rejected", "shortened", "full", "spot-hours");
+        
+        for (AllocationStrategy.Builtin strategy : AllocationStrategy.Builtin.values()) {
+            Result result = replay(strategy);
+            System.out.printf("%-16s %9.1f%% %9.1f%% %12d %12.1f%n",
+                              strategy, result.getRejectedRate(requests), result.getShortenedRate(requests),
+                              result.served, result.getSpotHours());
+        }
+    }
+    
+    public static AllocationReplay fromSystemProperties() {
+        return new AllocationReplay(Integer.getInteger("replay.spots", LotConfig.DEFAULT_CAPACITY),
+                                    Integer.getInteger("replay.requests", 2000),
+                                    Long.getLong("replay.seed", 42));
+    }
+    
+    public static void main(String[] args) {
+        fromSystemProperties().printComparison();
+    }
+}
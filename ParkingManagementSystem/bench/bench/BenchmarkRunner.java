@@ -0,0 +1,131 @@
+package bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal micro-benchmark harness for the parking hot paths
+ * Runs warmup and measurement iterations, reports time and allocation per operation
+ */
+public class BenchmarkRunner {
+    
+    /**
+     * A single benchmarked operation - the returned value is consumed so the JIT cannot drop the work
+     */
+    @FunctionalInterface
+    public interface Operation {
+        Object run() throws Exception;
+    }
+    
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final int operationsPerIteration;
+    private final List<String> results = new ArrayList<>();
+    private long sink;
+    
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, int operationsPerIteration) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.operationsPerIteration = operationsPerIteration;
+    }
+    
+    /**
+     * Create a runner from -Dbench.warmup / -Dbench.iterations / -Dbench.ops
+     */
+    public static BenchmarkRunner fromSystemProperties() {
+        return new BenchmarkRunner(
+            Integer.getInteger("bench.warmup", 5),
+            Integer.getInteger("bench.iterations", 10),
+            Integer.getInteger("bench.ops", 1000)
+        );
+    }
+    
+    /**
+     * Benchmark an operation with the runner's default operation count
+     *
+     * @return the bytes allocated per operation, or NaN if the benchmark failed
+     */
+    public double run(String name, Operation operation) {
+        return run(name, operationsPerIteration, operation);
+    }
+    
+    /**
+     * Benchmark an operation, using a custom number of operations per iteration
+     * (DB-bound operations need far fewer than in-memory ones)
+     *
+     * @return the bytes allocated per operation, or NaN if the benchmark failed
+     */
+    public double run(String name, int opsPerIteration, Operation operation) {
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                runIteration(operation, opsPerIteration);
+            }
+            
+            double[] nanosPerOp = new double[measurementIterations];
+            long allocatedBytes = 0;
+            
+            for (int i = 0; i < measurementIterations; i++) {
+                long allocBefore = THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long elapsed = runIteration(operation, opsPerIteration);
+                allocatedBytes += THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocBefore;
+                nanosPerOp[i] = (double) elapsed / opsPerIteration;
+            }
+            
+            Arrays.sort(nanosPerOp);
+            double mean = Arrays.stream(nanosPerOp).average().orElse(0);
+            double bytesPerOp = (double) allocatedBytes / ((long) measurementIterations * opsPerIteration);
+            
+            String line = String.format("%-55s %14.1f ns/op  (min %.1f, median %.1f, max %.1f)  %10.1f B/op",
+                                        name, mean, nanosPerOp[0], nanosPerOp[nanosPerOp.length / 2],
+                                        nanosPerOp[nanosPerOp.length - 1], bytesPerOp);
+            System.out.println(line);
+            results.add(String.format("%s,%.1f,%.1f,%.1f", name, mean, nanosPerOp[nanosPerOp.length / 2], bytesPerOp));
+            return bytesPerOp;
+            
+        } catch (Exception e) {
+            System.err.println("Benchmark " + name + " failed: " + e.getMessage());
+            return Double.NaN;
+        }
+    }
+    
+    private long runIteration(Operation operation, int ops) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            Object result = operation.run();
+            sink += result != null ? result.hashCode() : 0;
+        }
+        return System.nanoTime() - start;
+    }
+    
+    /**
+     * Append results as CSV to -Dbench.csv, tagged with -Dbench.label (e.g. the commit id)
+     */
+    public void writeCsv() {
+        String path = System.getProperty("bench.csv");
+        if (path == null) {
+            return;
+        }
+        
+        String label = System.getProperty("bench.label", "unlabeled");
+        try (PrintWriter out = new PrintWriter(new FileWriter(path, true))) {
+            for (String result : results) {
+                out.println(LocalDateTime.now() + "," + label + "," + result);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write benchmark results: " + e.getMessage());
+        }
+        
+        if (sink == 42) {
+            System.out.println(); // Keeps the sink observable
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package bench;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import client.ParkingClient;
+import common.*;
+import parking.util.LatencyHistogram;
+
+/**
+ * Multi-client load generator for reproducing the morning gate rush against a running ParkingServer
+ *
+ * Arrivals are open-loop: each request type has its own Poisson arrival process at the target
+ * rate, independent of how fast the server answers. Latency is measured from the scheduled
+ * arrival time, so time spent waiting for a free simulated client counts against the server
+ * (no coordinated omission).
+ *
+ * Usage: java bench.LoadGenerator [host] [port]
+ *        -Dload.clients=200 -Dload.seconds=60 -Dload.lots=1,2   (clients are spread across the lots)
+ *        -Dload.mix=PARK_NOW:5,CHECK_AVAILABILITY:50,PREBOOKING:10,GET_SUMMARY:30   (requests/second)
+ */
+public class LoadGenerator {
+    
+    private static final String DEFAULT_MIX = "PARK_NOW:5,CHECK_AVAILABILITY:50,PREBOOKING:10,GET_SUMMARY:30";
+    
+    private final String host;
+    private final int port;
+    private final Map<ParkingRequestType, Double> ratesPerSecond;
+    private final BlockingQueue<ParkingClient> idleClients = new LinkedBlockingQueue<>();
+    private final List<ParkingClient> clients = new ArrayList<>();
+    private final ExecutorService workers;
+    
+    private final Map<ParkingRequestType, LatencyHistogram> latencies = new EnumMap<>(ParkingRequestType.class);
+    private final Map<ParkingRequestType, AtomicLong> succeeded = new EnumMap<>(ParkingRequestType.class);
+    private final Map<ParkingRequestType, AtomicLong> rejected = new EnumMap<>(ParkingRequestType.class);
+    private final Map<ParkingRequestType, AtomicLong> errors = new EnumMap<>(ParkingRequestType.class);
+    private final AtomicLong customerSequence = new AtomicLong();
+    
+    private volatile boolean running;
+    
+    public LoadGenerator(String host, int port, int clientCount, Map<ParkingRequestType, Double> ratesPerSecond) {
+        this.host = host;
+        this.port = port;
+        this.ratesPerSecond = ratesPerSecond;
+        this.workers = Executors.newFixedThreadPool(clientCount);
+        
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            latencies.put(type, new LatencyHistogram());
+            succeeded.put(type, new AtomicLong());
+            rejected.put(type, new AtomicLong());
+            errors.put(type, new AtomicLong());
+        }
+    }
+    
+    /**
+     * Open the simulated client connections
+     */
+    public void connect(int clientCount) throws IOException {
+        ParkingClientUI silentUI = new SilentClientUI();
+        String[] lotIds = System.getProperty("load.lots", String.valueOf(ParkingRequest.DEFAULT_LOT_ID)).split(",");
+        for (int i = 0; i < clientCount; i++) {
+            ParkingClient client = new ParkingClient(host, port, silentUI);
+            client.setLotId(Integer.parseInt(lotIds[i % lotIds.length].trim()));
+            clients.add(client);
+            idleClients.add(client);
+        }
+        System.out.println("Opened " + clientCount + " client connections to " + host + ":" + port);
+    }
+    
+    /**
+     * Drive the configured request mix for the given duration, then wait for outstanding requests
+     */
+    public void run(long durationSeconds) throws InterruptedException {
+        running = true;
+        long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        
+        List<Thread> arrivalThreads = new ArrayList<>();
+        for (Map.Entry<ParkingRequestType, Double> entry : ratesPerSecond.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            Thread thread = new Thread(() -> generateArrivals(entry.getKey(), entry.getValue(), endNanos),
+                                       "arrivals-" + entry.getKey());
+            thread.start();
+            arrivalThreads.add(thread);
+        }
+        
+        long nextReport = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < endNanos) {
+            Thread.sleep(200);
+            if (System.nanoTime() >= nextReport) {
+                printReport("Interim");
+                nextReport += TimeUnit.SECONDS.toNanos(10);
+            }
+        }
+        
+        running = false;
+        for (Thread thread : arrivalThreads) {
+            thread.join();
+        }
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Poisson arrival process for one request type
+     */
+    private void generateArrivals(ParkingRequestType type, double ratePerSecond, long endNanos) {
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long nextArrival = System.nanoTime();
+        
+        while (running && nextArrival < endNanos) {
+            long wait = nextArrival - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            
+            final long scheduledAt = nextArrival;
+            workers.execute(() -> executeRequest(type, scheduledAt));
+            
+            double gap = -Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos;
+            nextArrival += (long) gap;
+        }
+    }
+    
+    private void executeRequest(ParkingRequestType type, long scheduledAt) {
+        ParkingClient client = null;
+        try {
+            client = idleClients.take();
+            ParkingResponse response = send(client, type);
+            latencies.get(type).recordNanos(System.nanoTime() - scheduledAt);
+            
+            if (response == null || isError(response)) {
+                errors.get(type).incrementAndGet();
+            } else if (response.isSuccess()) {
+                succeeded.get(type).incrementAndGet();
+            } else {
+                rejected.get(type).incrementAndGet();
+            }
+            
+        } catch (Exception e) {
+            errors.get(type).incrementAndGet();
+        } finally {
+            if (client != null) {
+                idleClients.add(client);
+            }
+        }
+    }
+    
+    private ParkingResponse send(ParkingClient client, ParkingRequestType type) {
+        switch (type) {
+            case PARK_NOW:
+                return client.parkNow(nextCustomerId());
+            case CHECK_AVAILABILITY:
+                return client.checkAvailability();
+            case PREBOOKING:
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                LocalDate date = LocalDate.now().plusDays(1 + random.nextInt(7));
+                LocalTime start = LocalTime.of(6, 0).plusMinutes(15L * random.nextInt(56)); // 06:00 - 19:45
+                return client.preBook(nextCustomerId(), date, start);
+            case GET_SUMMARY:
+                return client.getSummary();
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Client timeouts and server exceptions count as errors; "no spot available" is a normal rejection
+     */
+    private static boolean isError(ParkingResponse response) {
+        String message = response.getMessage();
+        return !response.isSuccess() && message != null &&
+               (message.startsWith("Client error") || message.startsWith("Server error"));
+    }
+    
+    private String nextCustomerId() {
+        return "LOAD" + customerSequence.incrementAndGet();
+    }
+    
+    /**
+     * Print per-request-type counts and latency percentiles
+     */
+    public void printReport(String title) {
+        System.out.println("\n=== " + title + " load report ===");
+        System.out.printf("%-20s %8s %8s %8s %8s %10s %10s %10s %10s%n",
+                          "Request type", "total", "ok", "rejected", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            LatencyHistogram histogram = latencies.get(type);
+            long ok = succeeded.get(type).get();
+            long rej = rejected.get(type).get();
+            long err = errors.get(type).get();
+            System.out.printf("%-20s %8d %8d %8d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                              type, ok + rej + err, ok, rej, err,
+                              histogram.getPercentileMillis(50), histogram.getPercentileMillis(99),
+                              histogram.getPercentileMillis(99.9), histogram.getMaxMicros() / 1000.0);
+        }
+    }
+    
+    /**
+     * Close all simulated client connections
+     */
+    public void disconnect() {
+        for (ParkingClient client : clients) {
+            try {
+                client.closeConnection();
+            } catch (IOException e) {
+                // Ignore exception on close
+            }
+        }
+    }
+    
+    /**
+     * Parse a mix such as "PARK_NOW:5,GET_SUMMARY:30" into request rates per second
+     */
+    static Map<ParkingRequestType, Double> parseMix(String mix) {
+        Map<ParkingRequestType, Double> rates = new EnumMap<>(ParkingRequestType.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length == 2) {
+                rates.put(ParkingRequestType.valueOf(pair[0].trim().toUpperCase()), Double.parseDouble(pair[1].trim()));
+            }
+        }
+        return rates;
+    }
+    
+    /**
+     * Client UI that discards all output - hundreds of clients would flood the console
+     */
+    private static class SilentClientUI implements ParkingClientUI {
+        public void display(String message) { }
+        public void displayParkingResponse(ParkingResponse response) { }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5555;
+        int clientCount = Integer.getInteger("load.clients", 200);
+        long seconds = Long.getLong("load.seconds", 60);
+        Map<ParkingRequestType, Double> mix = parseMix(System.getProperty("load.mix", DEFAULT_MIX));
+        
+        System.out.println("Load mix (requests/second): " + mix);
+        
+        LoadGenerator generator = new LoadGenerator(host, port, clientCount, mix);
+        try {
+            generator.connect(clientCount);
+            generator.run(seconds);
+            generator.printReport("Final");
+        } finally {
+            generator.disconnect();
+        }
+    }
+}
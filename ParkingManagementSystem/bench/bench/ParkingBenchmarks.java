@@ -0,0 +1,216 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+import common.*;
+import parking.model.*;
+import parking.service.*;
+import parking.util.*;
+
+/**
+ * Benchmarks for the parking hot paths
+ *
+ * In-memory benchmarks always run. DB-bound benchmarks are opt-in: they run only
+ * against the scratch schema given by -Dbench.db.url, which must already have the
+ * parking tables and availability rows (e.g. run the server against it once). They
+ * refuse to run against parking_db.
+ *
+ * The spot selection benchmarks must not allocate: the run exits with status 1 if one does.
+ * The allocation strategy replay (see AllocationReplay) takes the -Dreplay.* properties.
+ *
+ * Usage: java -cp bin:lib/* bench.ParkingBenchmarks
+ *        [-Dbench.csv=results.csv -Dbench.label=$(git rev-parse --short HEAD)
+ *         -Dbench.db.url=jdbc:mysql://localhost:3306/parking_bench?serverTimezone=UTC]
+ */
+public class ParkingBenchmarks {
+    
+    private static boolean allocationRegression;
+    
+    public static void main(String[] args) {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        
+        System.out.println("=== TimeUtils ===");
+        runTimeUtilsBenchmarks(runner);
+        
+        System.out.println("\n=== ParkingResponse serialization ===");
+        runSerializationBenchmarks(runner);
+        
+        System.out.println("\n=== Spot selection (allocation-free) ===");
+        runSpotSelectionBenchmarks(runner);
+        
+        System.out.println("\n=== Time frames ===");
+        runTimeFrameBenchmarks(runner);
+        
+        System.out.println("\n=== Allocation strategies (replay) ===");
+        AllocationReplay.fromSystemProperties().printComparison();
+        
+        String dbUrl = System.getProperty("bench.db.url");
+        if (dbUrl != null && !dbUrl.isBlank()) {
+            System.out.println("\n=== Database-bound services ===");
+            runDatabaseBenchmarks(runner, dbUrl);
+        }
+        
+        runner.writeCsv();
+        
+        if (allocationRegression) {
+            System.exit(1);
+        }
+    }
+    
+    private static void runTimeUtilsBenchmarks(BenchmarkRunner runner) {
+        LocalTime start = LocalTime.of(9, 37);
+        LocalTime end = LocalTime.of(13, 0);
+        
+        runner.run("TimeUtils.roundToNearestSlot", () -> TimeUtils.roundToNearestSlot(start));
+        runner.run("TimeUtils.roundUpToNextSlot", () -> TimeUtils.roundUpToNextSlot(start));
+        runner.run("TimeUtils.calculateSlotsBetween", () -> TimeUtils.calculateSlotsBetween(start, end));
+        runner.run("TimeUtils.generateDayTimeSlots", TimeUtils::generateDayTimeSlots);
+        runner.run("TimeUtils.generateTimeSlotsBetween", () -> TimeUtils.generateTimeSlotsBetween(start, end));
+        runner.run("TimeUtils.formatTimeSlot", () -> TimeUtils.formatTimeSlot(end));
+        runner.run("TimeUtils.isValidBookingTime",
+                   () -> TimeUtils.isValidBookingTime(LocalDate.now().plusDays(1), LocalTime.of(9, 0), end));
+    }
+    
+    private static void runSerializationBenchmarks(BenchmarkRunner runner) {
+        LocalTime now = TimeUtils.getCurrentTimeSlot();
+        
+        ParkingResponse confirmation = new ParkingResponse(true, "Parking confirmed",
+            new ParkingConfirmation(42, "CUST001", LocalDate.now(), now, now.plusHours(4), 4.0));
+        ParkingResponse spot = new ParkingResponse(true, "Best spot: #42 available for 4.0 hours",
+            new CurrentSpotAvailability(42, 4.0, now, now.plusHours(4)));
+        ParkingResponse summary = new ParkingResponse(true, "Summary retrieved",
+            new ParkingAvailabilitySummary(100, 37, 63, now));
+        
+        runner.run("ParkingResponse(confirmation) round trip", () -> roundTrip(confirmation));
+        runner.run("ParkingResponse(spot) round trip", () -> roundTrip(spot));
+        runner.run("ParkingResponse(summary) round trip", () -> roundTrip(summary));
+        runner.run("ParkingResponse(summary) serialized size", () -> serialize(summary).length);
+    }
+    
+    private static void runSpotSelectionBenchmarks(BenchmarkRunner runner) {
+        // Free slots per spot from slot 36 (09:00), as the availability query returns them
+        int[] freeSlots = new int[LotConfig.DEFAULT_CAPACITY];
+        Random random = new Random(42);
+        for (int i = 0; i < freeSlots.length; i++) {
+            freeSlots[i] = 1 + random.nextInt(TimeUtils.MAX_SLOTS_PER_BOOKING);
+        }
+        
+        LocalDate today = LocalDate.now();
+        int fromSlot = 36;
+        OccupancyState occupancy = new OccupancyState(freeSlots.length);
+        for (int spot = 1; spot <= freeSlots.length; spot++) {
+            occupancy.occupy(today, spot, fromSlot + freeSlots[spot - 1], OccupancyState.SLOTS_PER_DAY);
+        }
+        AvailabilityView view = occupancy.publishView(null);
+        SpotCandidates candidates = new SpotCandidates(freeSlots.length);
+        
+        // Spot numbers are below 128, so returning them does not allocate a boxed Integer
+        requireAllocationFree("SpotCandidates fill + selectLongest (100 spots)", runner.run(
+            "SpotCandidates fill + selectLongest (100 spots)", () -> {
+                candidates.clear();
+                for (int i = 0; i < freeSlots.length; i++) {
+                    candidates.add(i + 1, fromSlot, freeSlots[i]);
+                }
+                return SpotCandidates.spotOf(candidates.selectLongest());
+            }));
+        requireAllocationFree("OccupancyState.findLongestFreeSpot", runner.run(
+            "OccupancyState.findLongestFreeSpot",
+            () -> occupancy.findLongestFreeSpot(today, fromSlot, TimeUtils.MAX_SLOTS_PER_BOOKING)));
+        requireAllocationFree("AvailabilityView.findLongestFreeSpot", runner.run(
+            "AvailabilityView.findLongestFreeSpot",
+            () -> view.findLongestFreeSpot(today, fromSlot, TimeUtils.MAX_SLOTS_PER_BOOKING)));
+        requireAllocationFree("AvailabilityView.collectFreeRuns + BEST_FIT", runner.run(
+            "AvailabilityView.collectFreeRuns + BEST_FIT", () -> {
+                view.collectFreeRuns(today, fromSlot, TimeUtils.MAX_SLOTS_PER_BOOKING, candidates);
+                return SpotCandidates.spotOf(AllocationStrategy.Builtin.BEST_FIT.select(candidates, 6));
+            }));
+    }
+    
+    private static void runTimeFrameBenchmarks(BenchmarkRunner runner) {
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        OccupancyState occupancy = new OccupancyState(LotConfig.DEFAULT_CAPACITY);
+        Random random = new Random(42);
+        for (int spot = 1; spot <= occupancy.getSpotCount(); spot++) {
+            int from = random.nextInt(OccupancyState.SLOTS_PER_DAY - TimeUtils.MAX_SLOTS_PER_BOOKING);
+            occupancy.occupy(tomorrow, spot, from, from + 1 + random.nextInt(TimeUtils.MAX_SLOTS_PER_BOOKING));
+        }
+        
+        // Two views of the date that differ by one 2-hour booking at 12:00
+        AvailabilityView before = occupancy.publishView(null);
+        occupancy.occupy(tomorrow, 1, 48, 56);
+        AvailabilityView after = occupancy.publishView(before);
+        ParkingAvailabilityService service = new ParkingAvailabilityService(null);
+        service.getAvailableTimeFrames(after, tomorrow);
+        
+        runner.run("ParkingAvailabilityService.getAvailableTimeFrames (cached)",
+                   () -> service.getAvailableTimeFrames(after, tomorrow));
+        boolean[] flip = new boolean[1];
+        runner.run("ParkingAvailabilityService.getAvailableTimeFrames (after one booking)", () -> {
+            flip[0] = !flip[0];
+            return service.getAvailableTimeFrames(flip[0] ? before : after, tomorrow);
+        });
+        runner.run("ParkingAvailabilityService.getAvailableTimeFrames (full day)",
+                   () -> new ParkingAvailabilityService(null).getAvailableTimeFrames(after, tomorrow));
+    }
+    
+    private static void requireAllocationFree(String name, double bytesPerOp) {
+        if (!(bytesPerOp < 1.0)) {
+            System.out.printf("  ✗ %s allocates %.1f B/op on the hot path%n", name, bytesPerOp);
+            allocationRegression = true;
+        }
+    }
+    
+    private static void runDatabaseBenchmarks(BenchmarkRunner runner, String url) {
+        if (url.contains("/parking_db")) {
+            System.out.println("Skipping database benchmarks - -Dbench.db.url must be a scratch schema, not parking_db");
+            return;
+        }
+        
+        Connection connection;
+        try {
+            connection = MySQLConnectionAdapter.openConnection(url);
+        } catch (Exception e) {
+            System.out.println("Skipping database benchmarks - no database: " + e.getMessage());
+            return;
+        }
+        
+        ParkNowService parkNowService = new ParkNowService(connection);
+        ParkingSpotAssigner spotAssigner = new ParkingSpotAssigner(connection);
+        ParkingAvailabilityService availabilityService = new ParkingAvailabilityService(connection);
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        
+        runner.run("ParkNowService.checkAvailableNow", 50, parkNowService::checkAvailableNow);
+        runner.run("ParkNowService.getCurrentAvailabilitySummary", 50,
+                   parkNowService::getCurrentAvailabilitySummary);
+        runner.run("ParkingSpotAssigner.assignOptimalSpot", 50,
+                   () -> spotAssigner.assignOptimalSpot(tomorrow, LocalTime.of(9, 0)));
+        runner.run("ParkingAvailabilityService.getAvailableTimeFrames", 1,
+                   () -> availabilityService.getAvailableTimeFrames(tomorrow));
+        
+        try {
+            connection.close();
+        } catch (Exception e) {
+            System.err.println("Error closing benchmark connection: " + e.getMessage());
+        }
+    }
+    
+    private static Object roundTrip(ParkingResponse response) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(response)))) {
+            return in.readObject();
+        }
+    }
+    
+    private static byte[] serialize(Object message) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,359 @@
+package bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import parking.model.*;
+import parking.service.*;
+import parking.util.*;
+
+/**
+ * Query-plan regression harness for the service queries
+ *
+ * Loads a synthetic availability history into the scratch schema given by -Dplan.url, runs the
+ * real service methods through InstrumentedConnection to capture every distinct statement with its
+ * bound parameters, then EXPLAINs each statement. A plan that scans a whole table (type ALL) or
+ * sorts with a filesort fails the run, unless the statement is on the allowlist below.
+ *
+ * Latency of every statement is recorded at each data volume (by default 1, 30 and 365 days).
+ * The active -Dparking.schema.mode is the one tested.
+ *
+ * The scratch schema must already have the parking tables (e.g. run the server against it once).
+ * The harness refuses to run without -Dplan.url or against parking_db. Afterwards it removes
+ * what it added: the days of availability rows it created, its PLAN-HARNESS orders (cancelled
+ * through BookingPersister, so the slots they took are given back) and the plan_numbers table.
+ *
+ * Usage: java -cp bin:lib/* -Dplan.url=jdbc:mysql://localhost:3306/parking_plan?serverTimezone=UTC
+ *        bench.QueryPlanHarness [-Dplan.days=1,30,365 -Dplan.iterations=20 -Dplan.occupancy=0.4]
+ * Exits with status 1 when a plan regressed.
+ */
+public class QueryPlanHarness {
+    
+    // Statements allowed to sort, keyed by a fragment of their SQL
+    private static final Map<String, String> ALLOWED_FILESORT = Map.of();
+    
+    // Statements allowed to scan a whole table, keyed by a fragment of their SQL
+    private static final Map<String, String> ALLOWED_FULL_SCAN = Map.of();
+    
+    private static final String HARNESS_CUSTOMER = "PLAN-HARNESS";
+    
+    private final Connection connection;
+    private final SlotSchema schema = SlotSchema.current();
+    private final int iterations;
+    private final double occupancy;
+    
+    private final Map<String, CapturedQuery> captured = new LinkedHashMap<>();
+    private final Set<LocalDate> createdDays = new TreeSet<>(); // Days with no rows before the harness
+    private String currentLabel;
+    
+    public QueryPlanHarness(Connection connection, int iterations, double occupancy) {
+        this.connection = connection;
+        this.iterations = iterations;
+        this.occupancy = occupancy;
+    }
+    
+    public static void main(String[] args) {
+        String url = System.getProperty("plan.url");
+        if (url == null || url.isBlank() || url.contains("/parking_db")) {
+            System.err.println("Set -Dplan.url to a scratch schema with the parking tables, e.g. "
+                               + "jdbc:mysql://localhost:3306/parking_plan?serverTimezone=UTC - the harness writes synthetic rows");
+            System.exit(2);
+        }
+        
+        int violations = 0;
+        try (Connection connection = MySQLConnectionAdapter.openConnection(url)) {
+            QueryPlanHarness harness = new QueryPlanHarness(
+                connection,
+                Integer.getInteger("plan.iterations", 20),
+                Double.parseDouble(System.getProperty("plan.occupancy", "0.4")));
+            
+            try {
+                harness.checkTables();
+                harness.prepareNumbers();
+                for (String days : System.getProperty("plan.days", "1,30,365").split(",")) {
+                    violations += harness.runLevel(Integer.parseInt(days.trim()));
+                }
+            } finally {
+                harness.cleanUp();
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Query plan harness failed: " + e.getMessage());
+            e.printStackTrace();
+            violations++;
+        }
+        
+        System.out.println(violations == 0 ? "\n✓ All query plans OK" : "\n✗ " + violations + " query plan regression(s)");
+        System.exit(violations == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Load the given number of days of history, then check plans and latencies
+     *
+     * @return the number of plan violations
+     */
+    public int runLevel(int days) throws SQLException {
+        System.out.printf("%n=== %d day(s) of data (schema %s) ===%n", days, schema.getMode());
+        
+        long start = System.nanoTime();
+        loadDays(LocalDate.now().minusDays(days - 1), LocalDate.now().plusDays(1));
+        System.out.printf("Data loaded in %.1fs%n", (System.nanoTime() - start) / 1e9);
+        
+        captured.clear();
+        captureServiceQueries();
+        
+        int violations = 0;
+        System.out.println("\nPlans:");
+        for (CapturedQuery query : captured.values()) {
+            violations += explain(query);
+        }
+        
+        System.out.println("\nLatency:");
+        for (CapturedQuery query : captured.values()) {
+            System.out.printf("  %-55s %s%n", query.label, query.latency.getFormattedSummary());
+        }
+        return violations;
+    }
+    
+    /**
+     * Run every service method against the data, recording each distinct statement
+     */
+    private void captureServiceQueries() throws SQLException {
+        Connection instrumented = InstrumentedConnection.wrap(connection, this::recordQuery);
+        ParkNowService parkNowService = new ParkNowService(instrumented);
+        ParkingSpotAssigner spotAssigner = new ParkingSpotAssigner(instrumented);
+        ParkingAvailabilityService availabilityService = new ParkingAvailabilityService(instrumented);
+        LocalDate today = LocalDate.now();
+        
+        for (int i = 0; i < iterations; i++) {
+            currentLabel = "ParkNowService.checkAvailableNow";
+            parkNowService.checkAvailableNow();
+            
+            currentLabel = "ParkNowService.getCurrentAvailabilitySummary";
+            parkNowService.getCurrentAvailabilitySummary();
+            
+            currentLabel = "ParkingSpotAssigner.assignOptimalSpot";
+            spotAssigner.assignOptimalSpot(today, LocalTime.of(10, 0));
+            
+            currentLabel = "OccupancyState.loadFromDatabase";
+            new OccupancyState(100).loadFromDatabase(instrumented, today, today.plusDays(1));
+        }
+        
+        // One pass only - it issues two statements per time slot
+        currentLabel = "ParkingAvailabilityService.getAvailableTimeFrames";
+        availabilityService.getAvailableTimeFrames(today);
+        
+        // Write path - places one order in the scratch schema
+        currentLabel = "ParkNowService.parkNow";
+        ParkNowResult result = parkNowService.checkAvailableNow();
+        if (result.isAvailable()) {
+            parkNowService.parkNow(result.getAssignedSpot(), HARNESS_CUSTOMER);
+        }
+    }
+    
+    private void recordQuery(String sql, Object[] parameters, long elapsedNanos, boolean failed) {
+        CapturedQuery query = captured.get(sql);
+        if (query == null) {
+            int index = (int) captured.values().stream().filter(q -> q.label.startsWith(currentLabel)).count() + 1;
+            // The listener's array can be longer than the statement's placeholders
+            int placeholders = (int) sql.chars().filter(c -> c == '?').count();
+            query = new CapturedQuery(currentLabel + "#" + index, sql, Arrays.copyOf(parameters, placeholders));
+            captured.put(sql, query);
+        }
+        query.latency.recordNanos(elapsedNanos);
+    }
+    
+    /**
+     * EXPLAIN a captured statement with its first bound parameters
+     *
+     * @return the number of violations in its plan
+     */
+    private int explain(CapturedQuery query) throws SQLException {
+        int violations = 0;
+        String allowedSort = allowance(ALLOWED_FILESORT, query.sql);
+        String allowedScan = allowance(ALLOWED_FULL_SCAN, query.sql);
+        
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + query.sql)) {
+            for (int i = 0; i < query.parameters.length; i++) {
+                stmt.setObject(i + 1, query.parameters[i]);
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    String key = rs.getString("key");
+                    String extra = rs.getString("Extra");
+                    
+                    List<String> problems = new ArrayList<>();
+                    if ("ALL".equals(type) && allowedScan == null) {
+                        problems.add("FULL SCAN");
+                    }
+                    if (extra != null && extra.contains("Using filesort") && allowedSort == null) {
+                        problems.add("FILESORT");
+                    }
+                    violations += problems.size();
+                    
+                    System.out.printf("  %s %-55s table=%s type=%s key=%s rows=%d extra=%s%n",
+                                      problems.isEmpty() ? "ok  " : "FAIL", query.label, table, type, key,
+                                      rs.getLong("rows"), extra);
+                    if (!problems.isEmpty()) {
+                        System.out.println("       " + String.join(", ", problems) + ": "
+                                           + query.sql.trim().replaceAll("\\s+", " "));
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+    
+    private static String allowance(Map<String, String> allowlist, String sql) {
+        String normalized = sql.replaceAll("\\s+", " ");
+        for (Map.Entry<String, String> entry : allowlist.entrySet()) {
+            if (normalized.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+    
+    // Synthetic data
+    
+    /**
+     * Fail early if the scratch schema has no parking tables
+     */
+    private void checkTables() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeQuery(schema.sql("SELECT 1 FROM parking_orders, {spot_table}, {summary_table} LIMIT 1")).close();
+        } catch (SQLException e) {
+            throw new SQLException("Scratch schema has no parking tables (" + e.getMessage() + ")", e);
+        }
+    }
+    
+    /**
+     * Remove what the harness added - best effort, so a failure is reported but the rest still runs
+     */
+    private void cleanUp() {
+        try {
+            // Cancel first: the orders' slots may be on days that existed before the harness
+            BookingPersister persister = new BookingPersister(connection, 1);
+            LocalDate today = LocalDate.now();
+            int cancelled = 0;
+            for (ParkingOrder order; (order = persister.findOrder(HARNESS_CUSTOMER, today, null)) != null; cancelled++) {
+                persister.addCancel(order);
+                if (!persister.flush()) {
+                    throw new SQLException("Could not cancel " + HARNESS_CUSTOMER + " order " + order.getOrderId());
+                }
+            }
+            
+            try (PreparedStatement spots = connection.prepareStatement(schema.sql("DELETE FROM {spot_table} WHERE lot_id = 1 AND {day} = ?"));
+                 PreparedStatement summary = connection.prepareStatement(schema.sql("DELETE FROM {summary_table} WHERE lot_id = 1 AND {day} = ?"))) {
+                for (LocalDate date : createdDays) {
+                    schema.setDay(spots, 1, date);
+                    spots.executeUpdate();
+                    schema.setDay(summary, 1, date);
+                    summary.executeUpdate();
+                }
+            }
+            
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("DROP TABLE IF EXISTS plan_numbers");
+            }
+            System.out.printf("%nCleaned up: %d %s order(s), %d synthetic day(s), plan_numbers%n",
+                              cancelled, HARNESS_CUSTOMER, createdDays.size());
+            
+        } catch (SQLException e) {
+            System.err.println("Query plan harness clean-up failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Create a 0..9599 helper table: one row per (slot, spot) of a day
+     */
+    private void prepareNumbers() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS plan_numbers (n INT PRIMARY KEY)");
+            stmt.execute("SET SESSION cte_max_recursion_depth = 10000");
+            stmt.executeUpdate("""
+                INSERT IGNORE INTO plan_numbers
+                WITH RECURSIVE seq (n) AS (SELECT 0 UNION ALL SELECT n + 1 FROM seq WHERE n < 9599)
+                SELECT n FROM seq
+                """);
+        }
+    }
+    
+    /**
+     * Insert availability rows of lot 1 (100 spots) for every day in the range, keeping rows that already exist
+     */
+    private void loadDays(LocalDate from, LocalDate to) throws SQLException {
+        String slotExpression = schema.isSlotIndex() ? "n DIV 100" : "SEC_TO_TIME((n DIV 100) * 900)";
+        
+        String insertSpots = schema.sql("""
+            INSERT IGNORE INTO {spot_table} (lot_id, {day}, {slot}, parking_spot_number, is_occupied, reserved_by)
+            SELECT 1, ?, %s, (n MOD 100) + 1, occupied, IF(occupied, 'SYNTHETIC', NULL)
+            FROM (SELECT n, RAND() < ? AS occupied FROM plan_numbers) numbers
+            """.formatted(slotExpression));
+        
+        String insertSummary = schema.sql("""
+            INSERT IGNORE INTO {summary_table} (lot_id, {day}, {slot}, occupied_spots, free_spots)
+            SELECT lot_id, {day}, {slot}, SUM(is_occupied), 100 - SUM(is_occupied)
+            FROM {spot_table}
+            WHERE lot_id = 1
+              AND {day} = ?
+            GROUP BY lot_id, {day}, {slot}
+            """);
+        
+        String dayExists = schema.sql("SELECT 1 FROM {spot_table} WHERE lot_id = 1 AND {day} = ? LIMIT 1");
+        
+        try (PreparedStatement exists = connection.prepareStatement(dayExists);
+             PreparedStatement spots = connection.prepareStatement(insertSpots);
+             PreparedStatement summary = connection.prepareStatement(insertSummary)) {
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                schema.setDay(exists, 1, date);
+                try (ResultSet rs = exists.executeQuery()) {
+                    if (!rs.next()) {
+                        createdDays.add(date);
+                    }
+                }
+                
+                schema.setDay(spots, 1, date);
+                spots.setDouble(2, occupancy);
+                spots.executeUpdate();
+                
+                schema.setDay(summary, 1, date);
+                summary.executeUpdate();
+            }
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(schema.sql("ANALYZE TABLE {spot_table}, {summary_table}, parking_orders"));
+        }
+    }
+    
+    /**
+     * A distinct statement seen while running the services
+     */
+    private static class CapturedQuery {
+        final String label;
+        final String sql;
+        final Object[] parameters;
+        final LatencyHistogram latency = new LatencyHistogram();
+        
+        CapturedQuery(String label, String sql, Object[] parameters) {
+            this.label = label;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+}
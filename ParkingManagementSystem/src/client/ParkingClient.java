@@ -3,6 +3,10 @@ package client;
 import java.io.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import ocsf.client.*;
 import common.*;
 import parking.model.*;
@@ -15,6 +19,11 @@ public class ParkingClient extends AbstractClient {
     private ParkingClientUI clientUI;
     private ParkingResponse lastResponse;
     private boolean waitingForResponse;
+    private final ReentrantLock exchange = new ReentrantLock(); // One request on the wire at a time
+    private int lotId = Integer.getInteger("parking.lot", ParkingRequest.DEFAULT_LOT_ID);
+    private final Map<Integer, Long> seenVersions = new HashMap<>(); // Newest availability view seen per lot
+    private String unansweredBooking; // What the last booking without an answer asked for
+    private String unansweredKey;     // and its idempotency key, reused if the same booking is retried
     
     public ParkingClient(String host, int port, ParkingClientUI clientUI) throws IOException {
         super(host, port);
@@ -24,6 +33,12 @@ public class ParkingClient extends AbstractClient {
     }
     
     public void handleMessageFromServer(Object msg) {
+        if (msg instanceof SpotReassignmentNotice) {
+            // Unrequested - it must not be taken as the response a request is waiting for
+            clientUI.display(((SpotReassignmentNotice) msg).getMessage());
+            return;
+        }
+        
         if (msg instanceof ParkingResponse) {
             lastResponse = (ParkingResponse) msg;
             clientUI.displayParkingResponse(lastResponse);
@@ -39,6 +54,12 @@ public class ParkingClient extends AbstractClient {
         }
     }
     
+    /**
+     * Parking lot that the following requests are for
+     */
+    public int getLotId() { return lotId; }
+    public void setLotId(int lotId) { this.lotId = lotId; }
+    
     public void handleMessageFromClientUI(String message) {
         try {
             sendToServer(message);
@@ -54,10 +75,10 @@ public class ParkingClient extends AbstractClient {
     public ParkingResponse parkNow(String customerId) {
         try {
             ParkingRequest request = new ParkingRequest(ParkingRequestType.PARK_NOW);
+            request.setLotId(lotId);
             request.setCustomerId(customerId);
             
-            sendRequestAndWait(request);
-            return lastResponse;
+            return sendRequestAndWait(request);
             
         } catch (Exception e) {
             clientUI.display("Error parking now: " + e.getMessage());
@@ -71,9 +92,9 @@ public class ParkingClient extends AbstractClient {
     public ParkingResponse checkAvailability() {
         try {
             ParkingRequest request = new ParkingRequest(ParkingRequestType.CHECK_AVAILABILITY);
+            request.setLotId(lotId);
             
-            sendRequestAndWait(request);
-            return lastResponse;
+            return sendRequestAndWait(request);
             
         } catch (Exception e) {
             clientUI.display("Error checking availability: " + e.getMessage());
@@ -82,17 +103,35 @@ public class ParkingClient extends AbstractClient {
     }
     
     /**
-     * Make a prebooking
+     * Make a prebooking for as long as possible (up to the maximum stay)
      */
     public ParkingResponse preBook(String customerId, LocalDate date, LocalTime startTime) {
+        return preBook(customerId, date, startTime, null);
+    }
+    
+    /**
+     * Make a prebooking until endTime - null books as long as possible
+     */
+    public ParkingResponse preBook(String customerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        return preBook(customerId, date, startTime, null, endTime);
+    }
+    
+    /**
+     * Make a prebooking until endTime on endDate, e.g. overnight - a null endDate means the end
+     * time is on date, or the next day if it is not after startTime
+     */
+    public ParkingResponse preBook(String customerId, LocalDate date, LocalTime startTime,
+                                   LocalDate endDate, LocalTime endTime) {
         try {
             ParkingRequest request = new ParkingRequest(ParkingRequestType.PREBOOKING);
+            request.setLotId(lotId);
             request.setCustomerId(customerId);
             request.setDate(date);
             request.setStartTime(startTime);
+            request.setEndTime(endTime);
+            request.setEndDate(endDate);
             
-            sendRequestAndWait(request);
-            return lastResponse;
+            return sendRequestAndWait(request);
             
         } catch (Exception e) {
             clientUI.display("Error prebooking: " + e.getMessage());
@@ -100,15 +139,34 @@ public class ParkingClient extends AbstractClient {
         }
     }
     
+    /**
+     * Cancel a booking - the customer's earliest booking on the date, or the one starting at startTime if given
+     */
+    public ParkingResponse cancelBooking(String customerId, LocalDate date, LocalTime startTime) {
+        try {
+            ParkingRequest request = new ParkingRequest(ParkingRequestType.CANCEL_BOOKING);
+            request.setLotId(lotId);
+            request.setCustomerId(customerId);
+            request.setDate(date);
+            request.setStartTime(startTime);
+            
+            return sendRequestAndWait(request);
+            
+        } catch (Exception e) {
+            clientUI.display("Error cancelling booking: " + e.getMessage());
+            return new ParkingResponse(false, "Client error: " + e.getMessage(), null);
+        }
+    }
+    
     /**
      * Get parking summary
      */
     public ParkingResponse getSummary() {
         try {
             ParkingRequest request = new ParkingRequest(ParkingRequestType.GET_SUMMARY);
+            request.setLotId(lotId);
             
-            sendRequestAndWait(request);
-            return lastResponse;
+            return sendRequestAndWait(request);
             
         } catch (Exception e) {
             clientUI.display("Error getting summary: " + e.getMessage());
@@ -116,17 +174,55 @@ public class ParkingClient extends AbstractClient {
         }
     }
     
+    /**
+     * Get the time frames of a date - the response data is a List of OptimalTimeFrame
+     */
+    public ParkingResponse getTimeFrames(LocalDate date) {
+        try {
+            ParkingRequest request = new ParkingRequest(ParkingRequestType.GET_TIME_FRAMES);
+            request.setLotId(lotId);
+            request.setDate(date);
+            
+            return sendRequestAndWait(request);
+            
+        } catch (Exception e) {
+            clientUI.display("Error getting time frames: " + e.getMessage());
+            return new ParkingResponse(false, "Client error: " + e.getMessage(), null);
+        }
+    }
+    
     /**
      * Send request and wait for response
+     *
+     * Replies carry no request id, so only one request may be outstanding: wait() releases the
+     * monitor, so the whole exchange is held under a separate lock and other threads queue on it.
      */
-    private void sendRequestAndWait(ParkingRequest request) throws IOException, InterruptedException {
+    private ParkingResponse sendRequestAndWait(ParkingRequest request) throws IOException, InterruptedException {
+        exchange.lockInterruptibly();
+        try {
+            return exchangeRequest(request);
+        } finally {
+            exchange.unlock();
+        }
+    }
+    
+    private ParkingResponse exchangeRequest(ParkingRequest request) throws IOException, InterruptedException {
         synchronized (this) {
-            waitingForResponse = true;
-            sendToServer(request);
+            String booking = describeBooking(request);
+            if (booking != null) {
+                // A retry of a booking that timed out must not book twice
+                request.setIdempotencyKey(booking.equals(unansweredBooking) ? unansweredKey : UUID.randomUUID().toString());
+                unansweredBooking = booking;
+                unansweredKey = request.getIdempotencyKey();
+            }
             
-            // Wait for response with timeout
+            // Wait for response with timeout - the server drops the request once we stop waiting
             long timeout = 10000; // 10 seconds
             long startTime = System.currentTimeMillis();
+            request.setDeadlineMillis(startTime + timeout);
+            
+            waitingForResponse = true;
+            sendToServer(request);
             
             while (waitingForResponse && (System.currentTimeMillis() - startTime) < timeout) {
                 wait(1000); // Wait 1 second at a time
@@ -135,6 +231,48 @@ public class ParkingClient extends AbstractClient {
             if (waitingForResponse) {
                 throw new IOException("Server response timeout");
             }
+            if (booking != null) {
+                unansweredBooking = null;
+                unansweredKey = null;
+            }
+            checkStaleness(request.getLotId(), lastResponse);
+            return lastResponse;
+        }
+    }
+    
+    /**
+     * Describe what a booking request asks for, so a retry can be recognized
+     *
+     * @return null if the request is not a booking
+     */
+    private static String describeBooking(ParkingRequest request) {
+        switch (request.getRequestType()) {
+            case PARK_NOW:
+            case PREBOOKING:
+            case CANCEL_BOOKING:
+                return String.join("|", request.getRequestType().name(), String.valueOf(request.getLotId()),
+                                   request.getCustomerId(), String.valueOf(request.getDate()),
+                                   String.valueOf(request.getStartTime()), String.valueOf(request.getEndDate()),
+                                   String.valueOf(request.getEndTime()));
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Warn when an answer comes from an older availability view than one already seen for the lot
+     */
+    private void checkStaleness(int requestLotId, ParkingResponse response) {
+        if (response == null || response.getSnapshotVersion() <= 0) {
+            return;
+        }
+        
+        long seen = seenVersions.getOrDefault(requestLotId, 0L);
+        if (response.getSnapshotVersion() < seen) {
+            clientUI.display(String.format("Note: answer is from availability version %d, version %d was already seen",
+                                           response.getSnapshotVersion(), seen));
+        } else {
+            seenVersions.put(requestLotId, response.getSnapshotVersion());
         }
     }
     
@@ -5,8 +5,10 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.List;
 import common.*;
 import parking.model.*;
+import parking.service.OptimalTimeFrame;
 
 /**
  * Console interface for the Parking Management System
@@ -59,8 +61,11 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
         System.out.println("Available commands:");
         System.out.println("park <customer_id>           - Park now with customer ID");
         System.out.println("check                        - Check current availability");
-        System.out.println("prebook <customer_id> <date> <time> - Prebook parking");
+        System.out.println("prebook <customer_id> <date> <time> [[end_date] end_time] - Prebook parking");
+        System.out.println("cancel <customer_id> <date> [time] - Cancel a booking");
         System.out.println("status                       - Get parking lot summary");
+        System.out.println("frames <date>                - Show bookable time frames of a date");
+        System.out.println("lot <lot_id>                 - Switch to another parking lot");
         System.out.println("help                         - Show this help message");
         System.out.println("quit                         - Exit the application");
         System.out.println("\nDate format: YYYY-MM-DD (e.g., 2024-12-25)");
@@ -90,9 +95,18 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
                 case "prebook":
                     handlePrebookCommand(parts);
                     break;
+                case "cancel":
+                    handleCancelCommand(parts);
+                    break;
                 case "status":
                     handleStatusCommand();
                     break;
+                case "frames":
+                    handleFramesCommand(parts);
+                    break;
+                case "lot":
+                    handleLotCommand(parts);
+                    break;
                 case "help":
                     displayWelcomeMessage();
                     break;
@@ -103,6 +117,12 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
                 case "ping":
                     client.sendCommand("#PING");
                     break;
+                case "metrics":
+                    client.sendCommand("#METRICS");
+                    break;
+                case "slowqueries":
+                    client.sendCommand("#SLOWQUERIES");
+                    break;
                 default:
                     System.out.println("Unknown command: " + cmd);
                     System.out.println("Type 'help' for available commands.");
@@ -124,6 +144,21 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
         ParkingResponse response = client.parkNow(customerId);
     }
     
+    private void handleLotCommand(String[] parts) {
+        if (parts.length < 2) {
+            System.out.println("Current parking lot: " + client.getLotId());
+            System.out.println("Usage: lot <lot_id>");
+            return;
+        }
+        
+        try {
+            client.setLotId(Integer.parseInt(parts[1]));
+            System.out.println("Using parking lot " + client.getLotId());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid lot ID: " + parts[1]);
+        }
+    }
+    
     private void handleCheckCommand() {
         System.out.println("Checking current parking availability...");
         ParkingResponse response = client.checkAvailability();
@@ -131,8 +166,9 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
     
     private void handlePrebookCommand(String[] parts) {
         if (parts.length < 4) {
-            System.out.println("Usage: prebook <customer_id> <date> <time>");
-            System.out.println("Example: prebook CUST001 2024-12-25 14:30");
+            System.out.println("Usage: prebook <customer_id> <date> <time> [[end_date] end_time]");
+            System.out.println("Example: prebook CUST001 2024-12-25 14:30 16:00");
+            System.out.println("Overnight: prebook CUST001 2024-12-25 22:00 2024-12-26 01:30");
             return;
         }
         
@@ -140,11 +176,38 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
             String customerId = parts[1];
             LocalDate date = LocalDate.parse(parts[2]);
             LocalTime time = LocalTime.parse(parts[3]);
+            LocalDate endDate = parts.length > 5 ? LocalDate.parse(parts[4]) : null;
+            LocalTime endTime = parts.length > 5 ? LocalTime.parse(parts[5])
+                              : parts.length > 4 ? LocalTime.parse(parts[4]) : null;
             
             System.out.printf("Requesting prebooking for customer %s on %s at %s...\n", 
                             customerId, date, time);
             
-            ParkingResponse response = client.preBook(customerId, date, time);
+            ParkingResponse response = client.preBook(customerId, date, time, endDate, endTime);
+            
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date or time format!");
+            System.out.println("Date format: YYYY-MM-DD (e.g., 2024-12-25)");
+            System.out.println("Time format: HH:MM (e.g., 14:30)");
+        }
+    }
+    
+    private void handleCancelCommand(String[] parts) {
+        if (parts.length < 3) {
+            System.out.println("Usage: cancel <customer_id> <date> [time]");
+            System.out.println("Example: cancel CUST001 2024-12-25 14:30");
+            return;
+        }
+        
+        try {
+            String customerId = parts[1];
+            LocalDate date = LocalDate.parse(parts[2]);
+            LocalTime time = parts.length > 3 ? LocalTime.parse(parts[3]) : null;
+            
+            System.out.printf("Cancelling booking of customer %s on %s%s...\n",
+                            customerId, date, time != null ? " at " + time : "");
+            
+            ParkingResponse response = client.cancelBooking(customerId, date, time);
             
         } catch (DateTimeParseException e) {
             System.out.println("Invalid date or time format!");
@@ -158,6 +221,24 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
         ParkingResponse response = client.getSummary();
     }
     
+    private void handleFramesCommand(String[] parts) {
+        if (parts.length < 2) {
+            System.out.println("Usage: frames <date>");
+            System.out.println("Example: frames 2024-12-25");
+            return;
+        }
+        
+        try {
+            LocalDate date = LocalDate.parse(parts[1]);
+            System.out.println("Getting time frames for " + date + "...");
+            ParkingResponse response = client.getTimeFrames(date);
+            
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format!");
+            System.out.println("Date format: YYYY-MM-DD (e.g., 2024-12-25)");
+        }
+    }
+    
     private void handleQuitCommand() {
         System.out.println("Disconnecting from parking server...");
         client.quit();
@@ -186,6 +267,7 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
                 } else if (data instanceof CurrentSpotAvailability) {
                     CurrentSpotAvailability spot = (CurrentSpotAvailability) data;
                     System.out.println("Available Spot Details:");
+                    System.out.println("Lot: " + spot.getLotId());
                     System.out.println("Spot Number: #" + spot.getSpotNumber());
                     System.out.println("Duration: " + spot.getFormattedDuration());
                     System.out.println("Available from: " + 
@@ -195,13 +277,20 @@ public class ParkingConsole implements ParkingClientUI, ChatIF {
                     
                 } else if (data instanceof ParkingAvailabilitySummary) {
                     ParkingAvailabilitySummary summary = (ParkingAvailabilitySummary) data;
-                    System.out.println("Parking Lot Status:");
+                    System.out.println("Parking Lot " + summary.getLotId() + " Status:");
                     System.out.println("Total spots: " + summary.getTotalSpots());
                     System.out.println("Available: " + summary.getFreeSpots());
                     System.out.println("Occupied: " + summary.getOccupiedSpots());
                     System.out.println("Occupancy rate: " + String.format("%.1f%%", summary.getOccupancyRate()));
                     System.out.println("Status: " + summary.getStatusDescription());
                     
+                } else if (data instanceof List) {
+                    for (Object item : (List<?>) data) {
+                        if (item instanceof OptimalTimeFrame) {
+                            System.out.println("  " + item);
+                        }
+                    }
+                    
                 } else {
                     System.out.println("Data: " + data.toString());
                 }
@@ -0,0 +1,147 @@
+package client;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import common.ParkingRequestType;
+import common.ParkingResponse;
+
+/**
+ * Runs a ParkingClient's requests off the UI thread on a shared executor
+ *
+ * Screens ask for the same data at the same moment (e.g. the summary on refresh), and the client
+ * sends one request at a time anyway. A request identical to one still in flight - same type and
+ * parameters - is not sent again: its caller gets the answer of the one in flight. Each caller
+ * gets its own future, so cancelling one does not affect the others.
+ */
+public class ParkingRequestExecutor {
+    
+    private final ParkingClient client;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<ParkingResponse>> inFlight = new HashMap<>();
+    private long coalesced;
+    
+    public ParkingRequestExecutor(ParkingClient client, int threads) {
+        this.client = client;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "parking-client-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * One thread - the client sends one request at a time, so more threads would only queue on it
+     */
+    public ParkingRequestExecutor(ParkingClient client) {
+        this(client, 1);
+    }
+    
+    public ParkingClient getClient() { return client; }
+    
+    public CompletableFuture<ParkingResponse> parkNow(String customerId) {
+        return submit(key(ParkingRequestType.PARK_NOW, customerId), () -> client.parkNow(customerId));
+    }
+    
+    public CompletableFuture<ParkingResponse> checkAvailability() {
+        return submit(key(ParkingRequestType.CHECK_AVAILABILITY), client::checkAvailability);
+    }
+    
+    public CompletableFuture<ParkingResponse> preBook(String customerId, LocalDate date, LocalTime startTime) {
+        return submit(key(ParkingRequestType.PREBOOKING, customerId, date, startTime),
+                      () -> client.preBook(customerId, date, startTime));
+    }
+    
+    public CompletableFuture<ParkingResponse> cancelBooking(String customerId, LocalDate date, LocalTime startTime) {
+        return submit(key(ParkingRequestType.CANCEL_BOOKING, customerId, date, startTime),
+                      () -> client.cancelBooking(customerId, date, startTime));
+    }
+    
+    public CompletableFuture<ParkingResponse> getSummary() {
+        return submit(key(ParkingRequestType.GET_SUMMARY), client::getSummary);
+    }
+    
+    public CompletableFuture<ParkingResponse> getTimeFrames(LocalDate date) {
+        return submit(key(ParkingRequestType.GET_TIME_FRAMES, date), () -> client.getTimeFrames(date));
+    }
+    
+    /**
+     * Run a call on the pool, or join the identical call already in flight
+     */
+    private CompletableFuture<ParkingResponse> submit(String key, Supplier<ParkingResponse> call) {
+        CompletableFuture<ParkingResponse> future;
+        synchronized (inFlight) {
+            future = inFlight.get(key);
+            if (future != null) {
+                coalesced++;
+                return future.copy();
+            }
+            future = new CompletableFuture<>();
+            inFlight.put(key, future);
+        }
+        
+        CompletableFuture<ParkingResponse> shared = future;
+        try {
+            executor.execute(() -> run(key, call, shared));
+        } catch (RejectedExecutionException e) {
+            finish(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared.copy();
+    }
+    
+    private void run(String key, Supplier<ParkingResponse> call, CompletableFuture<ParkingResponse> future) {
+        ParkingResponse response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            finish(key, future);
+            future.completeExceptionally(e);
+            return;
+        }
+        // Removed first: a request made after the answer arrived is sent again
+        finish(key, future);
+        future.complete(response);
+    }
+    
+    private void finish(String key, CompletableFuture<ParkingResponse> future) {
+        synchronized (inFlight) {
+            inFlight.remove(key, future);
+        }
+    }
+    
+    /**
+     * Requests of the same type and parameters for the same lot are identical
+     */
+    private String key(ParkingRequestType type, Object... parameters) {
+        StringBuilder sb = new StringBuilder().append(type).append('|').append(client.getLotId());
+        for (Object parameter : parameters) {
+            sb.append('|').append(parameter);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Requests answered with the response of an identical one instead of being sent
+     */
+    public long getCoalescedCount() {
+        synchronized (inFlight) {
+            return coalesced;
+        }
+    }
+    
+    /**
+     * Stop the pool - requests still running finish on their own
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
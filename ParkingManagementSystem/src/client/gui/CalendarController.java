@@ -1,5 +1,6 @@
 package client.gui;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
@@ -9,7 +10,8 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import client.ParkingClient;
-import common.ParkingResponse;
+import client.ParkingRequestExecutor;
+import parking.service.OptimalTimeFrame;
 
 import java.io.IOException;
 import java.net.URL;
@@ -18,7 +20,9 @@ import java.time.LocalTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 public class CalendarController implements Initializable {
@@ -36,9 +40,11 @@ public class CalendarController implements Initializable {
     @FXML private Button confirmBookingButton;
     
     private ParkingClient parkingClient;
+    private ParkingRequestExecutor requests;
     private LocalDate currentDate = LocalDate.now();
     private LocalDate selectedDate;
     private List<Button> dateButtons = new ArrayList<>();
+    private Map<String, OptimalTimeFrame> timeFramesByLabel = new HashMap<>();
     private YearMonth currentYearMonth;
     
     @Override
@@ -58,6 +64,10 @@ public class CalendarController implements Initializable {
         this.parkingClient = client;
     }
     
+    public void setRequestExecutor(ParkingRequestExecutor requests) {
+        this.requests = requests;
+    }
+    
     @FXML
     private void previousMonth() {
         currentYearMonth = currentYearMonth.minusMonths(1);
@@ -153,9 +163,41 @@ public class CalendarController implements Initializable {
     
     private void loadAvailableTimeSlots(LocalDate date) {
         timeSlotComboBox.getItems().clear();
+        timeFramesByLabel.clear();
         confirmBookingButton.setDisable(true);
         
-        // Sample time slots (in real app, would come from server)
+        if (requests == null) {
+            showSampleTimeSlots();
+            return;
+        }
+        
+        requests.getTimeFrames(date).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (!date.equals(selectedDate)) {
+                return; // Another date was selected meanwhile
+            }
+            timeSlotComboBox.getItems().clear(); // The same date may have been selected twice
+            timeFramesByLabel.clear();
+            if (error == null && response.isSuccess() && response.getData() instanceof List) {
+                for (Object item : (List<?>) response.getData()) {
+                    if (item instanceof OptimalTimeFrame) {
+                        OptimalTimeFrame frame = (OptimalTimeFrame) item;
+                        String label = String.format("%s - %s",
+                                frame.getStartTime().format(DateTimeFormatter.ofPattern("HH:mm")),
+                                frame.getFormattedDuration());
+                        timeFramesByLabel.put(label, frame);
+                        timeSlotComboBox.getItems().add(label);
+                    }
+                }
+            } else {
+                showSampleTimeSlots();
+            }
+        }));
+    }
+    
+    /**
+     * Sample time slots when the server cannot be asked
+     */
+    private void showSampleTimeSlots() {
         List<String> timeSlots = new ArrayList<>();
         LocalTime startTime = LocalTime.of(8, 0);
         
@@ -179,16 +221,21 @@ public class CalendarController implements Initializable {
         String timeStr = timeSlotText.split(" - ")[0];
         String durationStr = timeSlotText.split(" - ")[1];
         
-        // In a real app, this would get the actual assigned spot from the server
-        int spotNumber = 10 + (int)(Math.random() * 90);  // Random spot between 10-99
+        OptimalTimeFrame frame = timeFramesByLabel.get(timeSlotText);
+        if (frame != null) {
+            assignedSpotLabel.setText("Assigned Spot: #" + frame.getAssignedSpotNumber());
+            durationLabel.setText("Duration: " + frame.getFormattedDuration());
+            return;
+        }
         
-        assignedSpotLabel.setText("Assigned Spot: #" + spotNumber);
+        // Sample slots have no spot until the server assigns one
+        assignedSpotLabel.setText("Assigned Spot: assigned on booking");
         durationLabel.setText("Duration: " + durationStr);
     }
     
     @FXML
     private void confirmBooking() {
-        if (parkingClient == null) {
+        if (requests == null) {
             showError("Not connected to parking server");
             return;
         }
@@ -216,18 +263,18 @@ public class CalendarController implements Initializable {
         LocalTime startTime = LocalTime.parse(timeStr, DateTimeFormatter.ofPattern("HH:mm"));
         
         // Process booking with server
-        try {
-            ParkingResponse response = parkingClient.preBook(customerId, selectedDate, startTime);
-            
-            if (response.isSuccess()) {
+        confirmBookingButton.setDisable(true);
+        requests.preBook(customerId, selectedDate, startTime).whenComplete((response, error) -> Platform.runLater(() -> {
+            confirmBookingButton.setDisable(false);
+            if (error != null) {
+                showError("Failed to book: " + error.getMessage());
+            } else if (response.isSuccess()) {
                 showSuccessDialog(response.getMessage());
                 timeSlotArea.setVisible(false);
             } else {
                 showError(response.getMessage());
             }
-        } catch (Exception e) {
-            showError("Failed to book: " + e.getMessage());
-        }
+        }));
     }
     
     private void showSuccessDialog(String message) {
@@ -245,7 +292,7 @@ public class CalendarController implements Initializable {
             Scene scene = new Scene(loader.load(), 800, 700);
             
             ParkNowController controller = loader.getController();
-            controller.setParkingClient(parkingClient);
+            controller.setRequestExecutor(requests);
             
             Stage currentStage = (Stage) prevMonthButton.getScene().getWindow();
             Stage stage = new Stage();
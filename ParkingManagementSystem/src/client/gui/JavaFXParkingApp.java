@@ -7,6 +7,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import client.ParkingClient;
+import client.ParkingRequestExecutor;
 import common.*;
 import java.io.IOException;
 
@@ -19,6 +20,7 @@ public class JavaFXParkingApp extends Application implements ParkingClientUI {
     private static final int DEFAULT_PORT = 5555;
     
     private ParkingClient client;
+    private ParkingRequestExecutor requests; // Shared by all screens
     private Stage primaryStage;
     private String serverHost;
     private int serverPort;
@@ -39,6 +41,7 @@ public class JavaFXParkingApp extends Application implements ParkingClientUI {
         
         try {
             client = new ParkingClient(serverHost, serverPort, this);
+            requests = new ParkingRequestExecutor(client);
             System.out.println("Connected to parking server at " + serverHost + ":" + serverPort);
         } catch (IOException e) {
             System.err.println("Failed to connect to server: " + e.getMessage());
@@ -60,6 +63,7 @@ public class JavaFXParkingApp extends Application implements ParkingClientUI {
             
             mainMenuController = loader.getController();
             mainMenuController.setParkingClient(client);
+            mainMenuController.setRequestExecutor(requests);
             mainMenuController.setPrimaryStage(primaryStage);
             
             primaryStage.setTitle("Parking Management System - Connected to " + serverHost);
@@ -82,6 +86,9 @@ public class JavaFXParkingApp extends Application implements ParkingClientUI {
     
     @Override
     public void stop() throws Exception {
+        if (requests != null) {
+            requests.shutdown();
+        }
         if (client != null) {
             try {
                 client.closeConnection();
@@ -138,6 +145,10 @@ public class JavaFXParkingApp extends Application implements ParkingClientUI {
         return client;
     }
     
+    public ParkingRequestExecutor getRequestExecutor() {
+        return requests;
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
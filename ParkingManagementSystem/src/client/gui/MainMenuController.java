@@ -7,6 +7,7 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.stage.Stage;
 import client.ParkingClient;
+import client.ParkingRequestExecutor;
 
 /**
  * Controller for the main menu navigation - adapted for OCSF client-server
@@ -18,12 +19,17 @@ public class MainMenuController {
     @FXML private Button exitButton;
     
     private ParkingClient parkingClient;
+    private ParkingRequestExecutor requests;
     private Stage primaryStage;
     
     public void setParkingClient(ParkingClient client) {
         this.parkingClient = client;
     }
     
+    public void setRequestExecutor(ParkingRequestExecutor requests) {
+        this.requests = requests;
+    }
+    
     public void setPrimaryStage(Stage stage) {
         this.primaryStage = stage;
     }
@@ -40,7 +46,7 @@ public class MainMenuController {
             Scene scene = new Scene(loader.load(), 800, 700);
             
             ParkNowController controller = loader.getController();
-            controller.setParkingClient(parkingClient);
+            controller.setRequestExecutor(requests);
             
             Stage stage = new Stage();
             stage.setTitle("Park Now - Immediate Parking");
@@ -68,6 +74,7 @@ public class MainMenuController {
             
             CalendarController controller = loader.getController();
             controller.setParkingClient(parkingClient);
+            controller.setRequestExecutor(requests);
             
             Stage stage = new Stage();
             stage.setTitle("Pre-book Parking - Calendar View");
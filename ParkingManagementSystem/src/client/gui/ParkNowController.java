@@ -12,7 +12,7 @@ import javafx.animation.KeyFrame;
 import javafx.util.Duration;
 import javafx.application.Platform;
 
-import client.ParkingClient;
+import client.ParkingRequestExecutor;
 import common.*;
 import parking.model.*;
 
@@ -42,12 +42,12 @@ public class ParkNowController implements Initializable {
     @FXML private Button parkNowButton;
     @FXML private Button refreshButton;
     
-    private ParkingClient parkingClient;
+    private ParkingRequestExecutor requests;
     private CurrentSpotAvailability currentBestSpot;
     private Timeline refreshTimeline;
     
-    public void setParkingClient(ParkingClient client) {
-        this.parkingClient = client;
+    public void setRequestExecutor(ParkingRequestExecutor requests) {
+        this.requests = requests;
     }
     
     @Override
@@ -73,7 +73,7 @@ public class ParkNowController implements Initializable {
     
     @FXML
     private void checkAvailability() {
-        if (parkingClient == null) {
+        if (requests == null) {
             showError("No connection to parking server");
             return;
         }
@@ -81,25 +81,16 @@ public class ParkNowController implements Initializable {
         checkAvailabilityButton.setDisable(true);
         checkAvailabilityButton.setText("Checking...");
         
-        new Thread(() -> {
-            try {
-                ParkingResponse response = parkingClient.checkAvailability();
-                
-                Platform.runLater(() -> {
-                    handleAvailabilityResponse(response);
-                    
-                    checkAvailabilityButton.setDisable(false);
-                    checkAvailabilityButton.setText("Check What's Available Now");
-                });
-                
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    showError("Failed to check availability: " + e.getMessage());
-                    checkAvailabilityButton.setDisable(false);
-                    checkAvailabilityButton.setText("Check What's Available Now");
-                });
+        requests.checkAvailability().whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showError("Failed to check availability: " + error.getMessage());
+            } else {
+                handleAvailabilityResponse(response);
             }
-        }).start();
+            
+            checkAvailabilityButton.setDisable(false);
+            checkAvailabilityButton.setText("Check What's Available Now");
+        }));
     }
     
     private void handleAvailabilityResponse(ParkingResponse response) {
@@ -136,7 +127,7 @@ public class ParkNowController implements Initializable {
     
     @FXML
     private void parkNow() {
-        if (parkingClient == null) {
+        if (requests == null) {
             showError("No connection to parking server");
             return;
         }
@@ -182,34 +173,25 @@ public class ParkNowController implements Initializable {
         parkNowButton.setDisable(true);
         parkNowButton.setText("Processing...");
         
-        new Thread(() -> {
-            try {
-                ParkingResponse response = parkingClient.parkNow(customerId);
+        requests.parkNow(customerId).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showError("Parking failed: " + error.getMessage());
                 
-                Platform.runLater(() -> {
-                    if (response.isSuccess()) {
-                        showSuccessDialog(response);
-                        
-                        customerIdField.clear();
-                        currentBestSpot = null;
-                        hideAvailableSpot();
-                        refreshAvailability();
-                        
-                    } else {
-                        showError("Parking failed: " + response.getMessage());
-                        checkAvailability();
-                    }
-                    
-                    parkNowButton.setText("🚗 Park My Car Now!");
-                });
+            } else if (response.isSuccess()) {
+                showSuccessDialog(response);
                 
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    showError("Parking failed: " + e.getMessage());
-                    parkNowButton.setText("🚗 Park My Car Now!");
-                });
+                customerIdField.clear();
+                currentBestSpot = null;
+                hideAvailableSpot();
+                refreshAvailability();
+                
+            } else {
+                showError("Parking failed: " + response.getMessage());
+                checkAvailability();
             }
-        }).start();
+            
+            parkNowButton.setText("🚗 Park My Car Now!");
+        }));
     }
     
     private void showSuccessDialog(ParkingResponse response) {
@@ -234,28 +216,24 @@ public class ParkNowController implements Initializable {
     }
     
     private void updateAvailabilitySummary() {
-        if (parkingClient == null) return;
+        if (requests == null) return;
         
-        new Thread(() -> {
-            try {
-                ParkingResponse response = parkingClient.getSummary();
+        requests.getSummary().whenComplete((response, error) -> {
+            if (error != null) {
+                Platform.runLater(() -> {
+                    occupancyLabel.setText("Unable to load occupancy data");
+                });
                 
-                if (response.isSuccess() && response.getData() instanceof ParkingAvailabilitySummary) {
-                    ParkingAvailabilitySummary summary = (ParkingAvailabilitySummary) response.getData();
-                    
-                    Platform.runLater(() -> {
-                        occupancyLabel.setText(summary.getFormattedOccupancy());
-                        occupancyBar.setProgress(summary.getOccupancyRate() / 100.0);
-                        updateAvailabilityStatus(summary);
-                    });
-                }
+            } else if (response.isSuccess() && response.getData() instanceof ParkingAvailabilitySummary) {
+                ParkingAvailabilitySummary summary = (ParkingAvailabilitySummary) response.getData();
                 
-            } catch (Exception e) {
                 Platform.runLater(() -> {
-                    occupancyLabel.setText("Unable to load occupancy data");
+                    occupancyLabel.setText(summary.getFormattedOccupancy());
+                    occupancyBar.setProgress(summary.getOccupancyRate() / 100.0);
+                    updateAvailabilityStatus(summary);
                 });
             }
-        }).start();
+        });
     }
     
     private void updateAvailabilityStatus(ParkingAvailabilitySummary summary) {
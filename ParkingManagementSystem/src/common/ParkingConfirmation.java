@@ -10,11 +10,13 @@ import java.time.LocalTime;
 public class ParkingConfirmation implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int lotId = ParkingRequest.DEFAULT_LOT_ID;
     private int spotNumber;
     private String customerId;
     private LocalDate date;
     private LocalTime startTime;
     private LocalTime endTime;
+    private LocalDate endDate; // Null when the booking ends on date
     private double durationHours;
     
     public ParkingConfirmation(int spotNumber, String customerId, LocalDate date, 
@@ -27,12 +29,21 @@ public class ParkingConfirmation implements Serializable {
         this.durationHours = durationHours;
     }
     
+    public ParkingConfirmation(int lotId, int spotNumber, String customerId, LocalDate date, 
+                             LocalTime startTime, LocalTime endTime, double durationHours) {
+        this(spotNumber, customerId, date, startTime, endTime, durationHours);
+        this.lotId = lotId;
+    }
+    
     // Getters
+    public int getLotId() { return lotId; }
     public int getSpotNumber() { return spotNumber; }
     public String getCustomerId() { return customerId; }
     public LocalDate getDate() { return date; }
     public LocalTime getStartTime() { return startTime; }
     public LocalTime getEndTime() { return endTime; }
+    public LocalDate getEndDate() { return endDate != null ? endDate : date; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
     public double getDurationHours() { return durationHours; }
     
     // Formatted strings for display
@@ -47,18 +58,20 @@ public class ParkingConfirmation implements Serializable {
     public String getFormattedDetails() {
         return String.format(
             "Parking Confirmed!\n" +
+            "Lot: %d\n" +
             "Spot: #%d\n" +
             "Customer: %s\n" +
             "Date: %s\n" +
-            "Time: %s - %s\n" +
+            "Time: %s - %s%s\n" +
             "Duration: %s",
-            spotNumber, customerId, date, startTime, endTime, getFormattedDuration()
+            lotId, spotNumber, customerId, date, startTime,
+            getEndDate().equals(date) ? "" : getEndDate() + " ", endTime, getFormattedDuration()
         );
     }
     
     @Override
     public String toString() {
-        return String.format("ParkingConfirmation{spot=#%d, customer='%s', date=%s, time=%s-%s, duration=%.1fh}",
-                           spotNumber, customerId, date, startTime, endTime, durationHours);
+        return String.format("ParkingConfirmation{lot=%d, spot=#%d, customer='%s', date=%s, time=%s-%s, duration=%.1fh}",
+                           lotId, spotNumber, customerId, date, startTime, endTime, durationHours);
     }
 }
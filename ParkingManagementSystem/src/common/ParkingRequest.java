@@ -10,11 +10,17 @@ import java.time.LocalTime;
 public class ParkingRequest implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    public static final int DEFAULT_LOT_ID = 1; // Same as LotConfig.DEFAULT_LOT_ID on the server
+    
     private ParkingRequestType requestType;
+    private int lotId = DEFAULT_LOT_ID;
     private String customerId;
     private LocalDate date;
     private LocalTime startTime;
     private LocalTime endTime;
+    private LocalDate endDate; // Null - the end time is on date, or the next day if not after startTime
+    private String idempotencyKey; // Same for every retry of one booking
+    private long deadlineMillis; // Epoch millis the client stops waiting at; 0 - no deadline
     
     public ParkingRequest(ParkingRequestType requestType) {
         this.requestType = requestType;
@@ -24,6 +30,9 @@ public class ParkingRequest implements Serializable {
     public ParkingRequestType getRequestType() { return requestType; }
     public void setRequestType(ParkingRequestType requestType) { this.requestType = requestType; }
     
+    public int getLotId() { return lotId; }
+    public void setLotId(int lotId) { this.lotId = lotId; }
+    
     public String getCustomerId() { return customerId; }
     public void setCustomerId(String customerId) { this.customerId = customerId; }
     
@@ -36,9 +45,25 @@ public class ParkingRequest implements Serializable {
     public LocalTime getEndTime() { return endTime; }
     public void setEndTime(LocalTime endTime) { this.endTime = endTime; }
     
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+    
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    
+    public long getDeadlineMillis() { return deadlineMillis; }
+    public void setDeadlineMillis(long deadlineMillis) { this.deadlineMillis = deadlineMillis; }
+    
+    /**
+     * Check whether the client has stopped waiting for the answer
+     */
+    public boolean isExpired(long nowMillis) {
+        return deadlineMillis > 0 && nowMillis >= deadlineMillis;
+    }
+    
     @Override
     public String toString() {
-        return String.format("ParkingRequest{type=%s, customerId='%s', date=%s, startTime=%s}", 
-                           requestType, customerId, date, startTime);
+        return String.format("ParkingRequest{type=%s, lot=%d, customerId='%s', date=%s, startTime=%s}", 
+                           requestType, lotId, customerId, date, startTime);
     }
 }
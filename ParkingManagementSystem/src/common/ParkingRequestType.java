@@ -7,5 +7,7 @@ public enum ParkingRequestType {
     PARK_NOW,
     CHECK_AVAILABILITY, 
     PREBOOKING,
-    GET_SUMMARY
+    GET_SUMMARY,
+    CANCEL_BOOKING,
+    GET_TIME_FRAMES
 }
\ No newline at end of file
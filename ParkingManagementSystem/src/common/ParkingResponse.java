@@ -11,6 +11,8 @@ public class ParkingResponse implements Serializable {
     private boolean success;
     private String message;
     private Object data; // Can be ParkingConfirmation, CurrentSpotAvailability, etc.
+    private long snapshotVersion; // Version of the lot's availability view behind the answer, 0 if none
+    private long retryAfterMillis; // Set when the server was too busy to serve the request
     
     public ParkingResponse(boolean success, String message, Object data) {
         this.success = success;
@@ -22,15 +24,24 @@ public class ParkingResponse implements Serializable {
     public boolean isSuccess() { return success; }
     public String getMessage() { return message; }
     public Object getData() { return data; }
+    public long getSnapshotVersion() { return snapshotVersion; }
+    public long getRetryAfterMillis() { return retryAfterMillis; }
+    
+    /**
+     * Check if the request was turned away unserved and may be sent again after getRetryAfterMillis()
+     */
+    public boolean isRetryable() { return retryAfterMillis > 0; }
     
     // Setters
     public void setSuccess(boolean success) { this.success = success; }
     public void setMessage(String message) { this.message = message; }
     public void setData(Object data) { this.data = data; }
+    public void setSnapshotVersion(long snapshotVersion) { this.snapshotVersion = snapshotVersion; }
+    public void setRetryAfterMillis(long retryAfterMillis) { this.retryAfterMillis = retryAfterMillis; }
     
     @Override
     public String toString() {
-        return String.format("ParkingResponse{success=%s, message='%s', data=%s}", 
-                           success, message, data != null ? data.getClass().getSimpleName() : "null");
+        return String.format("ParkingResponse{success=%s, message='%s', data=%s, version=%d}", 
+                           success, message, data != null ? data.getClass().getSimpleName() : "null", snapshotVersion);
     }
 }
\ No newline at end of file
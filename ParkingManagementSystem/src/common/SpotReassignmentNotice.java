@@ -0,0 +1,50 @@
+package common;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Sent by the server, unrequested, when a customer's prebooking was moved to another spot
+ */
+public class SpotReassignmentNotice implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final int lotId;
+    private final String customerId;
+    private final LocalDate date;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final int oldSpotNumber;
+    private final int newSpotNumber;
+    
+    public SpotReassignmentNotice(int lotId, String customerId, LocalDate date, LocalTime startTime,
+                                  LocalTime endTime, int oldSpotNumber, int newSpotNumber) {
+        this.lotId = lotId;
+        this.customerId = customerId;
+        this.date = date;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.oldSpotNumber = oldSpotNumber;
+        this.newSpotNumber = newSpotNumber;
+    }
+    
+    // Getters
+    public int getLotId() { return lotId; }
+    public String getCustomerId() { return customerId; }
+    public LocalDate getDate() { return date; }
+    public LocalTime getStartTime() { return startTime; }
+    public LocalTime getEndTime() { return endTime; }
+    public int getOldSpotNumber() { return oldSpotNumber; }
+    public int getNewSpotNumber() { return newSpotNumber; }
+    
+    public String getMessage() {
+        return String.format("Prebooking of %s on %s %s-%s in lot %d moved from spot #%d to spot #%d",
+                             customerId, date, startTime, endTime, lotId, oldSpotNumber, newSpotNumber);
+    }
+    
+    @Override
+    public String toString() {
+        return "SpotReassignmentNotice{" + getMessage() + "}";
+    }
+}
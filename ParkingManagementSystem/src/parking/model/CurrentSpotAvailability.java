@@ -3,6 +3,7 @@ package parking.model;
 import java.io.Serializable;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import parking.util.LotConfig;
 
 /**
  * Serializable version of CurrentSpotAvailability for client-server communication
@@ -10,6 +11,7 @@ import java.time.format.DateTimeFormatter;
 public class CurrentSpotAvailability implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int lotId;
     private int spotNumber;
     private double durationHours;
     private LocalTime availableFrom;
@@ -17,13 +19,19 @@ public class CurrentSpotAvailability implements Serializable {
     
     public CurrentSpotAvailability(int spotNumber, double durationHours, 
                                   LocalTime availableFrom, LocalTime freeUntil) {
-        if (spotNumber < 1 || spotNumber > 100) {
-            throw new IllegalArgumentException("Spot number must be between 1 and 100");
+        this(LotConfig.DEFAULT_LOT_ID, spotNumber, durationHours, availableFrom, freeUntil);
+    }
+    
+    public CurrentSpotAvailability(int lotId, int spotNumber, double durationHours, 
+                                  LocalTime availableFrom, LocalTime freeUntil) {
+        if (!LotConfig.isValidSpot(lotId, spotNumber)) {
+            throw new IllegalArgumentException("Spot number must be between 1 and " + LotConfig.getCapacity(lotId));
         }
         if (durationHours < 0) {
             throw new IllegalArgumentException("Duration cannot be negative");
         }
         
+        this.lotId = lotId;
         this.spotNumber = spotNumber;
         this.durationHours = durationHours;
         this.availableFrom = availableFrom;
@@ -31,6 +39,7 @@ public class CurrentSpotAvailability implements Serializable {
     }
     
     // Getters
+    public int getLotId() { return lotId; }
     public int getSpotNumber() { return spotNumber; }
     public double getDurationHours() { return durationHours; }
     public LocalTime getAvailableFrom() { return availableFrom; }
@@ -38,8 +47,8 @@ public class CurrentSpotAvailability implements Serializable {
     
     // Setters
     public void setSpotNumber(int spotNumber) {
-        if (spotNumber < 1 || spotNumber > 100) {
-            throw new IllegalArgumentException("Spot number must be between 1 and 100");
+        if (!LotConfig.isValidSpot(lotId, spotNumber)) {
+            throw new IllegalArgumentException("Spot number must be between 1 and " + LotConfig.getCapacity(lotId));
         }
         this.spotNumber = spotNumber;
     }
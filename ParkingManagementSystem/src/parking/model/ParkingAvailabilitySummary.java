@@ -2,7 +2,8 @@ package parking.model;
 
 import java.io.Serializable;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import parking.util.LotConfig;
+import parking.util.TimeUtils;
 
 /**
  * Serializable version of ParkingAvailabilitySummary
@@ -10,6 +11,7 @@ import java.time.format.DateTimeFormatter;
 public class ParkingAvailabilitySummary implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int lotId = LotConfig.DEFAULT_LOT_ID;
     private int totalSpots;
     private int freeSpots;
     private int occupiedSpots;
@@ -22,7 +24,13 @@ public class ParkingAvailabilitySummary implements Serializable {
         this.asOfTime = asOfTime;
     }
     
+    public ParkingAvailabilitySummary(int lotId, int totalSpots, int freeSpots, int occupiedSpots, LocalTime asOfTime) {
+        this(totalSpots, freeSpots, occupiedSpots, asOfTime);
+        this.lotId = lotId;
+    }
+    
     // Getters
+    public int getLotId() { return lotId; }
     public int getTotalSpots() { return totalSpots; }
     public int getFreeSpots() { return freeSpots; }
     public int getOccupiedSpots() { return occupiedSpots; }
@@ -104,12 +112,12 @@ public class ParkingAvailabilitySummary implements Serializable {
      * Get time formatted for display
      */
     public String getFormattedTime() {
-        return asOfTime != null ? asOfTime.format(DateTimeFormatter.ofPattern("HH:mm")) : "Unknown";
+        return asOfTime != null ? TimeUtils.formatTimeSlot(asOfTime) : "Unknown";
     }
     
     @Override
     public String toString() {
-        return String.format("ParkingAvailabilitySummary{total=%d, free=%d, occupied=%d, rate=%.1f%%, asOf=%s}",
-                           totalSpots, freeSpots, occupiedSpots, getOccupancyRate(), getFormattedTime());
+        return String.format("ParkingAvailabilitySummary{lot=%d, total=%d, free=%d, occupied=%d, rate=%.1f%%, asOf=%s}",
+                           lotId, totalSpots, freeSpots, occupiedSpots, getOccupancyRate(), getFormattedTime());
     }
 }
\ No newline at end of file
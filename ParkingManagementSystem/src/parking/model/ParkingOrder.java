@@ -2,8 +2,11 @@ package parking.model;
 
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import parking.util.LotConfig;
+import parking.util.TimeUtils;
 
 /**
  * Serializable version of ParkingOrder
@@ -12,12 +15,14 @@ public class ParkingOrder implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private int orderId;
+    private int lotId = LotConfig.DEFAULT_LOT_ID;
     private int parkingSpotNumber;
     private String subscriberId;
     private LocalDate dateOfParking;
     private LocalDate datePlacingOrder;
     private LocalTime timeOfCarDeposit;
     private LocalTime timeOfRetrievalTime;
+    private LocalDate dateOfRetrieval; // Null: the date of parking, or the next day if the retrieval time is not after the deposit
     
     public ParkingOrder() {
         this.datePlacingOrder = LocalDate.now();
@@ -26,7 +31,15 @@ public class ParkingOrder implements Serializable {
     public ParkingOrder(int orderId, int parkingSpotNumber, String subscriberId,
                        LocalDate dateOfParking, LocalTime timeOfCarDeposit, 
                        LocalTime timeOfRetrievalTime) {
+        this(orderId, LotConfig.DEFAULT_LOT_ID, parkingSpotNumber, subscriberId,
+             dateOfParking, timeOfCarDeposit, timeOfRetrievalTime);
+    }
+    
+    public ParkingOrder(int orderId, int lotId, int parkingSpotNumber, String subscriberId,
+                       LocalDate dateOfParking, LocalTime timeOfCarDeposit, 
+                       LocalTime timeOfRetrievalTime) {
         this.orderId = orderId;
+        this.lotId = lotId;
         this.parkingSpotNumber = parkingSpotNumber;
         this.subscriberId = subscriberId;
         this.dateOfParking = dateOfParking;
@@ -45,10 +58,18 @@ public class ParkingOrder implements Serializable {
     public int getOrderId() { return orderId; }
     public void setOrderId(int orderId) { this.orderId = orderId; }
     
+    public int getLotId() { return lotId; }
+    public void setLotId(int lotId) {
+        if (!LotConfig.isConfigured(lotId)) {
+            throw new IllegalArgumentException("Unknown parking lot: " + lotId);
+        }
+        this.lotId = lotId;
+    }
+    
     public int getParkingSpotNumber() { return parkingSpotNumber; }
     public void setParkingSpotNumber(int parkingSpotNumber) {
-        if (parkingSpotNumber < 1 || parkingSpotNumber > 100) {
-            throw new IllegalArgumentException("Parking spot number must be between 1 and 100");
+        if (!LotConfig.isValidSpot(lotId, parkingSpotNumber)) {
+            throw new IllegalArgumentException("Parking spot number must be between 1 and " + LotConfig.getCapacity(lotId));
         }
         this.parkingSpotNumber = parkingSpotNumber;
     }
@@ -83,15 +104,41 @@ public class ParkingOrder implements Serializable {
     public LocalTime getTimeOfRetrievalTime() { return timeOfRetrievalTime; }
     public void setTimeOfRetrievalTime(LocalTime timeOfRetrievalTime) { this.timeOfRetrievalTime = timeOfRetrievalTime; }
     
+    /**
+     * Get the date the car is retrieved - stays past midnight end on a later date than they start
+     */
+    public LocalDate getDateOfRetrieval() {
+        if (dateOfRetrieval != null || dateOfParking == null) {
+            return dateOfRetrieval;
+        }
+        boolean nextDay = timeOfCarDeposit != null && timeOfRetrievalTime != null
+                          && !timeOfRetrievalTime.isAfter(timeOfCarDeposit);
+        return nextDay ? dateOfParking.plusDays(1) : dateOfParking;
+    }
+    public void setDateOfRetrieval(LocalDate dateOfRetrieval) { this.dateOfRetrieval = dateOfRetrieval; }
+    
+    /**
+     * Get the slot range of the order, counted from the date of parking's midnight:
+     * the end slot passes 96 when the stay runs past midnight
+     */
+    public int getStartSlot() {
+        return TimeUtils.slotOf(timeOfCarDeposit);
+    }
+    
+    public int getEndSlot() {
+        return TimeUtils.endSlotOf(dateOfParking, timeOfCarDeposit, dateOfRetrieval, timeOfRetrievalTime);
+    }
+    
     /**
      * Calculate parking duration in hours
      */
     public double getDurationHours() {
-        if (timeOfCarDeposit == null || timeOfRetrievalTime == null) {
+        if (dateOfParking == null || timeOfCarDeposit == null || timeOfRetrievalTime == null) {
             return 0.0;
         }
         
-        long minutes = java.time.Duration.between(timeOfCarDeposit, timeOfRetrievalTime).toMinutes();
+        long minutes = java.time.Duration.between(LocalDateTime.of(dateOfParking, timeOfCarDeposit),
+                                                  LocalDateTime.of(getDateOfRetrieval(), timeOfRetrievalTime)).toMinutes();
         return minutes / 60.0;
     }
     
@@ -99,7 +146,7 @@ public class ParkingOrder implements Serializable {
      * Check if this is a valid parking order
      */
     public boolean isValid() {
-        return parkingSpotNumber >= 1 && parkingSpotNumber <= 100 &&
+        return LotConfig.isValidSpot(lotId, parkingSpotNumber) &&
                subscriberId != null && !subscriberId.trim().isEmpty() &&
                dateOfParking != null &&
                timeOfCarDeposit != null;
@@ -110,8 +157,9 @@ public class ParkingOrder implements Serializable {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
         
-        return String.format("ParkingOrder{orderId=%d, spot=#%d, customer='%s', date=%s, time=%s-%s, duration=%.1fh}",
+        return String.format("ParkingOrder{orderId=%d, lot=%d, spot=#%d, customer='%s', date=%s, time=%s-%s, duration=%.1fh}",
                 orderId, 
+                lotId,
                 parkingSpotNumber, 
                 subscriberId,
                 dateOfParking != null ? dateOfParking.format(dateFormatter) : "null",
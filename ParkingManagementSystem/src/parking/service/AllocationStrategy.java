@@ -0,0 +1,54 @@
+package parking.service;
+
+/**
+ * Chooses which free spot a booking gets
+ *
+ * A strategy picks among the spots free at the booking's start slot, each given with its free
+ * run from that slot (capped at MAX_SLOTS_PER_BOOKING). When no spot covers the requested
+ * length every built-in strategy falls back to the longest run, so a booking is only refused
+ * when no spot is free at all.
+ *
+ * The lot's writer, ParkNowService and ParkingSpotAssigner use the strategy selected with
+ * -Dparking.allocation=LONGEST_FIRST|BEST_FIT|LOWEST_NUMBER (default LONGEST_FIRST).
+ */
+public interface AllocationStrategy {
+    
+    /**
+     * Choose a candidate
+     *
+     * @param requestedSlots slots the booking asks for - MAX_SLOTS_PER_BOOKING if it has no end time
+     * @return the chosen packed candidate, or SpotCandidates.NONE if there are none
+     */
+    long select(SpotCandidates candidates, int requestedSlots);
+    
+    enum Builtin implements AllocationStrategy {
+        /** Longest free run, smallest spot number on ties - the original assignment rule */
+        LONGEST_FIRST {
+            @Override
+            public long select(SpotCandidates candidates, int requestedSlots) {
+                return candidates.selectLongest();
+            }
+        },
+        /** Shortest run that covers the request, keeping long runs for long bookings */
+        BEST_FIT {
+            @Override
+            public long select(SpotCandidates candidates, int requestedSlots) {
+                return candidates.selectBestFit(requestedSlots);
+            }
+        },
+        /** Smallest spot number whose run covers the request */
+        LOWEST_NUMBER {
+            @Override
+            public long select(SpotCandidates candidates, int requestedSlots) {
+                return candidates.selectFirstFit(requestedSlots);
+            }
+        }
+    }
+    
+    /**
+     * Get the strategy selected by the parking.allocation system property
+     */
+    static AllocationStrategy current() {
+        return Builtin.valueOf(System.getProperty("parking.allocation", Builtin.LONGEST_FIRST.name()).trim().toUpperCase());
+    }
+}
@@ -0,0 +1,112 @@
+package parking.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Map;
+import parking.model.CurrentSpotAvailability;
+import parking.model.ParkingAvailabilitySummary;
+import parking.util.LotConfig;
+import parking.util.TimeUtils;
+
+/**
+ * Immutable, versioned copy of a lot's occupancy for readers
+ *
+ * The lot's writer publishes a new view after each batch of bookings (see
+ * OccupancyState.publishView) through a single volatile reference. Readers take that reference
+ * once and query it without locks or database access, so every answer comes from one consistent
+ * state. The bitsets are never modified after the view is built.
+ */
+public final class AvailabilityView {
+    
+    private final int lotId;
+    private final int spotCount;
+    private final long version;
+    private final Map<LocalDate, long[]> days;
+    
+    private static final ThreadLocal<SpotCandidates> CANDIDATES =
+        ThreadLocal.withInitial(() -> new SpotCandidates(LotConfig.DEFAULT_CAPACITY));
+    
+    AvailabilityView(int lotId, int spotCount, long version, Map<LocalDate, long[]> days) {
+        this.lotId = lotId;
+        this.spotCount = spotCount;
+        this.version = version;
+        this.days = Collections.unmodifiableMap(days);
+    }
+    
+    // Getters
+    public int getLotId() { return lotId; }
+    public int getSpotCount() { return spotCount; }
+    public long getVersion() { return version; }
+    Map<LocalDate, long[]> getDays() { return days; }
+    
+    public boolean isOccupied(LocalDate date, int spotNumber, int slot) {
+        long[] words = days.get(date);
+        return words != null && OccupancyState.isSet(words, spotNumber, slot);
+    }
+    
+    public int countFreeSpots(LocalDate date, int slot) {
+        return OccupancyState.countFreeSpots(days.get(date), spotCount, slot);
+    }
+    
+    /**
+     * Free run from fromSlot on date, continuing onto the following dates up to maxSlots
+     */
+    public int freeRunLength(LocalDate date, int spotNumber, int fromSlot, int maxSlots) {
+        return OccupancyState.withinDay(fromSlot, maxSlots)
+            ? OccupancyState.freeRunLength(days.get(date), spotNumber, fromSlot, maxSlots)
+            : OccupancyState.freeRunLength(OccupancyState.span(days, date, fromSlot, maxSlots), spotNumber, fromSlot, maxSlots);
+    }
+    
+    public int findLongestFreeSpot(LocalDate date, int fromSlot, int maxSlots) {
+        return OccupancyState.withinDay(fromSlot, maxSlots)
+            ? OccupancyState.findLongestFreeSpot(days.get(date), spotCount, fromSlot, maxSlots)
+            : OccupancyState.findLongestFreeSpot(OccupancyState.span(days, date, fromSlot, maxSlots), spotCount, fromSlot, maxSlots);
+    }
+    
+    public void collectFreeRuns(LocalDate date, int fromSlot, int maxSlots, SpotCandidates candidates) {
+        if (OccupancyState.withinDay(fromSlot, maxSlots)) {
+            OccupancyState.collectFreeRuns(days.get(date), spotCount, fromSlot, maxSlots, candidates);
+        } else {
+            OccupancyState.collectFreeRuns(OccupancyState.span(days, date, fromSlot, maxSlots), spotCount, fromSlot, maxSlots, candidates);
+        }
+    }
+    
+    /**
+     * Find the spot a Park Now at the given time would get - same choice as the lot's writer makes
+     * with the same strategy
+     */
+    public ParkNowResult checkAvailable(LocalDate date, LocalTime time, AllocationStrategy strategy) {
+        int fromSlot = TimeUtils.slotOf(time);
+        SpotCandidates candidates = CANDIDATES.get();
+        collectFreeRuns(date, fromSlot, TimeUtils.PARK_NOW_MAX_SLOTS, candidates);
+        
+        long chosen = strategy.select(candidates, TimeUtils.PARK_NOW_MAX_SLOTS);
+        if (chosen == SpotCandidates.NONE) {
+            return ParkNowResult.noAvailability();
+        }
+        
+        int slots = SpotCandidates.runLengthOf(chosen);
+        CurrentSpotAvailability spot = new CurrentSpotAvailability(
+            lotId,
+            SpotCandidates.spotOf(chosen),
+            slots * TimeUtils.HOURS_PER_SLOT,
+            time,
+            TimeUtils.slotToTime(fromSlot + slots)
+        );
+        return ParkNowResult.success(spot, candidates.size());
+    }
+    
+    /**
+     * Get the free and occupied spot counts at the given time
+     */
+    public ParkingAvailabilitySummary getSummary(LocalDate date, LocalTime time) {
+        int free = countFreeSpots(date, TimeUtils.slotOf(time));
+        return new ParkingAvailabilitySummary(lotId, spotCount, free, spotCount - free, time);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("AvailabilityView{lot=%d, version=%d, days=%d}", lotId, version, days.size());
+    }
+}
@@ -0,0 +1,102 @@
+package parking.service;
+
+import java.time.LocalDate;
+import parking.util.TimeUtils;
+
+/**
+ * A change to spot occupancy: a car parked, a prebooking made or cancelled, or a spot released.
+ * Covers the slot range [fromSlot, toSlot) of one spot counted from date - toSlot past 96 runs
+ * into the following dates.
+ */
+public class BookingEvent {
+    
+    /**
+     * Event types - the code is the value stored in the booking journal
+     */
+    public enum Type {
+        PARK(1),
+        PREBOOK(2),
+        CANCEL(3),
+        RELEASE(4);
+        
+        private final byte code;
+        
+        Type(int code) {
+            this.code = (byte) code;
+        }
+        
+        public byte getCode() { return code; }
+        
+        public boolean occupies() {
+            return this == PARK || this == PREBOOK;
+        }
+        
+        public static Type fromCode(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private long sequence;
+    private Type type;
+    private LocalDate date;
+    private int spotNumber;
+    private int fromSlot;
+    private int toSlot;
+    private String customerId;
+    
+    public BookingEvent() {
+    }
+    
+    public BookingEvent(Type type, LocalDate date, int spotNumber, int fromSlot, int toSlot, String customerId) {
+        set(type, date, spotNumber, fromSlot, toSlot, customerId);
+    }
+    
+    /**
+     * Overwrite all fields, so instances can be reused
+     */
+    public void set(Type type, LocalDate date, int spotNumber, int fromSlot, int toSlot, String customerId) {
+        this.type = type;
+        this.date = date;
+        this.spotNumber = spotNumber;
+        this.fromSlot = fromSlot;
+        this.toSlot = toSlot;
+        this.customerId = customerId;
+    }
+    
+    // Getters and setters
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+    
+    public Type getType() { return type; }
+    public LocalDate getDate() { return date; }
+    public int getSpotNumber() { return spotNumber; }
+    public int getFromSlot() { return fromSlot; }
+    public int getToSlot() { return toSlot; }
+    public String getCustomerId() { return customerId; }
+    
+    /**
+     * Last date the event covers - later than date when it runs past midnight
+     */
+    public LocalDate getLastDate() {
+        return TimeUtils.dateOfSlot(date, Math.max(fromSlot, toSlot - 1));
+    }
+    
+    /**
+     * Check if the other event covers exactly the same spot and slots
+     */
+    public boolean sameRange(BookingEvent other) {
+        return date.equals(other.date) && spotNumber == other.spotNumber &&
+               fromSlot == other.fromSlot && toSlot == other.toSlot;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("BookingEvent{seq=%d, type=%s, date=%s, spot=#%d, slots=%d-%d, customer='%s'}",
+                           sequence, type, date, spotNumber, fromSlot, toSlot, customerId);
+    }
+}
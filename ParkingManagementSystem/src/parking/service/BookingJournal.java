@@ -0,0 +1,441 @@
+package parking.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of booking events
+ *
+ * Layout: a 16-byte header (magic, version, base sequence) followed by records of
+ * [int payload length][int CRC32 of payload][payload], terminated by a zero length.
+ * A record whose checksum does not match (a torn write after a crash) ends the journal.
+ * Version 2 stores slots as shorts, since a booking past midnight ends after slot 127; a
+ * version 1 journal is rewritten as version 2 when it is opened.
+ *
+ * Appends are forced to disk in batches: after syncBatchSize appends, or by a background
+ * flusher every syncIntervalMillis, whichever comes first.
+ */
+public class BookingJournal implements Closeable {
+    
+    private static final int MAGIC = 0x504B4A4C; // "PKJL"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int FIXED_PAYLOAD_SIZE = 21; // seq 8, type 1, epochDay 4, spot 2, from 2, to 2, customer length 2
+    private static final int V1_FIXED_PAYLOAD_SIZE = 19; // Slots as bytes
+    
+    private final Path path;
+    private final int syncBatchSize;
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long nextSequence;
+    private int unsyncedAppends;
+    private int recordCount;
+    private int recordVersion = VERSION; // Layout of the records in the mapped file
+    
+    private BookingJournal(Path path, int initialSizeBytes, int syncBatchSize, long syncIntervalMillis) throws IOException {
+        this.path = path;
+        this.syncBatchSize = syncBatchSize;
+        
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), initialSizeBytes));
+        
+        if (buffer.getInt(0) != MAGIC) {
+            writeHeader(buffer, 1);
+        }
+        
+        finishInterruptedCompaction();
+        recordVersion = buffer.getInt(4);
+        if (recordVersion != 1 && recordVersion != VERSION) {
+            throw new IOException("Unsupported booking journal version " + recordVersion + " in " + path);
+        }
+        scan();
+        if (recordVersion != VERSION) {
+            compact(LocalDate.MIN, 0); // Rewrites every record in the current layout
+        }
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::syncIfNeeded, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Open (or create) a journal
+     */
+    public static BookingJournal open(Path path, int initialSizeBytes, int syncBatchSize, long syncIntervalMillis)
+            throws IOException {
+        return new BookingJournal(path, initialSizeBytes, syncBatchSize, syncIntervalMillis);
+    }
+    
+    /**
+     * Get the journal path configured by the parking.journal.path system property
+     */
+    public static Path defaultPath() {
+        return Paths.get(System.getProperty("parking.journal.path", "parking-data/booking.journal"));
+    }
+    
+    /**
+     * Open the journal configured by parking.journal.* system properties
+     */
+    public static BookingJournal openFromSystemProperties() throws IOException {
+        return openFromSystemProperties(defaultPath());
+    }
+    
+    /**
+     * Open a journal at the given path, sized and synced by parking.journal.* system properties
+     */
+    public static BookingJournal openFromSystemProperties(Path path) throws IOException {
+        return open(
+            path,
+            Integer.getInteger("parking.journal.initialSizeMb", 16) * 1024 * 1024,
+            Integer.getInteger("parking.journal.syncBatchSize", 64),
+            Long.getLong("parking.journal.syncIntervalMs", 20)
+        );
+    }
+    
+    /**
+     * Append an event; assigns and returns its sequence number
+     */
+    public synchronized long append(BookingEvent event) throws IOException {
+        byte[] customer = event.getCustomerId() != null
+            ? event.getCustomerId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int payloadSize = FIXED_PAYLOAD_SIZE + customer.length;
+        int recordSize = RECORD_HEADER_SIZE + payloadSize;
+        
+        ensureCapacity(writePosition + recordSize + 4);
+        
+        long sequence = nextSequence++;
+        int payloadStart = writePosition + RECORD_HEADER_SIZE;
+        
+        buffer.position(payloadStart);
+        buffer.putLong(sequence);
+        buffer.put(event.getType().getCode());
+        buffer.putInt((int) event.getDate().toEpochDay());
+        buffer.putShort((short) event.getSpotNumber());
+        buffer.putShort((short) event.getFromSlot());
+        buffer.putShort((short) event.getToSlot());
+        buffer.putShort((short) customer.length);
+        buffer.put(customer);
+        buffer.putInt(0); // Terminator for readers
+        
+        crc.reset();
+        crc.update(buffer.slice(payloadStart, payloadSize));
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.putInt(writePosition, payloadSize); // Length last - the record becomes visible
+        
+        writePosition += recordSize;
+        recordCount++;
+        event.setSequence(sequence);
+        
+        if (++unsyncedAppends >= syncBatchSize) {
+            sync();
+        }
+        return sequence;
+    }
+    
+    /**
+     * Force all appended events to disk
+     */
+    public synchronized void sync() {
+        if (unsyncedAppends > 0) {
+            buffer.force();
+            unsyncedAppends = 0;
+        }
+    }
+    
+    private void syncIfNeeded() {
+        try {
+            sync();
+        } catch (Exception e) {
+            System.err.println("Booking journal sync failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Replay all events with a sequence greater than afterSequence, in order
+     *
+     * @return the number of events replayed
+     */
+    public synchronized int replay(long afterSequence, Consumer<BookingEvent> handler) {
+        int replayed = 0;
+        BookingEvent event = new BookingEvent();
+        int position = HEADER_SIZE;
+        
+        while (true) {
+            int next = readRecord(buffer, position, event);
+            if (next < 0) {
+                break;
+            }
+            if (event.getSequence() > afterSequence) {
+                handler.accept(event);
+                replayed++;
+            }
+            position = next;
+        }
+        return replayed;
+    }
+    
+    /**
+     * Rewrite the journal without events that no longer matter: events that end before keepFrom,
+     * events already covered by a snapshot (sequence <= coveredSequence) and bookings that were
+     * later cancelled or released in full. Sequence numbers are preserved.
+     */
+    public synchronized void compact(LocalDate keepFrom, long coveredSequence) throws IOException {
+        List<BookingEvent> live = new ArrayList<>();
+        replay(coveredSequence, event -> {
+            if (event.getLastDate().isBefore(keepFrom)) {
+                return;
+            }
+            BookingEvent copy = copyOf(event);
+            if (!copy.getType().occupies() && live.removeIf(e -> e.getType().occupies() && e.sameRange(copy))) {
+                return;
+            }
+            live.add(copy);
+        });
+        
+        int before = recordCount;
+        rewrite(live, nextSequence);
+        System.out.printf("Booking journal compacted: %d -> %d events%n", before, recordCount);
+    }
+    
+    /**
+     * Drop every event and start the sequence again at 1 - for re-seeding a journal that can no
+     * longer be replayed on its own
+     */
+    public synchronized void reset() throws IOException {
+        rewrite(List.of(), 1);
+    }
+    
+    /**
+     * Replace the journal's records, through a compaction image so a crash midway can be redone
+     */
+    private void rewrite(List<BookingEvent> live, long baseSequence) throws IOException {
+        // Sized from the records - upgraded records are larger than the ones they replace
+        int size = HEADER_SIZE + 4;
+        for (BookingEvent event : live) {
+            size += recordSize(event);
+        }
+        ByteBuffer compacted = ByteBuffer.allocate(size);
+        writeHeader(compacted, baseSequence);
+        compacted.position(HEADER_SIZE);
+        for (BookingEvent event : live) {
+            writeRecord(compacted, event);
+        }
+        compacted.putInt(0);
+        compacted.flip();
+        
+        // Write the compacted image next to the journal first, so a crash while copying it in can be redone
+        Path temp = compactionPath().resolveSibling(compactionPath().getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (compacted.hasRemaining()) {
+                out.write(compacted);
+            }
+            out.force(true);
+        }
+        Files.move(temp, compactionPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        finishInterruptedCompaction();
+        recordVersion = VERSION;
+        scan();
+    }
+    
+    /**
+     * Get the sequence of the oldest event kept, or the next sequence if the journal is empty.
+     * Above 1 once compaction dropped events - possibly events only a snapshot still covers.
+     */
+    public synchronized long getFirstSequence() {
+        BookingEvent event = new BookingEvent();
+        return readRecord(buffer, HEADER_SIZE, event) < 0 ? nextSequence : event.getSequence();
+    }
+    
+    public synchronized long getLastSequence() { return nextSequence - 1; }
+    public synchronized int getRecordCount() { return recordCount; }
+    public synchronized int getSizeBytes() { return writePosition; }
+    
+    @Override
+    public synchronized void close() {
+        flusher.shutdown();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing booking journal: " + e.getMessage());
+        }
+    }
+    
+    // Internals
+    
+    /**
+     * Find the end of the valid records and the next sequence number
+     */
+    private void scan() {
+        nextSequence = Math.max(1, buffer.getLong(8));
+        recordCount = 0;
+        
+        BookingEvent event = new BookingEvent();
+        int position = HEADER_SIZE;
+        while (true) {
+            int next = readRecord(buffer, position, event);
+            if (next < 0) {
+                break;
+            }
+            nextSequence = Math.max(nextSequence, event.getSequence() + 1);
+            recordCount++;
+            position = next;
+        }
+        
+        writePosition = position;
+        if (writePosition + 4 <= buffer.capacity()) {
+            buffer.putInt(writePosition, 0); // Cut off a torn tail
+        }
+        unsyncedAppends = 0;
+    }
+    
+    /**
+     * Decode the record at position into event
+     *
+     * @return the position of the next record, or -1 at the end of the journal
+     */
+    private int readRecord(ByteBuffer source, int position, BookingEvent event) {
+        if (position + RECORD_HEADER_SIZE > source.capacity()) {
+            return -1;
+        }
+        
+        int payloadSize = source.getInt(position);
+        boolean byteSlots = recordVersion == 1;
+        if (payloadSize < (byteSlots ? V1_FIXED_PAYLOAD_SIZE : FIXED_PAYLOAD_SIZE) || position + RECORD_HEADER_SIZE + payloadSize > source.capacity()) {
+            return -1;
+        }
+        
+        int payloadStart = position + RECORD_HEADER_SIZE;
+        crc.reset();
+        crc.update(source.slice(payloadStart, payloadSize));
+        if ((int) crc.getValue() != source.getInt(position + 4)) {
+            return -1;
+        }
+        
+        ByteBuffer payload = source.slice(payloadStart, payloadSize);
+        long sequence = payload.getLong();
+        BookingEvent.Type type = BookingEvent.Type.fromCode(payload.get());
+        LocalDate date = LocalDate.ofEpochDay(payload.getInt());
+        int spot = payload.getShort();
+        int fromSlot = byteSlots ? payload.get() : payload.getShort();
+        int toSlot = byteSlots ? payload.get() : payload.getShort();
+        byte[] customer = new byte[payload.getShort()];
+        payload.get(customer);
+        
+        if (type == null) {
+            return -1;
+        }
+        
+        event.set(type, date, spot, fromSlot, toSlot, customer.length > 0 ? new String(customer, StandardCharsets.UTF_8) : null);
+        event.setSequence(sequence);
+        return payloadStart + payloadSize;
+    }
+    
+    private static int recordSize(BookingEvent event) {
+        int customerLength = event.getCustomerId() != null
+            ? event.getCustomerId().getBytes(StandardCharsets.UTF_8).length : 0;
+        return RECORD_HEADER_SIZE + FIXED_PAYLOAD_SIZE + customerLength;
+    }
+    
+    private void writeRecord(ByteBuffer target, BookingEvent event) {
+        byte[] customer = event.getCustomerId() != null
+            ? event.getCustomerId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int payloadSize = FIXED_PAYLOAD_SIZE + customer.length;
+        int recordStart = target.position();
+        
+        target.position(recordStart + RECORD_HEADER_SIZE);
+        target.putLong(event.getSequence());
+        target.put(event.getType().getCode());
+        target.putInt((int) event.getDate().toEpochDay());
+        target.putShort((short) event.getSpotNumber());
+        target.putShort((short) event.getFromSlot());
+        target.putShort((short) event.getToSlot());
+        target.putShort((short) customer.length);
+        target.put(customer);
+        
+        crc.reset();
+        crc.update(target.slice(recordStart + RECORD_HEADER_SIZE, payloadSize));
+        target.putInt(recordStart, payloadSize);
+        target.putInt(recordStart + 4, (int) crc.getValue());
+    }
+    
+    private static void writeHeader(ByteBuffer target, long baseSequence) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, VERSION);
+        target.putLong(8, baseSequence);
+        target.putInt(HEADER_SIZE, 0);
+    }
+    
+    private static BookingEvent copyOf(BookingEvent event) {
+        BookingEvent copy = new BookingEvent(event.getType(), event.getDate(), event.getSpotNumber(),
+                                             event.getFromSlot(), event.getToSlot(), event.getCustomerId());
+        copy.setSequence(event.getSequence());
+        return copy;
+    }
+    
+    private Path compactionPath() {
+        return path.resolveSibling(path.getFileName() + ".compact");
+    }
+    
+    /**
+     * Copy a completed compaction image over the journal. The mapped file is rewritten in place
+     * rather than renamed, because a mapped file cannot be replaced on every platform.
+     */
+    private void finishInterruptedCompaction() throws IOException {
+        Path image = compactionPath();
+        if (!Files.exists(image)) {
+            return;
+        }
+        
+        byte[] bytes = Files.readAllBytes(image);
+        ensureCapacity(bytes.length);
+        buffer.position(0);
+        buffer.put(bytes);
+        buffer.force();
+        Files.delete(image);
+    }
+    
+    private void ensureCapacity(int required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        
+        long newSize = buffer.capacity();
+        while (newSize < required) {
+            newSize *= 2;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+}
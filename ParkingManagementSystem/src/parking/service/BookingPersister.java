@@ -0,0 +1,352 @@
+package parking.service;
+
+import parking.model.ParkingOrder;
+import parking.util.SlotSchema;
+import parking.util.TimeUtils;
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the bookings of one lot to the database in batches
+ *
+ * Bookings are added to JDBC batches on statements prepared once, and flush() sends all of
+ * them in a single transaction. The availability updates are the same ones ParkNowService makes
+ * for a single booking, over a {timeline} range so a booking past midnight is one statement.
+ * Used only by the lot's booking consumer, so it is not thread-safe.
+ */
+public class BookingPersister implements AutoCloseable {
+    private final Connection connection;
+    private final SlotSchema schema = SlotSchema.current();
+    private final int lotId;
+    
+    private final PreparedStatement insertOrder;
+    private final PreparedStatement occupySummary;
+    private final PreparedStatement occupySpot;
+    private final PreparedStatement deleteOrder;
+    private final PreparedStatement releaseSummary;
+    private final PreparedStatement releaseSpot;
+    private final PreparedStatement findOrder;
+    private int pending;
+    
+    public BookingPersister(Connection connection, int lotId) throws SQLException {
+        this.connection = connection;
+        this.lotId = lotId;
+        
+        insertOrder = connection.prepareStatement("""
+            INSERT INTO parking_orders
+            (lot_id, parking_spot_number, subscriber_id, date_of_parking, date_placing_order,
+             time_of_car_deposit, time_of_retrieval_time, date_of_retrieval)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """);
+        
+        occupySummary = connection.prepareStatement(schema.sql("""
+            UPDATE {summary_table}
+            SET occupied_spots = occupied_spots + 1,
+                free_spots = free_spots - 1,
+                last_updated = CURRENT_TIMESTAMP
+            WHERE lot_id = ?
+              AND {timeline_range}
+            """));
+        
+        occupySpot = connection.prepareStatement(schema.sql("""
+            UPDATE {spot_table}
+            SET is_occupied = TRUE,
+                reserved_by = ?
+            WHERE lot_id = ?
+              AND parking_spot_number = ?
+              AND {timeline_range}
+            """));
+        
+        deleteOrder = connection.prepareStatement("DELETE FROM parking_orders WHERE order_id = ? AND lot_id = ?");
+        
+        // Only slots the customer actually holds are given back - prebookings never marked any
+        releaseSummary = connection.prepareStatement(schema.sql("""
+            UPDATE {summary_table} pa
+            SET occupied_spots = occupied_spots - 1,
+                free_spots = free_spots + 1,
+                last_updated = CURRENT_TIMESTAMP
+            WHERE pa.lot_id = ?
+              AND pa.{timeline_range}
+              AND EXISTS (SELECT 1 FROM {spot_table} sa
+                          WHERE sa.lot_id = pa.lot_id
+                            AND sa.{day} = pa.{day}
+                            AND sa.{timeline} = pa.{timeline}
+                            AND sa.parking_spot_number = ?
+                            AND sa.reserved_by = ?)
+            """));
+        
+        releaseSpot = connection.prepareStatement(schema.sql("""
+            UPDATE {spot_table}
+            SET is_occupied = FALSE,
+                reserved_by = NULL
+            WHERE lot_id = ?
+              AND parking_spot_number = ?
+              AND {timeline_range}
+              AND reserved_by = ?
+            """));
+        
+        findOrder = connection.prepareStatement("""
+            SELECT order_id, parking_spot_number, subscriber_id, date_of_parking,
+                   time_of_car_deposit, time_of_retrieval_time, date_of_retrieval
+            FROM parking_orders
+            WHERE lot_id = ?
+              AND subscriber_id = ?
+              AND date_of_parking = ?
+              AND (? IS NULL OR time_of_car_deposit = ?)
+            ORDER BY time_of_car_deposit
+            LIMIT 1
+            """);
+    }
+    
+    public int getPendingCount() { return pending; }
+    
+    /**
+     * Add a Park Now booking of slots [fromSlot, toSlot) of date - toSlot past 96 runs into the
+     * following days: the order plus its availability updates
+     */
+    public void addPark(int spotNumber, String customerId, LocalDate date, int fromSlot, int toSlot)
+            throws SQLException {
+        addOrder(spotNumber, customerId, date, fromSlot, toSlot);
+        
+        occupySummary.setInt(1, lotId);
+        schema.setTimelineRange(occupySummary, 2, date, fromSlot, toSlot);
+        occupySummary.addBatch();
+        
+        occupySpot.setString(1, customerId);
+        occupySpot.setInt(2, lotId);
+        occupySpot.setInt(3, spotNumber);
+        schema.setTimelineRange(occupySpot, 4, date, fromSlot, toSlot);
+        occupySpot.addBatch();
+    }
+    
+    /**
+     * Add a prebooking of slots [fromSlot, toSlot) of date - only the order is stored
+     */
+    public void addPrebook(int spotNumber, String customerId, LocalDate date, int fromSlot, int toSlot)
+            throws SQLException {
+        addOrder(spotNumber, customerId, date, fromSlot, toSlot);
+    }
+    
+    private void addOrder(int spotNumber, String customerId, LocalDate date, int fromSlot, int toSlot)
+            throws SQLException {
+        insertOrder.setInt(1, lotId);
+        insertOrder.setInt(2, spotNumber);
+        insertOrder.setString(3, customerId);
+        insertOrder.setDate(4, Date.valueOf(date));
+        insertOrder.setDate(5, Date.valueOf(LocalDate.now()));
+        insertOrder.setTime(6, Time.valueOf(TimeUtils.slotToTime(fromSlot)));
+        insertOrder.setTime(7, Time.valueOf(TimeUtils.slotToTime(toSlot)));
+        insertOrder.setDate(8, Date.valueOf(TimeUtils.dateOfSlot(date, toSlot)));
+        insertOrder.addBatch();
+        pending++;
+    }
+    
+    /**
+     * Add a cancellation: delete the order and free the slots it holds
+     */
+    public void addCancel(ParkingOrder order) throws SQLException {
+        int fromSlot = order.getStartSlot();
+        int toSlot = order.getEndSlot();
+        
+        deleteOrder.setInt(1, order.getOrderId());
+        deleteOrder.setInt(2, lotId);
+        deleteOrder.addBatch();
+        
+        // Before the spot rows lose reserved_by
+        releaseSummary.setInt(1, lotId);
+        int next = schema.setTimelineRange(releaseSummary, 2, order.getDateOfParking(), fromSlot, toSlot);
+        releaseSummary.setInt(next, order.getParkingSpotNumber());
+        releaseSummary.setString(next + 1, order.getSubscriberId());
+        releaseSummary.addBatch();
+        
+        releaseSpot.setInt(1, lotId);
+        releaseSpot.setInt(2, order.getParkingSpotNumber());
+        next = schema.setTimelineRange(releaseSpot, 3, order.getDateOfParking(), fromSlot, toSlot);
+        releaseSpot.setString(next, order.getSubscriberId());
+        releaseSpot.addBatch();
+        pending++;
+    }
+    
+    /**
+     * Find a customer's order on a date - the earliest one, or the one starting at startTime if given
+     *
+     * @return the order, or null if there is none
+     */
+    public ParkingOrder findOrder(String customerId, LocalDate date, LocalTime startTime) throws SQLException {
+        findOrder.setInt(1, lotId);
+        findOrder.setString(2, customerId);
+        findOrder.setDate(3, Date.valueOf(date));
+        Time start = startTime != null ? Time.valueOf(startTime) : null;
+        findOrder.setTime(4, start);
+        findOrder.setTime(5, start);
+        
+        try (ResultSet rs = findOrder.executeQuery()) {
+            return rs.next() ? readOrder(rs) : null;
+        }
+    }
+    
+    /**
+     * Find the prebookings starting at or after notBefore, up to and including the date until
+     */
+    public List<ParkingOrder> findPrebookingsFrom(LocalDateTime notBefore, LocalDate until) throws SQLException {
+        String query = """
+            SELECT order_id, parking_spot_number, subscriber_id, date_of_parking,
+                   time_of_car_deposit, time_of_retrieval_time, date_of_retrieval
+            FROM parking_orders
+            WHERE lot_id = ?
+              AND date_of_parking BETWEEN ? AND ?
+              AND (date_of_parking > ? OR time_of_car_deposit >= ?)
+            ORDER BY date_of_parking, time_of_car_deposit
+            """;
+        
+        List<ParkingOrder> orders = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setInt(1, lotId);
+            stmt.setDate(2, Date.valueOf(notBefore.toLocalDate()));
+            stmt.setDate(3, Date.valueOf(until));
+            stmt.setDate(4, Date.valueOf(notBefore.toLocalDate()));
+            stmt.setTime(5, Time.valueOf(notBefore.toLocalTime()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(readOrder(rs));
+                }
+            }
+        }
+        return orders;
+    }
+    
+    private ParkingOrder readOrder(ResultSet rs) throws SQLException {
+        ParkingOrder order = new ParkingOrder(
+            rs.getInt("order_id"),
+            lotId,
+            rs.getInt("parking_spot_number"),
+            rs.getString("subscriber_id"),
+            rs.getDate("date_of_parking").toLocalDate(),
+            rs.getTime("time_of_car_deposit").toLocalTime(),
+            rs.getTime("time_of_retrieval_time").toLocalTime()
+        );
+        Date retrievalDate = rs.getDate("date_of_retrieval");
+        if (retrievalDate != null) {
+            order.setDateOfRetrieval(retrievalDate.toLocalDate());
+        }
+        return order;
+    }
+    
+    /**
+     * Move prebookings to their new spots in one transaction. Prebookings hold no rows in the
+     * availability tables, so only the orders change.
+     *
+     * @return true if committed; false if rolled back because an order was gone or had already moved
+     */
+    public boolean reassign(List<SpotReassignment> moves) {
+        String update = "UPDATE parking_orders SET parking_spot_number = ? " +
+                        "WHERE order_id = ? AND lot_id = ? AND parking_spot_number = ?";
+        
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(update)) {
+                for (SpotReassignment move : moves) {
+                    stmt.setInt(1, move.getNewSpotNumber());
+                    stmt.setInt(2, move.getOrder().getOrderId());
+                    stmt.setInt(3, lotId);
+                    stmt.setInt(4, move.getOldSpotNumber());
+                    stmt.addBatch();
+                }
+                for (int count : stmt.executeBatch()) {
+                    if (count == 0) {
+                        connection.rollback();
+                        System.err.println("Lot " + lotId + " re-packing rolled back - an order changed meanwhile");
+                        return false;
+                    }
+                }
+            }
+            connection.commit();
+            return true;
+            
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                rollbackEx.printStackTrace();
+            }
+            System.err.println("Error re-packing lot " + lotId + " prebookings: " + e.getMessage());
+            return false;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Write every added booking in one transaction
+     *
+     * @return true if committed; false if rolled back, in which case none of the bookings were written
+     */
+    public boolean flush() {
+        if (pending == 0) {
+            return true;
+        }
+        
+        try {
+            connection.setAutoCommit(false);
+            // Orders go first, the deletes of cancelled orders before their availability is freed
+            insertOrder.executeBatch();
+            occupySummary.executeBatch();
+            occupySpot.executeBatch();
+            deleteOrder.executeBatch();
+            releaseSummary.executeBatch();
+            releaseSpot.executeBatch();
+            connection.commit();
+            return true;
+            
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                rollbackEx.printStackTrace();
+            }
+            System.err.println("Error writing lot " + lotId + " booking batch: " + e.getMessage());
+            return false;
+        } finally {
+            clearBatches();
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private void clearBatches() {
+        pending = 0;
+        for (PreparedStatement stmt : new PreparedStatement[] { insertOrder, occupySummary, occupySpot,
+                                                                deleteOrder, releaseSummary, releaseSpot }) {
+            try {
+                stmt.clearBatch();
+            } catch (SQLException e) {
+                System.err.println("Error clearing booking batch: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        for (PreparedStatement stmt : new PreparedStatement[] { insertOrder, occupySummary, occupySpot,
+                                                                deleteOrder, releaseSummary, releaseSpot, findOrder }) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing booking statement: " + e.getMessage());
+            }
+        }
+    }
+}
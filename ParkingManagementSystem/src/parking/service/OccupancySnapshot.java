@@ -0,0 +1,199 @@
+package parking.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the in-memory occupancy, used for a fast warm restart
+ *
+ * Layout: a 40-byte header (magic, version, spot count, day count, covered journal sequence,
+ * creation time, CRC32 of the body) followed by one block per date: [int epochDay][int entries]
+ * and, for every spot with at least one occupied slot, [short spot][long][long]. Empty spots and
+ * empty dates are not stored, so a sparse horizon stays small.
+ *
+ * Restoring maps the file read-only and copies the words straight into the occupancy bitsets.
+ */
+public class OccupancySnapshot {
+    
+    private static final int MAGIC = 0x504B534E; // "PKSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int ENTRY_SIZE = 2 + OccupancyState.WORDS_PER_SPOT * 8;
+    
+    private final long journalSequence;
+    private final Instant createdAt;
+    private final int dayCount;
+    private final long sizeBytes;
+    
+    private OccupancySnapshot(long journalSequence, Instant createdAt, int dayCount, long sizeBytes) {
+        this.journalSequence = journalSequence;
+        this.createdAt = createdAt;
+        this.dayCount = dayCount;
+        this.sizeBytes = sizeBytes;
+    }
+    
+    /**
+     * Get the snapshot path configured by the parking.snapshot.path system property
+     */
+    public static Path defaultPath() {
+        return Paths.get(System.getProperty("parking.snapshot.path", "parking-data/occupancy.snapshot"));
+    }
+    
+    /**
+     * Write a snapshot of the state, replacing any previous one atomically.
+     *
+     * journalSequence must be read before this call: bookings are applied to the state before
+     * they are journaled, so every event up to that sequence is in the copy. Later events that
+     * are also in the copy are harmless - replaying them again yields the same bits.
+     */
+    public static OccupancySnapshot write(Path path, OccupancyState state, long journalSequence) throws IOException {
+        Map<LocalDate, long[]> days = state.copyDays();
+        int spotCount = state.getSpotCount();
+        
+        int size = HEADER_SIZE;
+        int dayCount = 0;
+        for (long[] words : days.values()) {
+            int entries = countNonEmptySpots(words, spotCount);
+            if (entries > 0) {
+                size += 8 + entries * ENTRY_SIZE;
+                dayCount++;
+            }
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.position(HEADER_SIZE);
+        for (Map.Entry<LocalDate, long[]> day : days.entrySet()) {
+            long[] words = day.getValue();
+            int entries = countNonEmptySpots(words, spotCount);
+            if (entries == 0) {
+                continue;
+            }
+            
+            buffer.putInt((int) day.getKey().toEpochDay());
+            buffer.putInt(entries);
+            for (int spot = 1; spot <= spotCount; spot++) {
+                int base = (spot - 1) * OccupancyState.WORDS_PER_SPOT;
+                if (words[base] != 0 || words[base + 1] != 0) {
+                    buffer.putShort((short) spot);
+                    buffer.putLong(words[base]);
+                    buffer.putLong(words[base + 1]);
+                }
+            }
+        }
+        
+        Instant createdAt = Instant.now();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, size - HEADER_SIZE));
+        
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, spotCount);
+        buffer.putInt(12, dayCount);
+        buffer.putLong(16, journalSequence);
+        buffer.putLong(24, createdAt.toEpochMilli());
+        buffer.putInt(32, (int) crc.getValue());
+        buffer.rewind();
+        
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        return new OccupancySnapshot(journalSequence, createdAt, dayCount, size);
+    }
+    
+    /**
+     * Restore a snapshot into the (empty) state
+     *
+     * @return the snapshot header, or null if there is no usable snapshot
+     */
+    public static OccupancySnapshot read(Path path, OccupancyState state) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                System.err.println("Ignoring occupancy snapshot with unknown format: " + path);
+                return null;
+            }
+            if (buffer.getInt(8) != state.getSpotCount()) {
+                System.err.println("Ignoring occupancy snapshot for " + buffer.getInt(8) + " spots: " + path);
+                return null;
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+            if ((int) crc.getValue() != buffer.getInt(32)) {
+                System.err.println("Ignoring corrupt occupancy snapshot: " + path);
+                return null;
+            }
+            
+            int dayCount = buffer.getInt(12);
+            int position = HEADER_SIZE;
+            for (int day = 0; day < dayCount; day++) {
+                long[] words = state.wordsFor(LocalDate.ofEpochDay(buffer.getInt(position)));
+                int entries = buffer.getInt(position + 4);
+                position += 8;
+                
+                for (int entry = 0; entry < entries; entry++) {
+                    int base = (buffer.getShort(position) - 1) * OccupancyState.WORDS_PER_SPOT;
+                    words[base] = buffer.getLong(position + 2);
+                    words[base + 1] = buffer.getLong(position + 10);
+                    position += ENTRY_SIZE;
+                }
+            }
+            
+            return new OccupancySnapshot(buffer.getLong(16), Instant.ofEpochMilli(buffer.getLong(24)),
+                                         dayCount, buffer.capacity());
+            
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading occupancy snapshot: " + e.getMessage());
+            state.clear();
+            return null;
+        }
+    }
+    
+    private static int countNonEmptySpots(long[] words, int spotCount) {
+        int entries = 0;
+        for (int spot = 0; spot < spotCount; spot++) {
+            if (words[spot * OccupancyState.WORDS_PER_SPOT] != 0 || words[spot * OccupancyState.WORDS_PER_SPOT + 1] != 0) {
+                entries++;
+            }
+        }
+        return entries;
+    }
+    
+    // Getters
+    public long getJournalSequence() { return journalSequence; }
+    public Instant getCreatedAt() { return createdAt; }
+    public int getDayCount() { return dayCount; }
+    public long getSizeBytes() { return sizeBytes; }
+    
+    @Override
+    public String toString() {
+        return String.format("OccupancySnapshot{days=%d, size=%d bytes, journalSequence=%d, createdAt=%s}",
+                           dayCount, sizeBytes, journalSequence, createdAt);
+    }
+}
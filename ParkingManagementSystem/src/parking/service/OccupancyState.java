@@ -0,0 +1,483 @@
+package parking.service;
+
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import parking.util.LotConfig;
+import parking.util.SlotSchema;
+import parking.util.TimeUtils;
+
+/**
+ * In-memory occupancy of the spots of one parking lot, as one bitset per date
+ * Each spot has 96 bits per day (one per 15-minute slot), stored in two longs
+ *
+ * Together the dates form one slot timeline: ranges are given from a date, and slots past 96
+ * continue on the following dates (see TimeUtils), so stays past midnight and runs that cross it
+ * are handled like any other. A query whose window stays within its date touches only that
+ * date's bitset; one that crosses midnight looks up each further date once, not once per spot.
+ *
+ * Only the lot's writer changes it; readers use the immutable AvailabilityView it publishes.
+ */
+public class OccupancyState {
+    
+    public static final int SLOTS_PER_DAY = TimeUtils.SLOTS_PER_DAY;
+    static final int WORDS_PER_SPOT = 2;
+    
+    private final int lotId;
+    private final int spotCount;
+    private final Map<LocalDate, long[]> days = new ConcurrentHashMap<>();
+    private final Set<LocalDate> changedDates = new HashSet<>(); // Since the last published view
+    
+    /**
+     * Receives each maximal occupied run of slots
+     */
+    @FunctionalInterface
+    public interface RunConsumer {
+        void accept(LocalDate date, int spotNumber, int fromSlot, int toSlot);
+    }
+    
+    public OccupancyState(int spotCount) {
+        this(LotConfig.DEFAULT_LOT_ID, spotCount);
+    }
+    
+    public OccupancyState(int lotId, int spotCount) {
+        this.lotId = lotId;
+        this.spotCount = spotCount;
+    }
+    
+    public int getLotId() { return lotId; }
+    public int getSpotCount() { return spotCount; }
+    
+    /**
+     * Apply a booking event to the occupancy
+     */
+    public void apply(BookingEvent event) {
+        if (event.getType().occupies()) {
+            occupy(event.getDate(), event.getSpotNumber(), event.getFromSlot(), event.getToSlot());
+        } else {
+            release(event.getDate(), event.getSpotNumber(), event.getFromSlot(), event.getToSlot());
+        }
+    }
+    
+    /**
+     * Occupy [fromSlot, toSlot) of a spot, counted from date's midnight - past 96 on the following dates
+     */
+    public synchronized void occupy(LocalDate date, int spotNumber, int fromSlot, int toSlot) {
+        while (true) {
+            if (fromSlot < SLOTS_PER_DAY) {
+                updateRange(days.computeIfAbsent(date, d -> new long[spotCount * WORDS_PER_SPOT]),
+                            spotNumber, fromSlot, toSlot, true);
+                changedDates.add(date);
+            }
+            if (toSlot <= SLOTS_PER_DAY) {
+                return;
+            }
+            date = date.plusDays(1);
+            fromSlot = Math.max(0, fromSlot - SLOTS_PER_DAY);
+            toSlot -= SLOTS_PER_DAY;
+        }
+    }
+    
+    /**
+     * Release [fromSlot, toSlot) of a spot, counted from date's midnight - past 96 on the following dates
+     */
+    public synchronized void release(LocalDate date, int spotNumber, int fromSlot, int toSlot) {
+        while (true) {
+            long[] words = days.get(date);
+            if (words != null && fromSlot < SLOTS_PER_DAY) {
+                updateRange(words, spotNumber, fromSlot, toSlot, false);
+                changedDates.add(date);
+            }
+            if (toSlot <= SLOTS_PER_DAY) {
+                return;
+            }
+            date = date.plusDays(1);
+            fromSlot = Math.max(0, fromSlot - SLOTS_PER_DAY);
+            toSlot -= SLOTS_PER_DAY;
+        }
+    }
+    
+    private void updateRange(long[] words, int spotNumber, int fromSlot, int toSlot, boolean occupied) {
+        if (spotNumber < 1 || spotNumber > spotCount) {
+            throw new IllegalArgumentException("Spot number must be between 1 and " + spotCount);
+        }
+        
+        setRange(words, spotNumber, fromSlot, toSlot, occupied);
+    }
+    
+    static void setRange(long[] words, int spotNumber, int fromSlot, int toSlot, boolean occupied) {
+        int base = (spotNumber - 1) * WORDS_PER_SPOT;
+        for (int slot = Math.max(0, fromSlot); slot < Math.min(toSlot, SLOTS_PER_DAY); slot++) {
+            long mask = 1L << (slot & 63);
+            if (occupied) {
+                words[base + (slot >> 6)] |= mask;
+            } else {
+                words[base + (slot >> 6)] &= ~mask;
+            }
+        }
+    }
+    
+    public boolean isOccupied(LocalDate date, int spotNumber, int slot) {
+        long[] words = days.get(date);
+        return words != null && isSet(words, spotNumber, slot);
+    }
+    
+    static boolean isSet(long[] words, int spotNumber, int slot) {
+        return (words[(spotNumber - 1) * WORDS_PER_SPOT + (slot >> 6)] & (1L << (slot & 63))) != 0;
+    }
+    
+    /**
+     * Count spots that are free in the given slot
+     */
+    public int countFreeSpots(LocalDate date, int slot) {
+        return countFreeSpots(days.get(date), spotCount, slot);
+    }
+    
+    /**
+     * Count consecutive free slots of a spot starting at fromSlot, up to maxSlots - past midnight if needed
+     */
+    public int freeRunLength(LocalDate date, int spotNumber, int fromSlot, int maxSlots) {
+        return withinDay(fromSlot, maxSlots) ? freeRunLength(days.get(date), spotNumber, fromSlot, maxSlots)
+                                             : freeRunLength(span(days, date, fromSlot, maxSlots), spotNumber, fromSlot, maxSlots);
+    }
+    
+    /**
+     * Find the spot with the longest free run starting at fromSlot (up to maxSlots),
+     * the smallest spot number on ties
+     *
+     * @return the spot number, or 0 if every spot is occupied at fromSlot
+     */
+    public int findLongestFreeSpot(LocalDate date, int fromSlot, int maxSlots) {
+        return withinDay(fromSlot, maxSlots) ? findLongestFreeSpot(days.get(date), spotCount, fromSlot, maxSlots)
+                                             : findLongestFreeSpot(span(days, date, fromSlot, maxSlots), spotCount, fromSlot, maxSlots);
+    }
+    
+    /**
+     * Collect every spot free at fromSlot with its free run (up to maxSlots), for an AllocationStrategy
+     */
+    public void collectFreeRuns(LocalDate date, int fromSlot, int maxSlots, SpotCandidates candidates) {
+        if (withinDay(fromSlot, maxSlots)) {
+            collectFreeRuns(days.get(date), spotCount, fromSlot, maxSlots, candidates);
+        } else {
+            collectFreeRuns(span(days, date, fromSlot, maxSlots), spotCount, fromSlot, maxSlots, candidates);
+        }
+    }
+    
+    // Bitset queries shared with AvailabilityView - a null bitset is a date without bookings.
+    // The long[] forms stop at the end of the day, the long[][] forms run on through a span of dates.
+    
+    static boolean withinDay(int fromSlot, int maxSlots) {
+        return fromSlot + maxSlots <= SLOTS_PER_DAY;
+    }
+    
+    /**
+     * Get the bitsets of the dates a window of maxSlots from fromSlot on date reaches, date's first
+     */
+    static long[][] span(Map<LocalDate, long[]> days, LocalDate date, int fromSlot, int maxSlots) {
+        long[][] span = new long[(fromSlot + Math.max(1, maxSlots) - 1) / SLOTS_PER_DAY + 1][];
+        for (int day = 0; day < span.length; day++) {
+            span[day] = days.get(day == 0 ? date : date.plusDays(day));
+        }
+        return span;
+    }
+    
+    static int countFreeSpots(long[] words, int spotCount, int slot) {
+        if (words == null) {
+            return spotCount;
+        }
+        
+        int free = 0;
+        for (int spot = 1; spot <= spotCount; spot++) {
+            if (!isSet(words, spot, slot)) {
+                free++;
+            }
+        }
+        return free;
+    }
+    
+    static int freeRunLength(long[] words, int spotNumber, int fromSlot, int maxSlots) {
+        int limit = Math.min(SLOTS_PER_DAY, fromSlot + maxSlots);
+        if (words == null) {
+            return Math.max(0, limit - fromSlot);
+        }
+        
+        // Skip to the first occupied slot a word at a time
+        int base = (spotNumber - 1) * WORDS_PER_SPOT;
+        int slot = fromSlot;
+        while (slot < limit) {
+            long word = words[base + (slot >> 6)] >>> (slot & 63);
+            if (word != 0) {
+                slot += Long.numberOfTrailingZeros(word);
+                break;
+            }
+            slot = (slot | 63) + 1;
+        }
+        return Math.max(0, Math.min(slot, limit) - fromSlot);
+    }
+    
+    static int freeRunLength(long[][] span, int spotNumber, int fromSlot, int maxSlots) {
+        int run = 0;
+        for (int day = 0; day < span.length && run < maxSlots; day++) {
+            int from = day == 0 ? fromSlot : 0;
+            int length = freeRunLength(span[day], spotNumber, from, maxSlots - run);
+            run += length;
+            if (from + length < SLOTS_PER_DAY) {
+                break; // Occupied slot, or the window ended, within this date
+            }
+        }
+        return run;
+    }
+    
+    static void collectFreeRuns(long[][] span, int spotCount, int fromSlot, int maxSlots, SpotCandidates candidates) {
+        candidates.clear();
+        for (int spot = 1; spot <= spotCount; spot++) {
+            int length = freeRunLength(span, spot, fromSlot, maxSlots);
+            if (length > 0) {
+                candidates.add(spot, fromSlot, length);
+            }
+        }
+    }
+    
+    static int findLongestFreeSpot(long[][] span, int spotCount, int fromSlot, int maxSlots) {
+        int longestPossible = Math.max(0, Math.min(span.length * SLOTS_PER_DAY, fromSlot + maxSlots) - fromSlot);
+        int bestSpot = 0;
+        int bestLength = 0;
+        
+        for (int spot = 1; spot <= spotCount && bestLength < longestPossible; spot++) {
+            int length = freeRunLength(span, spot, fromSlot, maxSlots);
+            if (length > bestLength) {
+                bestSpot = spot;
+                bestLength = length;
+            }
+        }
+        return bestSpot;
+    }
+    
+    static void collectFreeRuns(long[] words, int spotCount, int fromSlot, int maxSlots, SpotCandidates candidates) {
+        candidates.clear();
+        for (int spot = 1; spot <= spotCount; spot++) {
+            int length = freeRunLength(words, spot, fromSlot, maxSlots);
+            if (length > 0) {
+                candidates.add(spot, fromSlot, length);
+            }
+        }
+    }
+    
+    static int findLongestFreeSpot(long[] words, int spotCount, int fromSlot, int maxSlots) {
+        int longestPossible = Math.max(0, Math.min(SLOTS_PER_DAY, fromSlot + maxSlots) - fromSlot);
+        int bestSpot = 0;
+        int bestLength = 0;
+        
+        for (int spot = 1; spot <= spotCount && bestLength < longestPossible; spot++) {
+            int length = freeRunLength(words, spot, fromSlot, maxSlots);
+            if (length > bestLength) {
+                bestSpot = spot;
+                bestLength = length;
+            }
+        }
+        return bestSpot;
+    }
+    
+    /**
+     * Visit every maximal occupied run within a date, ordered by date then spot - a run across
+     * midnight is visited as one run per date
+     */
+    public void forEachOccupiedRun(RunConsumer consumer) {
+        List<LocalDate> dates = new ArrayList<>(days.keySet());
+        Collections.sort(dates);
+        
+        for (LocalDate date : dates) {
+            long[] words = days.get(date);
+            for (int spot = 1; spot <= spotCount; spot++) {
+                int slot = 0;
+                while (slot < SLOTS_PER_DAY) {
+                    if (!isSet(words, spot, slot)) {
+                        slot++;
+                        continue;
+                    }
+                    int start = slot;
+                    while (slot < SLOTS_PER_DAY && isSet(words, spot, slot)) {
+                        slot++;
+                    }
+                    consumer.accept(date, spot, start, slot);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Count occupied spot-slots across all dates
+     */
+    public long countOccupiedSlots() {
+        long count = 0;
+        for (long[] words : days.values()) {
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+        }
+        return count;
+    }
+    
+    public Set<LocalDate> getDates() {
+        return Collections.unmodifiableSet(days.keySet());
+    }
+    
+    /**
+     * Drop dates before the given date - they can no longer be booked
+     */
+    public synchronized void clearBefore(LocalDate date) {
+        days.keySet().removeIf(d -> d.isBefore(date));
+    }
+    
+    public synchronized void clear() {
+        days.clear();
+    }
+    
+    /**
+     * Copy the bitsets of all dates - each array holds WORDS_PER_SPOT longs per spot
+     */
+    synchronized Map<LocalDate, long[]> copyDays() {
+        Map<LocalDate, long[]> copy = new TreeMap<>();
+        days.forEach((date, words) -> copy.put(date, words.clone()));
+        return copy;
+    }
+    
+    /**
+     * Copy the bitset of one date
+     *
+     * @return the copy, or null if the date has no bookings
+     */
+    synchronized long[] copyOfDay(LocalDate date) {
+        long[] words = days.get(date);
+        return words != null ? words.clone() : null;
+    }
+    
+    /**
+     * Get the bitset of a date for bulk loading, creating it if needed
+     */
+    synchronized long[] wordsFor(LocalDate date) {
+        changedDates.add(date);
+        return days.computeIfAbsent(date, d -> new long[spotCount * WORDS_PER_SPOT]);
+    }
+    
+    /**
+     * Build the next immutable view: copy-on-write, so only dates changed since the previous
+     * view are copied and the others are shared with it
+     *
+     * @param previous the last published view, or null for the first one
+     * @return the new view, or previous itself if nothing changed
+     */
+    public synchronized AvailabilityView publishView(AvailabilityView previous) {
+        if (previous == null) {
+            changedDates.clear();
+            return new AvailabilityView(lotId, spotCount, 1, copyDays());
+        }
+        
+        Map<LocalDate, long[]> viewDays = new HashMap<>(previous.getDays());
+        boolean removed = viewDays.keySet().removeIf(date -> !days.containsKey(date));
+        if (changedDates.isEmpty() && !removed) {
+            return previous;
+        }
+        
+        for (LocalDate date : changedDates) {
+            long[] words = days.get(date);
+            if (words != null) {
+                viewDays.put(date, words.clone());
+            }
+        }
+        changedDates.clear();
+        return new AvailabilityView(lotId, spotCount, previous.getVersion() + 1, viewDays);
+    }
+    
+    /**
+     * Catch up with parking orders created since the given time, e.g. after restoring a snapshot.
+     * Orders that started before from but are still running on it are included.
+     *
+     * @return the number of orders applied
+     */
+    public int loadOrdersCreatedSince(Connection connection, Timestamp since, LocalDate from) throws SQLException {
+        String orders = """
+            SELECT parking_spot_number, date_of_parking, time_of_car_deposit, time_of_retrieval_time, date_of_retrieval
+            FROM parking_orders
+            WHERE lot_id = ?
+              AND created_at >= ?
+              AND date_of_parking >= ?
+            """;
+        
+        int applied = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(orders)) {
+            stmt.setInt(1, lotId);
+            stmt.setTimestamp(2, since);
+            stmt.setDate(3, Date.valueOf(from.minusDays(TimeUtils.MAX_BOOKING_DAYS - 1)));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    applyOrder(rs);
+                    applied++;
+                }
+            }
+        }
+        return applied;
+    }
+    
+    /**
+     * Load occupancy for a date range from the database: occupied slots in spot_availability
+     * plus parking orders (prebookings are only recorded in parking_orders)
+     */
+    public void loadFromDatabase(Connection connection, LocalDate from, LocalDate to) throws SQLException {
+        SlotSchema schema = SlotSchema.current();
+        String occupiedSlots = schema.sql("""
+            SELECT {day}, {slot}, parking_spot_number
+            FROM {spot_table}
+            WHERE lot_id = ?
+              AND {day} BETWEEN ? AND ?
+              AND is_occupied = TRUE
+            """);
+        
+        try (PreparedStatement stmt = connection.prepareStatement(occupiedSlots)) {
+            stmt.setInt(1, lotId);
+            schema.setDay(stmt, 2, from);
+            schema.setDay(stmt, 3, to);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int slot = schema.isSlotIndex() ? rs.getInt(schema.slotColumn()) : TimeUtils.slotOf(schema.getSlot(rs));
+                    occupy(schema.getDay(rs), rs.getInt("parking_spot_number"), slot, slot + 1);
+                }
+            }
+        }
+        
+        // Orders that started before from but are still running on it count too
+        String orders = """
+            SELECT parking_spot_number, date_of_parking, time_of_car_deposit, time_of_retrieval_time, date_of_retrieval
+            FROM parking_orders
+            WHERE lot_id = ?
+              AND date_of_parking BETWEEN ? AND ?
+            """;
+        
+        try (PreparedStatement stmt = connection.prepareStatement(orders)) {
+            stmt.setInt(1, lotId);
+            stmt.setDate(2, Date.valueOf(from.minusDays(TimeUtils.MAX_BOOKING_DAYS - 1)));
+            stmt.setDate(3, Date.valueOf(to));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    applyOrder(rs);
+                }
+            }
+        }
+    }
+    
+    private void applyOrder(ResultSet rs) throws SQLException {
+        LocalDate date = rs.getDate("date_of_parking").toLocalDate();
+        LocalTime deposit = rs.getTime("time_of_car_deposit").toLocalTime();
+        Time retrieval = rs.getTime("time_of_retrieval_time");
+        Date retrievalDate = rs.getDate("date_of_retrieval");
+        occupy(date, rs.getInt("parking_spot_number"), TimeUtils.slotOf(deposit),
+               TimeUtils.endSlotOf(date, deposit, retrievalDate != null ? retrievalDate.toLocalDate() : null,
+                                   retrieval != null ? retrieval.toLocalTime() : null));
+    }
+}
@@ -1,6 +1,7 @@
 package parking.service;
 
 import parking.model.ParkingOrder;
+import parking.util.LotConfig;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -12,6 +13,7 @@ import java.time.format.DateTimeFormatter;
 public class OptimalTimeFrame implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int lotId;
     private LocalDate date;
     private LocalTime startTime;
     private LocalTime endTime;
@@ -21,6 +23,12 @@ public class OptimalTimeFrame implements Serializable {
     
     public OptimalTimeFrame(LocalDate date, LocalTime startTime, LocalTime endTime, 
                            double durationHours, int minFreeSpots, int assignedSpotNumber) {
+        this(LotConfig.DEFAULT_LOT_ID, date, startTime, endTime, durationHours, minFreeSpots, assignedSpotNumber);
+    }
+    
+    public OptimalTimeFrame(int lotId, LocalDate date, LocalTime startTime, LocalTime endTime, 
+                           double durationHours, int minFreeSpots, int assignedSpotNumber) {
+        this.lotId = lotId;
         this.date = date;
         this.startTime = startTime;
         this.endTime = endTime;
@@ -30,6 +38,7 @@ public class OptimalTimeFrame implements Serializable {
     }
     
     // Getters
+    public int getLotId() { return lotId; }
     public LocalDate getDate() { return date; }
     public LocalTime getStartTime() { return startTime; }
     public LocalTime getEndTime() { return endTime; }
@@ -41,7 +50,7 @@ public class OptimalTimeFrame implements Serializable {
      * Check if spot assignment is valid
      */
     public boolean hasValidAssignment() {
-        return assignedSpotNumber >= 1 && assignedSpotNumber <= 100;
+        return LotConfig.isValidSpot(lotId, assignedSpotNumber);
     }
     
     /**
@@ -54,6 +63,7 @@ public class OptimalTimeFrame implements Serializable {
         
         return new ParkingOrder(
             0, // Order ID will be auto-generated
+            lotId,
             assignedSpotNumber,
             subscriberId,
             date,
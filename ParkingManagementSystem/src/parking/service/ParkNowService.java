@@ -1,6 +1,8 @@
 package parking.service;
 
 import parking.model.*;
+import parking.util.LotConfig;
+import parking.util.SlotSchema;
 import parking.util.TimeUtils;
 import java.sql.*;
 import java.sql.Date;
@@ -15,82 +17,86 @@ import java.util.stream.Collectors;
  */
 public class ParkNowService {
     protected Connection connection;
+    protected final SlotSchema schema = SlotSchema.current();
+    protected final int lotId;
+    protected AllocationStrategy allocation = AllocationStrategy.current();
+    
+    // Free slots per spot in the booking window - built once, the hot path only binds it
+    private final String availableSpotsQuery = schema.sql("""
+        SELECT parking_spot_number, COUNT(*) AS free_slots
+        FROM {spot_table} 
+        WHERE lot_id = ?
+          AND {timeline_range}
+          AND is_occupied = FALSE
+        GROUP BY parking_spot_number
+        """);
+    
+    private static final ThreadLocal<SpotCandidates> CANDIDATES =
+        ThreadLocal.withInitial(() -> new SpotCandidates(LotConfig.DEFAULT_CAPACITY));
     
     public ParkNowService(Connection connection) {
+        this(connection, LotConfig.DEFAULT_LOT_ID);
+    }
+    
+    public ParkNowService(Connection connection, int lotId) {
         this.connection = connection;
+        this.lotId = lotId;
     }
     
+    public int getLotId() { return lotId; }
+    public AllocationStrategy getAllocationStrategy() { return allocation; }
+    public void setAllocationStrategy(AllocationStrategy allocation) { this.allocation = allocation; }
+    
     /**
-     * Check what parking spots are available RIGHT NOW and find the one with longest duration
+     * Check what parking spots are available RIGHT NOW and find the one the allocation strategy picks
      */
     public ParkNowResult checkAvailableNow() {
         LocalDate today = LocalDate.now();
         LocalTime currentTime = TimeUtils.getCurrentTimeSlot();
         
         try {
-            List<CurrentSpotAvailability> availableSpots = getAvailableSpotsNow(today, currentTime);
+            SpotCandidates candidates = CANDIDATES.get();
+            findAvailableSpotsNow(today, currentTime, candidates);
             
-            if (availableSpots.isEmpty()) {
+            // Only the chosen spot is turned into an object
+            long best = allocation.select(candidates, TimeUtils.PARK_NOW_MAX_SLOTS);
+            if (best == SpotCandidates.NONE) {
                 return ParkNowResult.noAvailability();
             }
             
-            // Find the spot with the longest available duration
-            CurrentSpotAvailability bestSpot = availableSpots.stream()
-                .max(Comparator.comparing(CurrentSpotAvailability::getDurationHours)
-                    .thenComparing(Comparator.comparing(CurrentSpotAvailability::getSpotNumber).reversed()))
-                .orElse(null);
-            
-            if (bestSpot != null) {
-                return ParkNowResult.success(bestSpot, availableSpots.size());
-            }
+            int slots = SpotCandidates.runLengthOf(best);
+            CurrentSpotAvailability bestSpot = new CurrentSpotAvailability(
+                lotId,
+                SpotCandidates.spotOf(best),
+                slots * TimeUtils.HOURS_PER_SLOT,
+                currentTime,
+                TimeUtils.slotToTime(SpotCandidates.startSlotOf(best) + slots)
+            );
+            return ParkNowResult.success(bestSpot, candidates.size());
             
         } catch (SQLException e) {
             e.printStackTrace();
             return ParkNowResult.failure("Database error: " + e.getMessage());
         }
-        
-        return ParkNowResult.failure("No spots available");
     }
     
     /**
-     * Get all parking spots that are free RIGHT NOW and calculate their available duration
+     * Collect the parking spots that are free RIGHT NOW with their free slots in the booking window
      */
-    private List<CurrentSpotAvailability> getAvailableSpotsNow(LocalDate today, LocalTime currentTime) throws SQLException {
-        // Simplified version for initial testing
-        List<CurrentSpotAvailability> availableSpots = new ArrayList<>();
-        
-        String query = """
-            SELECT parking_spot_number, COUNT(*) * 0.25 as duration_hours
-            FROM spot_availability 
-            WHERE availability_date = ? 
-              AND time_slot >= ? 
-              AND time_slot < ADDTIME(?, '04:00:00')
-              AND is_occupied = FALSE
-              AND parking_spot_number BETWEEN 1 AND 100
-            GROUP BY parking_spot_number
-            HAVING duration_hours >= 0.25
-            ORDER BY duration_hours DESC, parking_spot_number ASC
-            """;
+    private void findAvailableSpotsNow(LocalDate today, LocalTime currentTime, SpotCandidates candidates) throws SQLException {
+        candidates.clear();
+        int startSlot = TimeUtils.slotOf(currentTime);
         
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setDate(1, Date.valueOf(today));
-            stmt.setTime(2, Time.valueOf(currentTime));
-            stmt.setTime(3, Time.valueOf(currentTime));
+        try (PreparedStatement stmt = connection.prepareStatement(availableSpotsQuery)) {
+            stmt.setInt(1, lotId);
+            schema.setTimelineRange(stmt, 2, today, startSlot, startSlot + TimeUtils.PARK_NOW_MAX_SLOTS);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int spotNumber = rs.getInt("parking_spot_number");
-                    double duration = Math.min(rs.getDouble("duration_hours"), 4.0); // Max 4 hours
-                    LocalTime freeUntil = currentTime.plusMinutes((long)(duration * 60));
-                    
-                    availableSpots.add(new CurrentSpotAvailability(
-                        spotNumber, duration, currentTime, freeUntil
-                    ));
+                    candidates.add(rs.getInt(1), startSlot, Math.min(rs.getInt(2), TimeUtils.PARK_NOW_MAX_SLOTS));
                 }
             }
         }
-        
-        return availableSpots;
     }
     
     /**
@@ -114,12 +120,15 @@ public class ParkNowService {
             // Create parking order
             ParkingOrder order = new ParkingOrder(
                 0, // Auto-generated ID
+                lotId,
                 spotAssignment.getSpotNumber(),
                 subscriberId.trim(),
                 today,
                 currentTime,
                 spotAssignment.getFreeUntil()
             );
+            int endSlot = TimeUtils.slotOf(currentTime) + (int) Math.round(spotAssignment.getDurationHours() * 4);
+            order.setDateOfRetrieval(TimeUtils.dateOfSlot(today, endSlot));
             
             // Insert parking order
             int orderId = insertParkingOrder(order);
@@ -159,18 +168,20 @@ public class ParkNowService {
     private int insertParkingOrder(ParkingOrder order) throws SQLException {
         String insertOrder = """
             INSERT INTO parking_orders 
-            (parking_spot_number, subscriber_id, date_of_parking, date_placing_order, 
-             time_of_car_deposit, time_of_retrieval_time)
-            VALUES (?, ?, ?, ?, ?, ?)
+            (lot_id, parking_spot_number, subscriber_id, date_of_parking, date_placing_order, 
+             time_of_car_deposit, time_of_retrieval_time, date_of_retrieval)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
             """;
         
         try (PreparedStatement stmt = connection.prepareStatement(insertOrder, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, order.getParkingSpotNumber());
-            stmt.setString(2, order.getSubscriberId());
-            stmt.setDate(3, Date.valueOf(order.getDateOfParking()));
-            stmt.setDate(4, Date.valueOf(LocalDate.now()));
-            stmt.setTime(5, Time.valueOf(order.getTimeOfCarDeposit()));
-            stmt.setTime(6, Time.valueOf(order.getTimeOfRetrievalTime()));
+            stmt.setInt(1, order.getLotId());
+            stmt.setInt(2, order.getParkingSpotNumber());
+            stmt.setString(3, order.getSubscriberId());
+            stmt.setDate(4, Date.valueOf(order.getDateOfParking()));
+            stmt.setDate(5, Date.valueOf(LocalDate.now()));
+            stmt.setTime(6, Time.valueOf(order.getTimeOfCarDeposit()));
+            stmt.setTime(7, Time.valueOf(order.getTimeOfRetrievalTime()));
+            stmt.setDate(8, Date.valueOf(order.getDateOfRetrieval()));
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -192,41 +203,37 @@ public class ParkNowService {
      */
     private void updateAvailabilityForParking(ParkingOrder order) throws SQLException {
         // Update general availability
-        String updateGeneral = """
-            UPDATE parking_availability 
+        String updateGeneral = schema.sql("""
+            UPDATE {summary_table} 
             SET occupied_spots = occupied_spots + 1,
                 free_spots = free_spots - 1,
                 last_updated = CURRENT_TIMESTAMP
-            WHERE availability_date = ? 
-              AND time_slot >= ? 
-              AND time_slot < ?
-            """;
+            WHERE lot_id = ?
+              AND {timeline_range}
+            """);
         
         try (PreparedStatement stmt = connection.prepareStatement(updateGeneral)) {
-            stmt.setDate(1, Date.valueOf(order.getDateOfParking()));
-            stmt.setTime(2, Time.valueOf(order.getTimeOfCarDeposit()));
-            stmt.setTime(3, Time.valueOf(order.getTimeOfRetrievalTime()));
+            stmt.setInt(1, order.getLotId());
+            schema.setTimelineRange(stmt, 2, order.getDateOfParking(), order.getStartSlot(), order.getEndSlot());
             
             stmt.executeUpdate();
         }
         
         // Update specific spot availability
-        String updateSpot = """
-            UPDATE spot_availability 
+        String updateSpot = schema.sql("""
+            UPDATE {spot_table} 
             SET is_occupied = TRUE, 
                 reserved_by = ?
-            WHERE availability_date = ? 
+            WHERE lot_id = ?
               AND parking_spot_number = ?
-              AND time_slot >= ? 
-              AND time_slot < ?
-            """;
+              AND {timeline_range}
+            """);
         
         try (PreparedStatement stmt = connection.prepareStatement(updateSpot)) {
             stmt.setString(1, order.getSubscriberId());
-            stmt.setDate(2, Date.valueOf(order.getDateOfParking()));
+            stmt.setInt(2, order.getLotId());
             stmt.setInt(3, order.getParkingSpotNumber());
-            stmt.setTime(4, Time.valueOf(order.getTimeOfCarDeposit()));
-            stmt.setTime(5, Time.valueOf(order.getTimeOfRetrievalTime()));
+            schema.setTimelineRange(stmt, 4, order.getDateOfParking(), order.getStartSlot(), order.getEndSlot());
             
             stmt.executeUpdate();
         }
@@ -240,24 +247,26 @@ public class ParkNowService {
         LocalTime currentTime = TimeUtils.getCurrentTimeSlot();
         
         try {
-            String query = """
+            String query = schema.sql("""
                 SELECT 
                     COUNT(*) as total_spots,
                     SUM(CASE WHEN is_occupied = FALSE THEN 1 ELSE 0 END) as free_spots,
                     SUM(CASE WHEN is_occupied = TRUE THEN 1 ELSE 0 END) as occupied_spots
-                FROM spot_availability 
-                WHERE availability_date = ? 
-                  AND time_slot = ?
-                  AND parking_spot_number BETWEEN 1 AND 100
-                """;
+                FROM {spot_table} 
+                WHERE lot_id = ?
+                  AND {day} = ? 
+                  AND {slot} = ?
+                """);
             
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setDate(1, Date.valueOf(today));
-                stmt.setTime(2, Time.valueOf(currentTime));
+                stmt.setInt(1, lotId);
+                schema.setDay(stmt, 2, today);
+                schema.setSlot(stmt, 3, currentTime);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
                         return new ParkingAvailabilitySummary(
+                            lotId,
                             rs.getInt("total_spots"),
                             rs.getInt("free_spots"),
                             rs.getInt("occupied_spots"),
@@ -271,6 +280,7 @@ public class ParkNowService {
         }
         
         // Return default if query fails
-        return new ParkingAvailabilitySummary(100, 0, 100, currentTime);
+        int capacity = LotConfig.getCapacity(lotId);
+        return new ParkingAvailabilitySummary(lotId, capacity, 0, capacity, currentTime);
     }
 }
\ No newline at end of file
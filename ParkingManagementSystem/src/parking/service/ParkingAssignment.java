@@ -1,6 +1,7 @@
 package parking.service;
 
 import parking.model.ParkingOrder;
+import parking.util.LotConfig;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -11,6 +12,7 @@ import java.time.LocalTime;
 public class ParkingAssignment implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int lotId;
     private int assignedSpotNumber;
     private LocalDate date;
     private LocalTime startTime;
@@ -19,6 +21,12 @@ public class ParkingAssignment implements Serializable {
     
     public ParkingAssignment(int spotNumber, LocalDate date, LocalTime startTime, 
                            LocalTime endTime, double duration) {
+        this(LotConfig.DEFAULT_LOT_ID, spotNumber, date, startTime, endTime, duration);
+    }
+    
+    public ParkingAssignment(int lotId, int spotNumber, LocalDate date, LocalTime startTime, 
+                           LocalTime endTime, double duration) {
+        this.lotId = lotId;
         this.assignedSpotNumber = spotNumber;
         this.date = date;
         this.startTime = startTime;
@@ -26,6 +34,7 @@ public class ParkingAssignment implements Serializable {
         this.durationHours = duration;
     }
     
+    public int getLotId() { return lotId; }
     public int getAssignedSpotNumber() { return assignedSpotNumber; }
     public LocalDate getDate() { return date; }
     public LocalTime getStartTime() { return startTime; }
@@ -34,7 +43,7 @@ public class ParkingAssignment implements Serializable {
     
     public ParkingOrder toParkingOrder(String subscriberId) {
         return new ParkingOrder(
-            0, assignedSpotNumber, subscriberId, date, startTime, endTime
+            0, lotId, assignedSpotNumber, subscriberId, date, startTime, endTime
         );
     }
 }
\ No newline at end of file
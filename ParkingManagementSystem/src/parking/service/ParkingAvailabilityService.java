@@ -1,21 +1,163 @@
 package parking.service;
 
 import parking.model.*;
+import parking.util.LotConfig;
+import parking.util.SlotSchema;
 import parking.util.TimeUtils;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for handling parking availability queries
  * FIXED VERSION - Date import ambiguity resolved
+ *
+ * Time frames computed from availability views are cached per date and kept up to date
+ * incrementally: views share the bitsets of unchanged dates, so a date whose bitsets (its own and
+ * those of the following dates a booking window can reach) are the same arrays as last time is
+ * answered from the cache, and otherwise only the start slots whose window reaches a changed slot
+ * are recomputed.
  */
 public class ParkingAvailabilityService {
     private Connection connection;
+    private final SlotSchema schema = SlotSchema.current();
+    private final int lotId;
+    private final Map<LocalDate, DayFrames> frameCache = new ConcurrentHashMap<>();
+    
+    /**
+     * Cached time frames of one date and the bitsets they were computed from - never modified,
+     * an update replaces the entry
+     */
+    private static class DayFrames {
+        final long[][] span; // The date and the following dates, null for a date without bookings
+        final OptimalTimeFrame[] bySlot;
+        final List<OptimalTimeFrame> frames;
+        
+        DayFrames(long[][] span, OptimalTimeFrame[] bySlot) {
+            this.span = span;
+            this.bySlot = bySlot;
+            List<OptimalTimeFrame> list = new ArrayList<>();
+            for (OptimalTimeFrame frame : bySlot) {
+                if (frame != null) {
+                    list.add(frame);
+                }
+            }
+            this.frames = List.copyOf(list);
+        }
+    }
     
     public ParkingAvailabilityService(Connection connection) {
+        this(connection, LotConfig.DEFAULT_LOT_ID);
+    }
+    
+    public ParkingAvailabilityService(Connection connection, int lotId) {
         this.connection = connection;
+        this.lotId = lotId;
+    }
+    
+    /**
+     * Set the connection of the database queries - null if only views are used
+     */
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+    
+    /**
+     * Get the time frames of a date from an availability view: for every slot with a free spot,
+     * the spot with the longest free window from it (up to the maximum stay, which may run into
+     * the following dates; smallest number on ties). Unchanged dates are answered from the cache
+     * without recomputation.
+     *
+     * @return unmodifiable list ordered by start time
+     */
+    public List<OptimalTimeFrame> getAvailableTimeFrames(AvailabilityView view, LocalDate date) {
+        long[][] span = OccupancyState.span(view.getDays(), date, OccupancyState.SLOTS_PER_DAY - 1,
+                                            TimeUtils.MAX_SLOTS_PER_BOOKING);
+        DayFrames cached = frameCache.get(date);
+        if (cached != null && sameArrays(cached.span, span)) {
+            return cached.frames;
+        }
+        
+        OptimalTimeFrame[] bySlot;
+        if (cached == null) {
+            frameCache.keySet().removeIf(d -> d.isBefore(LocalDate.now()));
+            bySlot = new OptimalTimeFrame[OccupancyState.SLOTS_PER_DAY];
+            for (int slot = 0; slot < bySlot.length; slot++) {
+                bySlot[slot] = computeFrame(span, view.getSpotCount(), date, slot);
+            }
+        } else {
+            bySlot = cached.bySlot.clone();
+            boolean[] dirty = affectedStartSlots(cached.span, span);
+            for (int slot = 0; slot < bySlot.length; slot++) {
+                if (dirty[slot]) {
+                    bySlot[slot] = computeFrame(span, view.getSpotCount(), date, slot);
+                }
+            }
+        }
+        
+        DayFrames updated = new DayFrames(span, bySlot);
+        frameCache.put(date, updated);
+        return updated.frames;
+    }
+    
+    private static boolean sameArrays(long[][] a, long[][] b) {
+        for (int day = 0; day < a.length; day++) {
+            if (a[day] != b[day]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Start slots whose booking window [slot, slot + MAX_SLOTS_PER_BOOKING) contains a slot that
+     * differs between the two spans - a change on a following date is at slot day * 96 + slot
+     */
+    private static boolean[] affectedStartSlots(long[][] before, long[][] after) {
+        boolean[] dirty = new boolean[OccupancyState.SLOTS_PER_DAY];
+        for (int day = 0; day < after.length; day++) {
+            if (before[day] == after[day]) {
+                continue;
+            }
+            
+            long changedLow = 0;  // Slots 0-63
+            long changedHigh = 0; // Slots 64-95
+            int length = Math.max(before[day] != null ? before[day].length : 0, after[day] != null ? after[day].length : 0);
+            for (int i = 0; i < length; i += OccupancyState.WORDS_PER_SPOT) {
+                changedLow |= wordAt(before[day], i) ^ wordAt(after[day], i);
+                changedHigh |= wordAt(before[day], i + 1) ^ wordAt(after[day], i + 1);
+            }
+            
+            for (int changed = 0; changed < OccupancyState.SLOTS_PER_DAY; changed++) {
+                long word = changed < 64 ? changedLow : changedHigh;
+                if ((word & (1L << (changed & 63))) != 0) {
+                    int absolute = day * OccupancyState.SLOTS_PER_DAY + changed;
+                    int last = Math.min(absolute, OccupancyState.SLOTS_PER_DAY - 1);
+                    for (int slot = Math.max(0, absolute - TimeUtils.MAX_SLOTS_PER_BOOKING + 1); slot <= last; slot++) {
+                        dirty[slot] = true;
+                    }
+                }
+            }
+        }
+        return dirty;
+    }
+    
+    private static long wordAt(long[] words, int index) {
+        return words != null ? words[index] : 0;
+    }
+    
+    private OptimalTimeFrame computeFrame(long[][] span, int spotCount, LocalDate date, int slot) {
+        int freeSpots = OccupancyState.countFreeSpots(span[0], spotCount, slot);
+        if (freeSpots == 0) {
+            return null;
+        }
+        
+        int spot = OccupancyState.findLongestFreeSpot(span, spotCount, slot, TimeUtils.MAX_SLOTS_PER_BOOKING);
+        int slots = OccupancyState.freeRunLength(span, spot, slot, TimeUtils.MAX_SLOTS_PER_BOOKING);
+        return new OptimalTimeFrame(lotId, date, TimeUtils.slotToTime(slot), TimeUtils.slotToTime(slot + slots),
+                                    slots * TimeUtils.HOURS_PER_SLOT, freeSpots, spot);
     }
     
     /**
@@ -23,25 +165,30 @@ public class ParkingAvailabilityService {
      */
     public List<OptimalTimeFrame> getAvailableTimeFrames(LocalDate date) {
         List<OptimalTimeFrame> timeFrames = new ArrayList<>();
+        if (connection == null) {
+            return timeFrames;
+        }
         
         try {
-            String query = """
+            String query = schema.sql("""
                 SELECT 
-                    time_slot,
+                    {slot},
                     free_spots,
                     occupied_spots
-                FROM parking_availability 
-                WHERE availability_date = ? 
+                FROM {summary_table} 
+                WHERE lot_id = ?
+                  AND {day} = ? 
                   AND free_spots > 0
-                ORDER BY time_slot
-                """;
+                ORDER BY {slot}
+                """);
             
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setDate(1, java.sql.Date.valueOf(date)); // FIXED: Use java.sql.Date explicitly
+                stmt.setInt(1, lotId);
+                schema.setDay(stmt, 2, date);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
-                        LocalTime startTime = rs.getTime("time_slot").toLocalTime();
+                        LocalTime startTime = schema.getSlot(rs);
                         int freeSpots = rs.getInt("free_spots");
                         
                         // Calculate available duration from this time slot
@@ -50,10 +197,10 @@ public class ParkingAvailabilityService {
                             LocalTime endTime = startTime.plusMinutes((long)(duration * 60));
                             
                             // Assign optimal spot for this time frame
-                            int assignedSpot = findOptimalSpot(date, startTime, endTime);
+                            int assignedSpot = findOptimalSpot(date, startTime, (int) Math.round(duration * 4));
                             
                             OptimalTimeFrame timeFrame = new OptimalTimeFrame(
-                                date, startTime, endTime, duration, freeSpots, assignedSpot
+                                lotId, date, startTime, endTime, duration, freeSpots, assignedSpot
                             );
                             timeFrames.add(timeFrame);
                         }
@@ -73,23 +220,22 @@ public class ParkingAvailabilityService {
      */
     private double calculateAvailableDuration(LocalDate date, LocalTime startTime) {
         try {
-            String query = """
+            String query = schema.sql("""
                 SELECT COUNT(*) * 0.25 as duration_hours
-                FROM parking_availability 
-                WHERE availability_date = ? 
-                  AND time_slot >= ? 
-                  AND time_slot < ADDTIME(?, '04:00:00')
+                FROM {summary_table} 
+                WHERE lot_id = ?
+                  AND {timeline_range}
                   AND free_spots > 0
-                """;
+                """);
             
+            int startSlot = TimeUtils.slotOf(startTime);
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setDate(1, java.sql.Date.valueOf(date)); // FIXED: Use java.sql.Date explicitly
-                stmt.setTime(2, java.sql.Time.valueOf(startTime));
-                stmt.setTime(3, java.sql.Time.valueOf(startTime));
+                stmt.setInt(1, lotId);
+                schema.setTimelineRange(stmt, 2, date, startSlot, startSlot + TimeUtils.MAX_SLOTS_PER_BOOKING);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        return Math.min(rs.getDouble("duration_hours"), 4.0); // Max 4 hours
+                        return Math.min(rs.getDouble("duration_hours"), TimeUtils.MAX_BOOKING_HOURS);
                     }
                 }
             }
@@ -104,28 +250,25 @@ public class ParkingAvailabilityService {
     /**
      * Find optimal spot for a time period
      */
-    private int findOptimalSpot(LocalDate date, LocalTime startTime, LocalTime endTime) {
+    private int findOptimalSpot(LocalDate date, LocalTime startTime, int slots) {
         try {
-            String query = """
+            String query = schema.sql("""
                 SELECT parking_spot_number
-                FROM spot_availability 
-                WHERE availability_date = ? 
-                  AND time_slot >= ? 
-                  AND time_slot < ?
+                FROM {spot_table} 
+                WHERE lot_id = ?
+                  AND {timeline_range}
                   AND is_occupied = FALSE
                 GROUP BY parking_spot_number
                 HAVING COUNT(*) = ?
                 ORDER BY parking_spot_number
                 LIMIT 1
-                """;
-            
-            long slots = java.time.Duration.between(startTime, endTime).toMinutes() / 15;
+                """);
             
+            int startSlot = TimeUtils.slotOf(startTime);
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setDate(1, java.sql.Date.valueOf(date)); // FIXED: Use java.sql.Date explicitly
-                stmt.setTime(2, java.sql.Time.valueOf(startTime));
-                stmt.setTime(3, java.sql.Time.valueOf(endTime));
-                stmt.setLong(4, slots);
+                stmt.setInt(1, lotId);
+                int next = schema.setTimelineRange(stmt, 2, date, startSlot, startSlot + slots);
+                stmt.setInt(next, slots);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
@@ -138,6 +281,6 @@ public class ParkingAvailabilityService {
             e.printStackTrace();
         }
         
-        return (int)(Math.random() * 100) + 1; // Fallback random spot
+        return (int)(Math.random() * LotConfig.getCapacity(lotId)) + 1; // Fallback random spot
     }
 }
\ No newline at end of file
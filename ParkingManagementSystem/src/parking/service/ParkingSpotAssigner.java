@@ -1,6 +1,8 @@
 package parking.service;
 
 import parking.model.*;
+import parking.util.LotConfig;
+import parking.util.SlotSchema;
 import parking.util.TimeUtils;
 import java.sql.*;
 import java.sql.Date;
@@ -15,57 +17,66 @@ import java.util.stream.Collectors;
  */
 public class ParkingSpotAssigner {
     private Connection connection;
+    private final SlotSchema schema = SlotSchema.current();
+    private final int lotId;
+    private AllocationStrategy allocation = AllocationStrategy.current();
+    
+    // Free slots per spot in the booking window - built once, the hot path only binds it
+    private final String availableSpotsQuery = schema.sql("""
+        SELECT parking_spot_number, COUNT(*) AS free_slots
+        FROM {spot_table} 
+        WHERE lot_id = ?
+          AND {timeline_range}
+          AND is_occupied = FALSE
+        GROUP BY parking_spot_number
+        """);
+    
+    private static final ThreadLocal<SpotCandidates> CANDIDATES =
+        ThreadLocal.withInitial(() -> new SpotCandidates(LotConfig.DEFAULT_CAPACITY));
     
     public ParkingSpotAssigner(Connection connection) {
+        this(connection, LotConfig.DEFAULT_LOT_ID);
+    }
+    
+    public ParkingSpotAssigner(Connection connection, int lotId) {
         this.connection = connection;
+        this.lotId = lotId;
     }
     
+    public AllocationStrategy getAllocationStrategy() { return allocation; }
+    public void setAllocationStrategy(AllocationStrategy allocation) { this.allocation = allocation; }
+    
     /**
-     * Assigns the optimal parking spot based on:
-     * 1. Longest available duration first
-     * 2. Smallest parking spot number (1-100) within that duration
+     * Assigns a spot for the longest possible booking (up to 4 hours) from startTime
      */
     public ParkingAssignment assignOptimalSpot(LocalDate date, LocalTime startTime) {
+        return assignOptimalSpot(date, startTime, TimeUtils.MAX_SLOTS_PER_BOOKING);
+    }
+    
+    /**
+     * Assigns the spot the allocation strategy picks for a booking of requestedSlots from startTime -
+     * by default the longest available duration first, the smallest spot number within it.
+     * The assignment covers at most requestedSlots.
+     */
+    public ParkingAssignment assignOptimalSpot(LocalDate date, LocalTime startTime, int requestedSlots) {
         try {
-            List<SpotAvailability> availableSpots = getAvailableSpotsFromStartTime(date, startTime);
+            SpotCandidates candidates = CANDIDATES.get();
+            findAvailableSpotsFromStartTime(date, startTime, candidates);
             
-            if (availableSpots.isEmpty()) {
+            long optimal = allocation.select(candidates, requestedSlots);
+            if (optimal == SpotCandidates.NONE) {
                 return null;
             }
             
-            // Group spots by their maximum continuous duration
-            Map<Double, List<SpotAvailability>> spotsByDuration = availableSpots.stream()
-                .collect(Collectors.groupingBy(SpotAvailability::getMaxDurationHours));
-            
-            // Find the longest duration available
-            double longestDuration = spotsByDuration.keySet().stream()
-                .mapToDouble(Double::doubleValue)
-                .max()
-                .orElse(0.0);
-            
-            // Cap at 4 hours maximum
-            longestDuration = Math.min(longestDuration, 4.0);
-            
-            // Get all spots with the longest duration
-            List<SpotAvailability> longestDurationSpots = spotsByDuration.get(longestDuration);
-            
-            // Sort by parking spot number (1, 2, 3, 4... smallest first)
-            SpotAvailability optimalSpot = longestDurationSpots.stream()
-                .sorted(Comparator.comparing(SpotAvailability::getParkingSpotNumber))
-                .findFirst()
-                .orElse(null);
-            
-            if (optimalSpot != null) {
-                LocalTime endTime = startTime.plusMinutes((long)(longestDuration * 60));
-                
-                return new ParkingAssignment(
-                    optimalSpot.getParkingSpotNumber(),
-                    date,
-                    startTime,
-                    endTime,
-                    longestDuration
-                );
-            }
+            int slots = Math.min(SpotCandidates.runLengthOf(optimal), requestedSlots);
+            return new ParkingAssignment(
+                lotId,
+                SpotCandidates.spotOf(optimal),
+                date,
+                startTime,
+                startTime.plusMinutes((long) slots * TimeUtils.SLOT_INTERVAL_MINUTES),
+                slots * TimeUtils.HOURS_PER_SLOT
+            );
             
         } catch (SQLException e) {
             e.printStackTrace();
@@ -75,40 +86,22 @@ public class ParkingSpotAssigner {
     }
     
     /**
-     * Get available spots (1-100) and their maximum duration from a start time
+     * Collect the available spots of the lot with their free slots in the booking window from a start time
      */
-    private List<SpotAvailability> getAvailableSpotsFromStartTime(LocalDate date, LocalTime startTime) throws SQLException {
-        List<SpotAvailability> spots = new ArrayList<>();
+    private void findAvailableSpotsFromStartTime(LocalDate date, LocalTime startTime, SpotCandidates candidates)
+            throws SQLException {
+        candidates.clear();
+        int startSlot = TimeUtils.slotOf(startTime);
         
-        String query = """
-            SELECT parking_spot_number, COUNT(*) * 0.25 as duration_hours
-            FROM spot_availability 
-            WHERE availability_date = ? 
-              AND time_slot >= ? 
-              AND time_slot < ADDTIME(?, '04:00:00')
-              AND is_occupied = FALSE
-              AND parking_spot_number BETWEEN 1 AND 100
-            GROUP BY parking_spot_number
-            HAVING duration_hours >= 0.25
-            ORDER BY duration_hours DESC, parking_spot_number ASC
-            """;
-        
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setDate(1, Date.valueOf(date));
-            stmt.setTime(2, Time.valueOf(startTime));
-            stmt.setTime(3, Time.valueOf(startTime));
+        try (PreparedStatement stmt = connection.prepareStatement(availableSpotsQuery)) {
+            stmt.setInt(1, lotId);
+            schema.setTimelineRange(stmt, 2, date, startSlot, startSlot + TimeUtils.MAX_SLOTS_PER_BOOKING);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int spotNumber = rs.getInt("parking_spot_number");
-                    double duration = Math.min(rs.getDouble("duration_hours"), 4.0);
-                    LocalTime until = startTime.plusMinutes((long)(duration * 60));
-                    
-                    spots.add(new SpotAvailability(spotNumber, duration, until));
+                    candidates.add(rs.getInt(1), startSlot, Math.min(rs.getInt(2), TimeUtils.MAX_SLOTS_PER_BOOKING));
                 }
             }
         }
-        
-        return spots;
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package parking.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import parking.model.ParkingOrder;
+import parking.util.TimeUtils;
+
+/**
+ * Plans new spots for not-yet-started prebookings so the free time of a date is consolidated
+ * into long windows instead of short gaps scattered over many spots
+ *
+ * Works on a copy of one date's occupancy bitset. The movable prebookings are taken out, then put
+ * back in start order, each on the spot whose earlier booking ends closest before it (its current
+ * spot on ties, then the smallest number) - interval best fit, which stacks bookings end to end on
+ * as few spots as possible. The plan is only returned if it leaves more room for
+ * MAX_SLOTS_PER_BOOKING bookings than the current layout - or for whole-day ones when the longest
+ * stay is over a day, since the copy holds a single date. Prebookings that run past midnight
+ * keep their spot, since the copy holds only their first date.
+ */
+public class PrebookingRepacker {
+    
+    /** A long window within one date - the longest stay, or the whole date if that is longer */
+    static final int WINDOW_SLOTS = Math.min(TimeUtils.MAX_SLOTS_PER_BOOKING, TimeUtils.SLOTS_PER_DAY);
+    
+    private final int spotCount;
+    
+    public PrebookingRepacker(int spotCount) {
+        this.spotCount = spotCount;
+    }
+    
+    /**
+     * Plan the moves for one date
+     *
+     * @param movable the date's prebookings that may change spot
+     * @return the prebookings that change spot, empty if re-packing would not free more long windows
+     */
+    public List<SpotReassignment> plan(OccupancyState occupancy, LocalDate date, List<ParkingOrder> movable) {
+        return plan(occupancy.copyOfDay(date), movable);
+    }
+    
+    List<SpotReassignment> plan(long[] occupied, List<ParkingOrder> movable) {
+        if (occupied == null || movable.isEmpty()) {
+            return List.of();
+        }
+        
+        long[] packed = occupied.clone();
+        List<ParkingOrder> orders = new ArrayList<>();
+        for (ParkingOrder order : movable) {
+            int spot = order.getParkingSpotNumber();
+            int fromSlot = order.getStartSlot();
+            int toSlot = order.getEndSlot();
+            // Only same-day prebookings the occupancy holds in full on their spot are moved
+            if (spot >= 1 && spot <= spotCount && toSlot > fromSlot && toSlot <= TimeUtils.SLOTS_PER_DAY
+                && isRangeOccupied(packed, spot, fromSlot, toSlot)) {
+                OccupancyState.setRange(packed, spot, fromSlot, toSlot, false);
+                orders.add(order);
+            }
+        }
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        
+        orders.sort(Comparator.comparingInt(ParkingOrder::getStartSlot)
+                              .thenComparing(Comparator.comparingInt(ParkingOrder::getEndSlot).reversed()));
+        
+        List<SpotReassignment> moves = new ArrayList<>();
+        for (ParkingOrder order : orders) {
+            int fromSlot = order.getStartSlot();
+            int toSlot = order.getEndSlot();
+            int spot = findTightestSpot(packed, order.getParkingSpotNumber(), fromSlot, toSlot);
+            if (spot == 0) {
+                return List.of(); // Cannot happen while the input is consistent - keep the current layout
+            }
+            
+            OccupancyState.setRange(packed, spot, fromSlot, toSlot, true);
+            if (spot != order.getParkingSpotNumber()) {
+                moves.add(new SpotReassignment(order, spot));
+            }
+        }
+        
+        return countLongWindows(packed) > countLongWindows(occupied) ? moves : List.of();
+    }
+    
+    /**
+     * Find the free spot for [fromSlot, toSlot) with the smallest gap before fromSlot
+     *
+     * @return the spot number, or 0 if no spot is free for the whole range
+     */
+    private int findTightestSpot(long[] words, int currentSpot, int fromSlot, int toSlot) {
+        int bestSpot = 0;
+        int bestGap = Integer.MAX_VALUE;
+        
+        for (int spot = 1; spot <= spotCount; spot++) {
+            if (OccupancyState.freeRunLength(words, spot, fromSlot, toSlot - fromSlot) < toSlot - fromSlot) {
+                continue;
+            }
+            int gap = gapBefore(words, spot, fromSlot);
+            if (gap < bestGap || (gap == bestGap && spot == currentSpot)) {
+                bestSpot = spot;
+                bestGap = gap;
+            }
+        }
+        return bestSpot;
+    }
+    
+    private static int gapBefore(long[] words, int spot, int fromSlot) {
+        int slot = fromSlot;
+        while (slot > 0 && !OccupancyState.isSet(words, spot, slot - 1)) {
+            slot--;
+        }
+        return fromSlot - slot;
+    }
+    
+    private static boolean isRangeOccupied(long[] words, int spot, int fromSlot, int toSlot) {
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            if (!OccupancyState.isSet(words, spot, slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Count the (spot, start slot) pairs where a booking of WINDOW_SLOTS fits
+     */
+    int countLongWindows(long[] words) {
+        int windows = 0;
+        for (int spot = 1; spot <= spotCount; spot++) {
+            int run = 0;
+            for (int slot = 0; slot <= OccupancyState.SLOTS_PER_DAY; slot++) {
+                if (slot < OccupancyState.SLOTS_PER_DAY && !OccupancyState.isSet(words, spot, slot)) {
+                    run++;
+                    continue;
+                }
+                windows += Math.max(0, run - WINDOW_SLOTS + 1);
+                run = 0;
+            }
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,107 @@
+package parking.service;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of spot candidates packed into primitive longs, so picking a spot creates
+ * no object per candidate - the domain object is built only for the chosen one.
+ *
+ * A candidate packs (runLength, spot, startSlot) so that comparing the longs orders candidates
+ * by longest run first, then smallest spot number:
+ * bits 40-55 run length, bits 16-39 (MAX_SPOT - spot), bits 0-15 start slot.
+ *
+ * Not thread-safe - services keep one per thread.
+ */
+public final class SpotCandidates {
+    
+    public static final long NONE = -1L;
+    static final int MAX_SPOT = 0xFFFFFF;
+    
+    private long[] packed;
+    private int size;
+    
+    public SpotCandidates(int initialCapacity) {
+        packed = new long[Math.max(1, initialCapacity)];
+    }
+    
+    public static long pack(int spotNumber, int startSlot, int runLength) {
+        return ((long) runLength << 40) | ((long) (MAX_SPOT - spotNumber) << 16) | startSlot;
+    }
+    
+    public static int spotOf(long candidate) {
+        return MAX_SPOT - (int) ((candidate >>> 16) & MAX_SPOT);
+    }
+    
+    public static int startSlotOf(long candidate) {
+        return (int) (candidate & 0xFFFF);
+    }
+    
+    public static int runLengthOf(long candidate) {
+        return (int) ((candidate >>> 40) & 0xFFFF);
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    public void add(int spotNumber, int startSlot, int runLength) {
+        if (size == packed.length) {
+            packed = Arrays.copyOf(packed, size * 2);
+        }
+        packed[size++] = pack(spotNumber, startSlot, runLength);
+    }
+    
+    public int size() { return size; }
+    public long get(int index) { return packed[index]; }
+    
+    /**
+     * Get the candidate with the longest run, smallest spot number on ties
+     *
+     * @return the packed candidate, or NONE if there are no candidates
+     */
+    public long selectLongest() {
+        long best = NONE;
+        for (int i = 0; i < size; i++) {
+            if (packed[i] > best) {
+                best = packed[i];
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Get the candidate with the shortest run that still covers requestedSlots, smallest spot
+     * number on ties - the longest candidate if none covers it
+     *
+     * @return the packed candidate, or NONE if there are no candidates
+     */
+    public long selectBestFit(int requestedSlots) {
+        long best = NONE;
+        for (int i = 0; i < size; i++) {
+            long candidate = packed[i];
+            int length = runLengthOf(candidate);
+            if (length >= requestedSlots && (best == NONE || length < runLengthOf(best)
+                    || (length == runLengthOf(best) && spotOf(candidate) < spotOf(best)))) {
+                best = candidate;
+            }
+        }
+        return best != NONE ? best : selectLongest();
+    }
+    
+    /**
+     * Get the candidate with the smallest spot number whose run covers requestedSlots -
+     * the longest candidate if none covers it
+     *
+     * @return the packed candidate, or NONE if there are no candidates
+     */
+    public long selectFirstFit(int requestedSlots) {
+        long best = NONE;
+        for (int i = 0; i < size; i++) {
+            long candidate = packed[i];
+            if (runLengthOf(candidate) >= requestedSlots && (best == NONE || spotOf(candidate) < spotOf(best))) {
+                best = candidate;
+            }
+        }
+        return best != NONE ? best : selectLongest();
+    }
+}
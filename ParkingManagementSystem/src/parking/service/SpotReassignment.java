@@ -0,0 +1,36 @@
+package parking.service;
+
+import parking.model.ParkingOrder;
+
+/**
+ * A planned move of a prebooking to another spot, keeping its date and times
+ */
+public class SpotReassignment {
+    
+    private final ParkingOrder order;
+    private final int newSpotNumber;
+    
+    public SpotReassignment(ParkingOrder order, int newSpotNumber) {
+        this.order = order;
+        this.newSpotNumber = newSpotNumber;
+    }
+    
+    // Getters
+    public ParkingOrder getOrder() { return order; }
+    public int getOldSpotNumber() { return order.getParkingSpotNumber(); }
+    public int getNewSpotNumber() { return newSpotNumber; }
+    
+    public int getFromSlot() {
+        return order.getStartSlot();
+    }
+    
+    public int getToSlot() {
+        return order.getEndSlot();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("SpotReassignment{order=%d, %s, spot #%d -> #%d}", order.getOrderId(),
+                             order.getDateOfParking(), getOldSpotNumber(), newSpotNumber);
+    }
+}
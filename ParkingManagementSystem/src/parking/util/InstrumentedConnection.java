@@ -0,0 +1,144 @@
+package parking.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * JDBC connection wrapper that times every statement execution and captures its bound parameters,
+ * and applies the current request's QueryDeadline as the query timeout
+ * Services keep using plain java.sql interfaces - the wrapping is invisible to them
+ */
+public class InstrumentedConnection {
+    
+    private InstrumentedConnection() {
+    }
+    
+    /**
+     * Wrap a connection so that all statements it creates report to the listener
+     */
+    public static Connection wrap(Connection connection, QueryListener listener) {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new ConnectionHandler(connection, listener)
+        );
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static final Object[] NO_PARAMETERS = new Object[0];
+    
+    private static boolean isExecute(Method method) {
+        return method.getName().startsWith("execute");
+    }
+    
+    /**
+     * setInt(1, x), setString(2, s), setNull(3, type)... - parameter setters take the index first
+     */
+    private static boolean isParameterSetter(Method method, Object[] args) {
+        return method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer;
+    }
+    
+    /**
+     * Hands out instrumented statements
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final QueryListener listener;
+        
+        ConnectionHandler(Connection target, QueryListener listener) {
+            this.target = target;
+            this.listener = listener;
+        }
+        
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedConnection.invoke(target, method, args);
+            
+            if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                return Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    new StatementHandler(result, (String) args[0], listener)
+                );
+            }
+            if (result instanceof Statement && method.getName().equals("createStatement")) {
+                return Proxy.newProxyInstance(
+                    Statement.class.getClassLoader(),
+                    new Class<?>[] { Statement.class },
+                    new StatementHandler(result, null, listener)
+                );
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Times execute* calls and records bound parameters; for plain statements the SQL is the first argument.
+     * Statements are reused across requests, so a timeout set for one deadline is reset when the next
+     * execution has none.
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final String preparedSql;
+        private final QueryListener listener;
+        private Object[] parameters = NO_PARAMETERS;
+        private boolean deadlineTimeout;
+        
+        StatementHandler(Object target, String preparedSql, QueryListener listener) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.listener = listener;
+        }
+        
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isParameterSetter(method, args)) {
+                recordParameter((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+            } else if (method.getName().equals("clearParameters")) {
+                Arrays.fill(parameters, null);
+            }
+            
+            if (!isExecute(method)) {
+                return InstrumentedConnection.invoke(target, method, args);
+            }
+            
+            if (QueryDeadline.isSet()) {
+                deadlineTimeout = true;
+                QueryDeadline.apply((Statement) target);
+            } else if (deadlineTimeout) {
+                deadlineTimeout = false;
+                ((Statement) target).setQueryTimeout(0);
+            }
+            
+            String sql = preparedSql != null ? preparedSql
+                       : (args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "<batch>");
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = InstrumentedConnection.invoke(target, method, args);
+                failed = false;
+                return result;
+            } finally {
+                listener.queryExecuted(sql, parameters, System.nanoTime() - start, failed);
+            }
+        }
+        
+        private void recordParameter(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, 8));
+            }
+            parameters[index - 1] = value;
+        }
+    }
+}
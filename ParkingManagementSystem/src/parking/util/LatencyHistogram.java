@@ -0,0 +1,133 @@
+package parking.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram with log-linear buckets (HdrHistogram style)
+ * Values are recorded in microseconds with roughly 1.5% precision, from 1us up to ~9 hours
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;      // 128
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;       // 64
+    private static final int MAX_SHIFT = 28;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+    
+    /**
+     * Record a latency measured with System.nanoTime()
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+    
+    /**
+     * Record a latency in microseconds
+     */
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+    
+    /**
+     * Get the value (in microseconds) at the given percentile, e.g. 99.9
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+    
+    public double getPercentileMillis(double percentile) {
+        return getPercentileMicros(percentile) / 1000.0;
+    }
+    
+    public long getCount() { return totalCount.get(); }
+    public long getMaxMicros() { return maxMicros.get(); }
+    
+    public double getMeanMillis() {
+        long count = totalCount.get();
+        return count > 0 ? totalMicros.get() / 1000.0 / count : 0;
+    }
+    
+    /**
+     * Add all recorded values of another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalMicros.addAndGet(other.totalMicros.get());
+        maxMicros.accumulateAndGet(other.maxMicros.get(), Math::max);
+    }
+    
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+    
+    /**
+     * Get one-line summary for logs and status commands
+     */
+    public String getFormattedSummary() {
+        return String.format("count=%d mean=%.2fms p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                           getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99),
+                           getPercentileMillis(99.9), maxMicros.get() / 1000.0);
+    }
+    
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) ((value >> shift) - SUB_BUCKET_HALF);
+    }
+    
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
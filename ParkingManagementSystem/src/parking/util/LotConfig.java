@@ -0,0 +1,76 @@
+package parking.util;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Parking lots served by this installation and their capacities
+ *
+ * Lots are configured with -Dparking.lots=<id>:<capacity>,... (default "1:100", the original
+ * single garage). Spots of a lot are numbered 1..capacity, and every table row, request and
+ * booking carries the lot it belongs to.
+ */
+public class LotConfig {
+    
+    public static final int DEFAULT_LOT_ID = 1;
+    public static final int DEFAULT_CAPACITY = 100;
+    
+    private static final Map<Integer, Integer> CAPACITIES = parse(System.getProperty("parking.lots", DEFAULT_LOT_ID + ":" + DEFAULT_CAPACITY));
+    
+    private LotConfig() {
+    }
+    
+    private static Map<Integer, Integer> parse(String lots) {
+        Map<Integer, Integer> capacities = new TreeMap<>();
+        for (String lot : lots.split(",")) {
+            String[] parts = lot.trim().split(":");
+            int lotId = Integer.parseInt(parts[0].trim());
+            int capacity = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT_CAPACITY;
+            if (lotId < 1 || capacity < 1) {
+                throw new IllegalArgumentException("Invalid parking.lots entry: " + lot);
+            }
+            capacities.put(lotId, capacity);
+        }
+        return Collections.unmodifiableMap(capacities);
+    }
+    
+    /**
+     * Get the configured lot IDs in ascending order
+     */
+    public static Set<Integer> getLotIds() {
+        return CAPACITIES.keySet();
+    }
+    
+    public static boolean isConfigured(int lotId) {
+        return CAPACITIES.containsKey(lotId);
+    }
+    
+    /**
+     * Get the number of spots in a lot, or 0 for an unknown lot
+     */
+    public static int getCapacity(int lotId) {
+        return CAPACITIES.getOrDefault(lotId, 0);
+    }
+    
+    /**
+     * Check that a spot number exists in a lot
+     */
+    public static boolean isValidSpot(int lotId, int spotNumber) {
+        return spotNumber >= 1 && spotNumber <= getCapacity(lotId);
+    }
+    
+    /**
+     * Resolve a lot's copy of a data file - the default lot keeps the configured path,
+     * other lots use a lot-<id> directory next to it
+     */
+    public static Path dataPath(int lotId, Path path) {
+        if (lotId == DEFAULT_LOT_ID) {
+            return path;
+        }
+        Path directory = path.getParent() != null ? path.getParent().resolve("lot-" + lotId) : Path.of("lot-" + lotId);
+        return directory.resolve(path.getFileName());
+    }
+}
@@ -0,0 +1,157 @@
+package parking.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-place upgrade of a single-lot database to the multi-lot layout
+ *
+ * Every table gets a lot_id column (existing rows belong to lot 1) that leads its primary key
+ * and indexes, and the CHECK constraints that fixed the lot size at 100 spots are dropped -
+ * spot numbers are now validated against the lot's configured capacity (see LotConfig).
+ *
+ * Tables that already have lot_id are skipped, so the upgrade runs on every start-up.
+ */
+public class LotSchemaUpgrade {
+    
+    // Key changes per table, applied together with the new column
+    private static final Map<String, String> KEY_CHANGES = new LinkedHashMap<>();
+    static {
+        KEY_CHANGES.put("parking_orders", """
+            DROP INDEX idx_spot_date,
+            ADD INDEX idx_spot_date (lot_id, parking_spot_number, date_of_parking),
+            ADD INDEX idx_lot_date (lot_id, date_of_parking)
+            """);
+        KEY_CHANGES.put("parking_availability", """
+            DROP PRIMARY KEY,
+            ADD PRIMARY KEY (lot_id, availability_date, time_slot)
+            """);
+        KEY_CHANGES.put("spot_availability", """
+            DROP PRIMARY KEY,
+            ADD PRIMARY KEY (lot_id, availability_date, time_slot, parking_spot_number),
+            DROP INDEX idx_date_spot,
+            ADD INDEX idx_date_spot (lot_id, availability_date, parking_spot_number),
+            DROP INDEX idx_occupied,
+            ADD INDEX idx_occupied (lot_id, availability_date, time_slot, is_occupied)
+            """);
+        KEY_CHANGES.put("parking_slot_availability", """
+            DROP PRIMARY KEY,
+            ADD PRIMARY KEY (lot_id, epoch_day, slot)
+            """);
+        KEY_CHANGES.put("spot_slot_availability", """
+            DROP PRIMARY KEY,
+            ADD PRIMARY KEY (lot_id, epoch_day, slot, parking_spot_number),
+            DROP INDEX idx_day_spot,
+            ADD INDEX idx_day_spot (lot_id, epoch_day, parking_spot_number, slot),
+            DROP INDEX idx_occupied,
+            ADD INDEX idx_occupied (lot_id, epoch_day, slot, is_occupied)
+            """);
+    }
+    
+    private final Connection connection;
+    
+    public LotSchemaUpgrade(Connection connection) {
+        this.connection = connection;
+    }
+    
+    /**
+     * Upgrade every existing table that has no lot_id column yet
+     *
+     * @return the number of tables upgraded
+     */
+    public int upgrade() throws SQLException {
+        int upgraded = 0;
+        
+        for (Map.Entry<String, String> entry : KEY_CHANGES.entrySet()) {
+            String table = entry.getKey();
+            if (!tableExists(table) || hasColumn(table, "lot_id")) {
+                continue;
+            }
+            
+            long start = System.nanoTime();
+            try (Statement stmt = connection.createStatement()) {
+                for (String check : getCapacityChecks(table)) {
+                    stmt.executeUpdate("ALTER TABLE " + table + " DROP CHECK `" + check + "`");
+                }
+                stmt.executeUpdate("ALTER TABLE " + table
+                                   + " ADD COLUMN lot_id SMALLINT NOT NULL DEFAULT " + LotConfig.DEFAULT_LOT_ID + " FIRST, "
+                                   + entry.getValue());
+            }
+            upgraded++;
+            System.out.printf("Upgraded %s to multi-lot in %.1fs%n", table, (System.nanoTime() - start) / 1e9);
+        }
+        return upgraded;
+    }
+    
+    private boolean tableExists(String table) throws SQLException {
+        return exists("SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                      table, null);
+    }
+    
+    private boolean hasColumn(String table, String column) throws SQLException {
+        return exists("""
+            SELECT 1 FROM information_schema.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+            """, table, column);
+    }
+    
+    private boolean exists(String query, String table, String column) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, table);
+            if (column != null) {
+                stmt.setString(2, column);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    /**
+     * Get the names of the table's CHECK constraints that hard-code the 100-spot lot size
+     */
+    private List<String> getCapacityChecks(String table) throws SQLException {
+        String query = """
+            SELECT cc.CONSTRAINT_NAME
+            FROM information_schema.CHECK_CONSTRAINTS cc
+            JOIN information_schema.TABLE_CONSTRAINTS tc
+              ON tc.CONSTRAINT_SCHEMA = cc.CONSTRAINT_SCHEMA
+             AND tc.CONSTRAINT_NAME = cc.CONSTRAINT_NAME
+            WHERE tc.TABLE_SCHEMA = DATABASE()
+              AND tc.TABLE_NAME = ?
+              AND tc.CONSTRAINT_TYPE = 'CHECK'
+              AND cc.CHECK_CLAUSE LIKE '%100%'
+            """;
+        
+        List<String> checks = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    checks.add(rs.getString(1));
+                }
+            }
+        }
+        return checks;
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== Multi-lot schema upgrade ===");
+        
+        try (Connection connection = MySQLConnectionAdapter.openConnection()) {
+            int upgraded = new LotSchemaUpgrade(connection).upgrade();
+            System.out.println("✓ " + upgraded + " table(s) upgraded");
+            
+        } catch (Exception e) {
+            System.err.println("Upgrade failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -49,6 +49,21 @@ public class MySQLConnectionAdapter {
         }
     }
     
+    /**
+     * Open a separate connection with the same settings, for work that must not share
+     * the transaction state of the main connection (e.g. DDL from a background thread)
+     */
+    public static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+    }
+    
+    /**
+     * Open a connection to another instance (e.g. a read replica) with the same credentials
+     */
+    public static Connection openConnection(String url) throws SQLException {
+        return DriverManager.getConnection(url, DB_USER, DB_PASSWORD);
+    }
+    
     /**
      * Get the database connection
      */
@@ -76,7 +91,6 @@ public class MySQLConnectionAdapter {
                  ResultSet rs = stmt.executeQuery(testQuery)) {
                 
                 System.out.println("Parking tables accessible");
-                return true;
             }
             
         } catch (SQLException e) {
@@ -85,6 +99,19 @@ public class MySQLConnectionAdapter {
             // If tables don't exist, try to create them
             return createParkingTables();
         }
+        
+        try {
+            // Databases created before multi-lot support get a lot_id column, databases created
+            // before the slot timeline its columns, and lots added to -Dparking.lots get their availability rows
+            new LotSchemaUpgrade(connection).upgrade();
+            new TimelineSchemaUpgrade(connection).upgrade();
+            initializeBasicAvailability();
+            return true;
+            
+        } catch (SQLException e) {
+            System.err.println("Schema upgrade failed: " + e.getMessage());
+            return false;
+        }
     }
     
     /**
@@ -98,6 +125,7 @@ public class MySQLConnectionAdapter {
             String createOrdersTable = """
                 CREATE TABLE IF NOT EXISTS parking_orders (
                     order_id INT AUTO_INCREMENT PRIMARY KEY,
+                    lot_id SMALLINT NOT NULL DEFAULT 1,
                     parking_spot_number INT NOT NULL,
                     subscriber_id VARCHAR(50) NOT NULL,
                     date_of_parking DATE NOT NULL,
@@ -107,33 +135,35 @@ public class MySQLConnectionAdapter {
                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                     
-                    INDEX idx_spot_date (parking_spot_number, date_of_parking),
+                    INDEX idx_spot_date (lot_id, parking_spot_number, date_of_parking),
+                    INDEX idx_lot_date (lot_id, date_of_parking),
                     INDEX idx_subscriber (subscriber_id),
                     
-                    CHECK (parking_spot_number BETWEEN 1 AND 100)
+                    CHECK (parking_spot_number >= 1)
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
                 """;
             
             // Create parking_availability table
             String createAvailabilityTable = """
                 CREATE TABLE IF NOT EXISTS parking_availability (
+                    lot_id SMALLINT NOT NULL DEFAULT 1,
                     availability_date DATE,
                     time_slot TIME,
                     occupied_spots INT DEFAULT 0,
-                    free_spots INT DEFAULT 100,
+                    free_spots INT DEFAULT 0,
                     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     
-                    PRIMARY KEY (availability_date, time_slot),
+                    PRIMARY KEY (lot_id, availability_date, time_slot),
                     
-                    CHECK (occupied_spots >= 0 AND occupied_spots <= 100),
-                    CHECK (free_spots >= 0 AND free_spots <= 100),
-                    CHECK (occupied_spots + free_spots = 100)
+                    CHECK (occupied_spots >= 0),
+                    CHECK (free_spots >= 0)
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
                 """;
             
             // Create spot_availability table
             String createSpotAvailabilityTable = """
                 CREATE TABLE IF NOT EXISTS spot_availability (
+                    lot_id SMALLINT NOT NULL DEFAULT 1,
                     availability_date DATE,
                     time_slot TIME,
                     parking_spot_number INT,
@@ -141,12 +171,12 @@ public class MySQLConnectionAdapter {
                     reserved_by VARCHAR(50) DEFAULT NULL,
                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     
-                    PRIMARY KEY (availability_date, time_slot, parking_spot_number),
+                    PRIMARY KEY (lot_id, availability_date, time_slot, parking_spot_number),
                     
-                    INDEX idx_date_spot (availability_date, parking_spot_number),
-                    INDEX idx_occupied (availability_date, time_slot, is_occupied),
+                    INDEX idx_date_spot (lot_id, availability_date, parking_spot_number),
+                    INDEX idx_occupied (lot_id, availability_date, time_slot, is_occupied),
                     
-                    CHECK (parking_spot_number BETWEEN 1 AND 100)
+                    CHECK (parking_spot_number >= 1)
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
                 """;
             
@@ -160,6 +190,14 @@ public class MySQLConnectionAdapter {
                 stmt.executeUpdate(createSpotAvailabilityTable);
                 System.out.println("Created spot_availability table");
                 
+                if (SlotSchema.current().isSlotIndex()) {
+                    for (String createSlotTable : SlotSchema.createSlotTableStatements()) {
+                        stmt.executeUpdate(createSlotTable);
+                    }
+                    System.out.println("Created slot-index availability tables");
+                }
+                new TimelineSchemaUpgrade(connection).upgrade();
+                
                 // Initialize with some basic availability data
                 initializeBasicAvailability();
                 
@@ -173,33 +211,44 @@ public class MySQLConnectionAdapter {
     }
     
     /**
-     * Initialize basic availability data for testing
+     * Initialize basic availability data for every configured lot that has none yet
      */
     private static void initializeBasicAvailability() {
+        for (int lotId : LotConfig.getLotIds()) {
+            initializeBasicAvailability(lotId, LotConfig.getCapacity(lotId));
+        }
+    }
+    
+    /**
+     * Initialize basic availability data of one lot for testing
+     */
+    private static void initializeBasicAvailability(int lotId, int capacity) {
         try {
-            System.out.println("Initializing basic availability data...");
+            SlotSchema schema = SlotSchema.current();
             
             // Check if data already exists
-            String checkQuery = "SELECT COUNT(*) FROM parking_availability";
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(checkQuery)) {
-                
-                if (rs.next() && rs.getInt(1) > 0) {
-                    System.out.println("Availability data already exists");
-                    return;
+            String checkQuery = schema.sql("SELECT COUNT(*) FROM {summary_table} WHERE lot_id = ?");
+            try (PreparedStatement stmt = connection.prepareStatement(checkQuery)) {
+                stmt.setInt(1, lotId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && rs.getInt(1) > 0) {
+                        return;
+                    }
                 }
             }
             
+            System.out.printf("Initializing basic availability data for lot %d (%d spots)...%n", lotId, capacity);
+            
             // Insert basic availability for today and tomorrow
-            String insertAvailability = """
-                INSERT INTO parking_availability (availability_date, time_slot, occupied_spots, free_spots)
-                VALUES (?, ?, 0, 100)
-                """;
+            String insertAvailability = schema.sql("""
+                INSERT INTO {summary_table} (lot_id, {day}, {slot}, occupied_spots, free_spots)
+                VALUES (?, ?, ?, 0, ?)
+                """);
             
-            String insertSpotAvailability = """
-                INSERT INTO spot_availability (availability_date, time_slot, parking_spot_number, is_occupied)
-                VALUES (?, ?, ?, FALSE)
-                """;
+            String insertSpotAvailability = schema.sql("""
+                INSERT INTO {spot_table} (lot_id, {day}, {slot}, parking_spot_number, is_occupied)
+                VALUES (?, ?, ?, ?, FALSE)
+                """);
             
             java.time.LocalDate today = java.time.LocalDate.now();
             java.time.LocalDate tomorrow = today.plusDays(1);
@@ -213,15 +262,18 @@ public class MySQLConnectionAdapter {
                             java.time.LocalTime timeSlot = java.time.LocalTime.of(hour, minute);
                             
                             // Insert general availability
-                            availStmt.setDate(1, java.sql.Date.valueOf(date));
-                            availStmt.setTime(2, java.sql.Time.valueOf(timeSlot));
+                            availStmt.setInt(1, lotId);
+                            schema.setDay(availStmt, 2, date);
+                            schema.setSlot(availStmt, 3, timeSlot);
+                            availStmt.setInt(4, capacity);
                             availStmt.executeUpdate();
                             
-                            // Insert spot-specific availability for all 100 spots
-                            for (int spot = 1; spot <= 100; spot++) {
-                                spotStmt.setDate(1, java.sql.Date.valueOf(date));
-                                spotStmt.setTime(2, java.sql.Time.valueOf(timeSlot));
-                                spotStmt.setInt(3, spot);
+                            // Insert spot-specific availability for every spot of the lot
+                            for (int spot = 1; spot <= capacity; spot++) {
+                                spotStmt.setInt(1, lotId);
+                                schema.setDay(spotStmt, 2, date);
+                                schema.setSlot(spotStmt, 3, timeSlot);
+                                spotStmt.setInt(4, spot);
                                 spotStmt.executeUpdate();
                             }
                         }
@@ -248,8 +300,9 @@ public class MySQLConnectionAdapter {
                 
                 System.out.println("\n=== Recent Parking Orders ===");
                 while (rs.next()) {
-                    System.out.printf("Order #%d: Spot #%d, Customer: %s, Date: %s, Time: %s-%s%n",
+                    System.out.printf("Order #%d: Lot %d, Spot #%d, Customer: %s, Date: %s, Time: %s-%s%n",
                                     rs.getInt("order_id"),
+                                    rs.getInt("lot_id"),
                                     rs.getInt("parking_spot_number"),
                                     rs.getString("subscriber_id"),
                                     rs.getDate("date_of_parking"),
@@ -277,27 +330,32 @@ public class MySQLConnectionAdapter {
             int roundedMinutes = (minutes / 15) * 15;
             currentTime = java.time.LocalTime.of(currentTime.getHour(), roundedMinutes);
             
-            String query = """
+            SlotSchema schema = SlotSchema.current();
+            String query = schema.sql("""
                 SELECT 
+                    lot_id,
                     COUNT(*) as total_spots,
                     SUM(CASE WHEN is_occupied = FALSE THEN 1 ELSE 0 END) as free_spots,
                     SUM(CASE WHEN is_occupied = TRUE THEN 1 ELSE 0 END) as occupied_spots
-                FROM spot_availability 
-                WHERE availability_date = ? AND time_slot = ?
-                """;
+                FROM {spot_table} 
+                WHERE {day} = ? AND {slot} = ?
+                GROUP BY lot_id
+                ORDER BY lot_id
+                """);
             
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setDate(1, java.sql.Date.valueOf(today));
-                stmt.setTime(2, java.sql.Time.valueOf(currentTime));
+                schema.setDay(stmt, 1, today);
+                schema.setSlot(stmt, 2, currentTime);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
+                    while (rs.next()) {
                         int total = rs.getInt("total_spots");
                         int free = rs.getInt("free_spots");
                         int occupied = rs.getInt("occupied_spots");
                         double rate = total > 0 ? (double) occupied / total * 100 : 0;
                         
                         System.out.println("\n=== Parking Availability Summary ===");
+                        System.out.printf("Lot: %d%n", rs.getInt("lot_id"));
                         System.out.printf("Time: %s%n", currentTime);
                         System.out.printf("Total spots: %d%n", total);
                         System.out.printf("Available: %d%n", free);
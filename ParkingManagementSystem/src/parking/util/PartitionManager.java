@@ -0,0 +1,265 @@
+package parking.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Daily RANGE partitioning of the date-keyed tables
+ *
+ * Each table gets one partition per day (pYYYYMMDD), a p_before partition for older rows and
+ * a p_future catch-all for bookings beyond the prepared horizon. The conversion is an admin step -
+ * run main() (like SlotSchemaMigration) with the server stopped. rotate() splits p_future so the
+ * next daysAhead days each have their own partition, and retires partitions older than
+ * retainDays - either copying their rows to <table>_archive first, or dropping them outright.
+ * Queries on a single date then prune to a single partition however much history accumulates.
+ *
+ * MySQL requires the partitioning column in every unique key, so converting parking_orders
+ * widens its primary key to (order_id, date_of_parking).
+ *
+ * With parking.partitions.enabled the server runs rotate() hourly; it leaves unpartitioned
+ * tables alone.
+ *
+ * Configuration (system properties):
+ * parking.partitions.enabled=false, parking.partitions.daysAhead=14,
+ * parking.partitions.retainDays=90, parking.partitions.retire=archive|drop
+ */
+public class PartitionManager {
+    
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+    private static final String BEFORE = "p_before";
+    private static final String FUTURE = "p_future";
+    
+    /**
+     * A partitioned table and its date column - epoch-day columns are partitioned by integer RANGE
+     */
+    private static class TableSpec {
+        final String table;
+        final String column;
+        final boolean epochDay;
+        
+        TableSpec(String table, String column, boolean epochDay) {
+            this.table = table;
+            this.column = column;
+            this.epochDay = epochDay;
+        }
+        
+        String bound(LocalDate date) {
+            return epochDay ? String.valueOf(date.toEpochDay()) : "'" + date + "'";
+        }
+        
+        String partitionBy() {
+            return epochDay ? "PARTITION BY RANGE (" + column + ")" : "PARTITION BY RANGE COLUMNS (" + column + ")";
+        }
+    }
+    
+    private final Connection connection;
+    private final List<TableSpec> tables = new ArrayList<>();
+    private final int daysAhead;
+    private final int retainDays;
+    private final boolean archive;
+    
+    public PartitionManager(Connection connection, SlotSchema schema, int daysAhead, int retainDays, boolean archive) {
+        this.connection = connection;
+        this.daysAhead = daysAhead;
+        this.retainDays = retainDays;
+        this.archive = archive;
+        
+        tables.add(new TableSpec(schema.spotTable(), schema.dayColumn(), schema.isSlotIndex()));
+        tables.add(new TableSpec(schema.summaryTable(), schema.dayColumn(), schema.isSlotIndex()));
+        tables.add(new TableSpec("parking_orders", "date_of_parking", false));
+    }
+    
+    /**
+     * Create a manager configured by parking.partitions.* system properties
+     */
+    public static PartitionManager fromSystemProperties(Connection connection) {
+        return new PartitionManager(
+            connection,
+            SlotSchema.current(),
+            Integer.getInteger("parking.partitions.daysAhead", 14),
+            Integer.getInteger("parking.partitions.retainDays", 90),
+            !"drop".equalsIgnoreCase(System.getProperty("parking.partitions.retire", "archive"))
+        );
+    }
+    
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("parking.partitions.enabled", "false"));
+    }
+    
+    /**
+     * Convert the unpartitioned tables to daily partitions and create the upcoming ones
+     */
+    public void partition() throws SQLException {
+        LocalDate today = LocalDate.now();
+        
+        for (TableSpec spec : tables) {
+            if (getPartitions(spec.table).isEmpty()) {
+                partitionTable(spec, today);
+            }
+            createUpcomingPartitions(spec, getPartitions(spec.table), today.plusDays(daysAhead));
+        }
+    }
+    
+    /**
+     * Create upcoming partitions and retire old ones - unpartitioned tables are skipped
+     */
+    public void rotate() throws SQLException {
+        LocalDate today = LocalDate.now();
+        
+        for (TableSpec spec : tables) {
+            List<String> partitions = getPartitions(spec.table);
+            
+            if (partitions.isEmpty()) {
+                System.out.println(spec.table + " is not partitioned - run PartitionManager to convert it");
+                continue;
+            }
+            
+            createUpcomingPartitions(spec, partitions, today.plusDays(daysAhead));
+            retireOldPartitions(spec, partitions, today.minusDays(retainDays));
+        }
+    }
+    
+    /**
+     * Get the partition names of a table in order, or an empty list if it is not partitioned
+     */
+    private List<String> getPartitions(String table) throws SQLException {
+        String query = """
+            SELECT PARTITION_NAME
+            FROM information_schema.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE()
+              AND TABLE_NAME = ?
+              AND PARTITION_NAME IS NOT NULL
+            ORDER BY PARTITION_ORDINAL_POSITION
+            """;
+        
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getString(1));
+                }
+            }
+        }
+        return partitions;
+    }
+    
+    /**
+     * Convert a table to daily partitions starting today - older rows go to p_before
+     */
+    private void partitionTable(TableSpec spec, LocalDate today) throws SQLException {
+        long start = System.nanoTime();
+        
+        try (Statement stmt = connection.createStatement()) {
+            if (spec.table.equals("parking_orders")) {
+                stmt.executeUpdate("ALTER TABLE parking_orders DROP PRIMARY KEY, ADD PRIMARY KEY (order_id, date_of_parking)");
+            }
+            
+            stmt.executeUpdate("ALTER TABLE " + spec.table + " " + spec.partitionBy() + " ("
+                               + "PARTITION " + BEFORE + " VALUES LESS THAN (" + spec.bound(today) + "), "
+                               + "PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))");
+        }
+        
+        System.out.printf("Partitioned %s by %s in %.1fs%n", spec.table, spec.column, (System.nanoTime() - start) / 1e9);
+    }
+    
+    /**
+     * Split p_future so every day up to horizon has its own partition
+     */
+    private void createUpcomingPartitions(TableSpec spec, List<String> partitions, LocalDate horizon) throws SQLException {
+        LocalDate next = LocalDate.now();
+        for (String partition : partitions) {
+            LocalDate date = dateOf(partition);
+            if (date != null && !date.isBefore(next)) {
+                next = date.plusDays(1);
+            }
+        }
+        
+        if (next.isAfter(horizon)) {
+            return;
+        }
+        
+        StringBuilder ddl = new StringBuilder("ALTER TABLE " + spec.table + " REORGANIZE PARTITION " + FUTURE + " INTO (");
+        int created = 0;
+        for (LocalDate date = next; !date.isAfter(horizon); date = date.plusDays(1)) {
+            ddl.append("PARTITION ").append(date.format(PARTITION_NAME))
+               .append(" VALUES LESS THAN (").append(spec.bound(date.plusDays(1))).append("), ");
+            created++;
+        }
+        ddl.append("PARTITION ").append(FUTURE).append(" VALUES LESS THAN (MAXVALUE))");
+        
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(ddl.toString());
+        }
+        System.out.printf("Created %d partition(s) of %s from %s%n", created, spec.table, next);
+    }
+    
+    /**
+     * Archive or drop the partitions that end before the cutoff date
+     */
+    private void retireOldPartitions(TableSpec spec, List<String> partitions, LocalDate cutoff) throws SQLException {
+        List<String> retired = new ArrayList<>();
+        for (String partition : partitions) {
+            LocalDate date = dateOf(partition);
+            if (date != null && date.isBefore(cutoff)) {
+                retired.add(partition);
+            }
+        }
+        
+        // p_before only holds rows from before partitioning - retire it once the first day is retired
+        if (!retired.isEmpty() && partitions.contains(BEFORE)) {
+            retired.add(0, BEFORE);
+        }
+        
+        if (retired.isEmpty()) {
+            return;
+        }
+        
+        try (Statement stmt = connection.createStatement()) {
+            if (archive) {
+                String archiveTable = spec.table + "_archive";
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + archiveTable + " LIKE " + spec.table);
+                if (!getPartitions(archiveTable).isEmpty()) {
+                    stmt.executeUpdate("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+                }
+                for (String partition : retired) {
+                    stmt.executeUpdate("INSERT IGNORE INTO " + archiveTable
+                                       + " SELECT * FROM " + spec.table + " PARTITION (" + partition + ")");
+                }
+            }
+            
+            stmt.executeUpdate("ALTER TABLE " + spec.table + " DROP PARTITION " + String.join(", ", retired));
+        }
+        System.out.printf("%s %d partition(s) of %s before %s%n",
+                          archive ? "Archived" : "Dropped", retired.size(), spec.table, cutoff);
+    }
+    
+    private static LocalDate dateOf(String partition) {
+        if (partition.equals(BEFORE) || partition.equals(FUTURE)) {
+            return null;
+        }
+        return LocalDate.parse(partition, PARTITION_NAME);
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== Daily partitioning ===");
+        
+        try {
+            fromSystemProperties(MySQLConnectionAdapter.getConnection()).partition();
+            System.out.println("✓ Tables partitioned - start the server with -Dparking.partitions.enabled=true to rotate them");
+            
+        } catch (Exception e) {
+            System.err.println("Partitioning failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            MySQLConnectionAdapter.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package parking.util;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+/**
+ * Deadline of the request the current thread is serving, applied to its JDBC statements
+ *
+ * The server sets it around a request; InstrumentedConnection then gives every statement the
+ * time that is left as its query timeout, and fails statements at once when none is left. JDBC
+ * timeouts are whole seconds, so the timeout is rounded up.
+ */
+public final class QueryDeadline {
+    
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+    
+    private QueryDeadline() {
+    }
+    
+    /**
+     * Set the deadline of the current thread, in epoch milliseconds - 0 for none
+     */
+    public static void set(long deadlineMillis) {
+        if (deadlineMillis > 0) {
+            DEADLINE.set(deadlineMillis);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+    
+    public static void clear() {
+        DEADLINE.remove();
+    }
+    
+    /**
+     * @return true if the current thread has a deadline
+     */
+    public static boolean isSet() {
+        return DEADLINE.get() != null;
+    }
+    
+    /**
+     * Give the statement the time left before the current thread's deadline as its query timeout
+     *
+     * @throws SQLTimeoutException if the deadline has passed
+     */
+    static void apply(Statement statement) throws SQLException {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("Request deadline passed " + -remaining + "ms ago");
+        }
+        statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+    }
+}
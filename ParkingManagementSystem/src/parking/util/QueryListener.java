@@ -0,0 +1,14 @@
+package parking.util;
+
+/**
+ * Callback for timing information about executed JDBC statements
+ */
+public interface QueryListener {
+    /**
+     * Called after every statement execution, whether it succeeded or failed
+     *
+     * @param parameters the values bound to the statement, indexed from 0 (empty for plain statements).
+     *                   The array is reused by the statement - copy it if it must be kept.
+     */
+    void queryExecuted(String sql, Object[] parameters, long elapsedNanos, boolean failed);
+}
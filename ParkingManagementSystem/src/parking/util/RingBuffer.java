@@ -0,0 +1,183 @@
+package parking.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Pre-allocated ring of mutable entries with lock-free multi-producer sequencing and a single
+ * consumer thread (the LMAX Disruptor pattern)
+ *
+ * A producer claims a sequence with one CAS, fills the entry at that sequence in place and
+ * publishes it. Claiming never blocks: when the ring is full tryClaim() returns -1 and the
+ * producer decides what to do (e.g. answer "busy"). The consumer hands every published entry
+ * to its handler in order, telling it when an entry is the last one currently available, so the
+ * handler can work in batches. Entries are reused, so nothing is allocated per event.
+ */
+public class RingBuffer<E> {
+    
+    /**
+     * Receives each entry on the consumer thread
+     */
+    @FunctionalInterface
+    public interface EventHandler<E> {
+        void onEvent(E entry, long sequence, boolean endOfBatch) throws Exception;
+    }
+    
+    private static final int SPINS_BEFORE_PARK = 100;
+    
+    private final Object[] entries;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private final AtomicIntegerArray published; // Round of the sequence last published in each slot
+    
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+    private volatile boolean running;
+    
+    public RingBuffer(int size, Supplier<E> factory) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+        
+        entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+        }
+        mask = size - 1;
+        indexShift = Integer.numberOfTrailingZeros(size);
+        published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+    
+    public int getSize() { return entries.length; }
+    public boolean isRunning() { return running; }
+    
+    /**
+     * Number of claimed entries the consumer has not finished yet
+     */
+    public long getBacklog() {
+        return claimed.get() - consumed.get();
+    }
+    
+    /**
+     * Claim the next sequence without blocking
+     *
+     * @return the sequence, or -1 if the ring is full or stopped
+     */
+    public long tryClaim() {
+        while (running) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - entries.length > consumed.get()) {
+                return -1;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+        return -1;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+    
+    /**
+     * Make a claimed and filled entry visible to the consumer
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, (int) (sequence >>> indexShift));
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+    
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+    
+    /**
+     * Start the consumer thread
+     */
+    public synchronized void start(String threadName, EventHandler<E> handler) {
+        if (consumer != null) {
+            throw new IllegalStateException("Consumer already started");
+        }
+        running = true;
+        Thread thread = new Thread(() -> consume(handler), threadName);
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+    
+    /**
+     * Stop the consumer after it has handled everything published so far
+     *
+     * @return true if the consumer finished within the timeout
+     */
+    public boolean stop(long timeoutMillis) throws InterruptedException {
+        running = false;
+        Thread thread = consumer;
+        if (thread == null) {
+            return true;
+        }
+        LockSupport.unpark(thread);
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+    
+    private void consume(EventHandler<E> handler) {
+        long next = consumed.get() + 1;
+        int idleSpins = 0;
+        
+        while (true) {
+            long available = highestPublished(next, claimed.get());
+            
+            if (available >= next) {
+                idleSpins = 0;
+                for (long sequence = next; sequence <= available; sequence++) {
+                    try {
+                        handler.onEvent(get(sequence), sequence, sequence == available);
+                    } catch (Throwable t) {
+                        System.err.println("Error handling ring entry " + sequence + ": " + t.getMessage());
+                        t.printStackTrace();
+                    }
+                }
+                consumed.set(available); // Frees the handled entries for producers
+                next = available + 1;
+                
+            } else if (!running && claimed.get() < next) {
+                return; // Stopped, and every claimed entry has been handled
+                
+            } else if (++idleSpins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+                
+            } else {
+                consumerWaiting = true;
+                if (!isPublished(next) && running) {
+                    LockSupport.parkNanos(1_000_000);
+                }
+                consumerWaiting = false;
+            }
+        }
+    }
+    
+    /**
+     * Get the last sequence of the contiguous published run starting at next
+     */
+    private long highestPublished(long next, long claimedUpTo) {
+        for (long sequence = next; sequence <= claimedUpTo; sequence++) {
+            if (!isPublished(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return claimedUpTo;
+    }
+}
@@ -0,0 +1,196 @@
+package parking.util;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Physical layout of the availability tables
+ *
+ * DATE_TIME is the original layout: spot_availability / parking_availability keyed by
+ * DATE availability_date + TIME time_slot.
+ * SLOT_INDEX uses spot_slot_availability / parking_slot_availability keyed by
+ * INT epoch_day + SMALLINT slot (0-95), so every predicate is a plain integer range.
+ *
+ * Services write their SQL once with placeholders and bind values through the schema:
+ * {spot_table}, {summary_table}, {day}, {slot}, {timeline}, {timeline_value} and {timeline_range}.
+ * {timeline} is the row's absolute slot (see TimelineSchemaUpgrade) - epoch_slot in SLOT_INDEX,
+ * slot_start in DATE_TIME - so a booking window is one index range even when it runs past
+ * midnight. In DATE_TIME a value is TIMESTAMP(?, ?) bound with the same date and time binders the
+ * rows were written with, so the driver's time zone conversion of DATE and TIME applies to both
+ * sides alike; it takes two parameters, so bind it with setTimeline and use the index it returns
+ * for the parameters after it.
+ *
+ * A booking window is written as {timeline_range} (or alias.{timeline_range}) and bound with
+ * setTimelineRange. Besides the {timeline} bounds it repeats the window's days as
+ * {day} BETWEEN ? AND ?, because the tables are partitioned by day (see PartitionManager) and
+ * MySQL only prunes partitions on the partitioning column.
+ *
+ * The mode is selected with -Dparking.schema.mode=DATE_TIME|SLOT_INDEX (default DATE_TIME).
+ * Run SlotSchemaMigration before switching an existing database to SLOT_INDEX.
+ */
+public class SlotSchema {
+    
+    public enum Mode { DATE_TIME, SLOT_INDEX }
+    
+    public static final int SLOTS_PER_DAY = TimeUtils.SLOTS_PER_DAY;
+    
+    private static final SlotSchema DATE_TIME = new SlotSchema(Mode.DATE_TIME);
+    private static final SlotSchema SLOT_INDEX = new SlotSchema(Mode.SLOT_INDEX);
+    
+    private static final Pattern TIMELINE_RANGE = Pattern.compile("(\\w+\\.)?\\{timeline_range\\}");
+    
+    private final Mode mode;
+    
+    private SlotSchema(Mode mode) {
+        this.mode = mode;
+    }
+    
+    /**
+     * Get the schema selected by the parking.schema.mode system property
+     */
+    public static SlotSchema current() {
+        return of(Mode.valueOf(System.getProperty("parking.schema.mode", Mode.DATE_TIME.name()).trim().toUpperCase()));
+    }
+    
+    public static SlotSchema of(Mode mode) {
+        return mode == Mode.SLOT_INDEX ? SLOT_INDEX : DATE_TIME;
+    }
+    
+    public Mode getMode() { return mode; }
+    
+    public boolean isSlotIndex() {
+        return mode == Mode.SLOT_INDEX;
+    }
+    
+    // Table and column names
+    public String spotTable() { return isSlotIndex() ? "spot_slot_availability" : "spot_availability"; }
+    public String summaryTable() { return isSlotIndex() ? "parking_slot_availability" : "parking_availability"; }
+    public String dayColumn() { return isSlotIndex() ? "epoch_day" : "availability_date"; }
+    public String slotColumn() { return isSlotIndex() ? "slot" : "time_slot"; }
+    public String timelineColumn() { return isSlotIndex() ? "epoch_slot" : "slot_start"; }
+    
+    /**
+     * Resolve the table and column placeholders of a query
+     */
+    public String sql(String template) {
+        Matcher range = TIMELINE_RANGE.matcher(template);
+        return range.replaceAll(m -> {
+                String alias = m.group(1) == null ? "" : m.group(1);
+                return Matcher.quoteReplacement(alias + "{day} BETWEEN ? AND ? AND "
+                    + alias + "{timeline} >= {timeline_value} AND " + alias + "{timeline} < {timeline_value}");
+            })
+            .replace("{spot_table}", spotTable())
+            .replace("{summary_table}", summaryTable())
+            .replace("{day}", dayColumn())
+            .replace("{slot}", slotColumn())
+            .replace("{timeline}", timelineColumn())
+            .replace("{timeline_value}", isSlotIndex() ? "?" : "TIMESTAMP(?, ?)");
+    }
+    
+    // Binders
+    
+    public void setDay(PreparedStatement stmt, int index, LocalDate date) throws SQLException {
+        if (isSlotIndex()) {
+            stmt.setInt(index, (int) date.toEpochDay());
+        } else {
+            stmt.setDate(index, java.sql.Date.valueOf(date));
+        }
+    }
+    
+    public void setSlot(PreparedStatement stmt, int index, LocalTime time) throws SQLException {
+        if (isSlotIndex()) {
+            stmt.setInt(index, TimeUtils.slotOf(time));
+        } else {
+            stmt.setTime(index, java.sql.Time.valueOf(time));
+        }
+    }
+    
+    /**
+     * Bind a {timeline_value}: a slot counted from date's midnight, past 96 on the following days
+     *
+     * @return the index of the next parameter
+     */
+    public int setTimeline(PreparedStatement stmt, int index, LocalDate date, int slot) throws SQLException {
+        if (isSlotIndex()) {
+            stmt.setInt(index, TimeUtils.epochSlot(date, slot));
+            return index + 1;
+        }
+        setDay(stmt, index, TimeUtils.dateOfSlot(date, slot));
+        setSlot(stmt, index + 1, TimeUtils.slotToTime(slot));
+        return index + 2;
+    }
+    
+    /**
+     * Bind the range [fromSlot, toSlot) of a {timeline_range} - its days first, then its slots
+     *
+     * @return the index of the next parameter
+     */
+    public int setTimelineRange(PreparedStatement stmt, int index, LocalDate date, int fromSlot, int toSlot)
+            throws SQLException {
+        setDay(stmt, index, TimeUtils.dateOfSlot(date, fromSlot));
+        setDay(stmt, index + 1, TimeUtils.dateOfSlot(date, Math.max(fromSlot, toSlot - 1)));
+        return setTimeline(stmt, setTimeline(stmt, index + 2, date, fromSlot), date, toSlot);
+    }
+    
+    /**
+     * Read the slot column of the current row as a time
+     */
+    public LocalTime getSlot(ResultSet rs) throws SQLException {
+        return isSlotIndex() ? TimeUtils.slotToTime(rs.getInt(slotColumn())) : rs.getTime(slotColumn()).toLocalTime();
+    }
+    
+    /**
+     * Read the day column of the current row as a date
+     */
+    public LocalDate getDay(ResultSet rs) throws SQLException {
+        return isSlotIndex() ? LocalDate.ofEpochDay(rs.getInt(dayColumn())) : rs.getDate(dayColumn()).toLocalDate();
+    }
+    
+    /**
+     * DDL for the SLOT_INDEX tables
+     */
+    public static String[] createSlotTableStatements() {
+        return new String[] {
+            """
+            CREATE TABLE IF NOT EXISTS parking_slot_availability (
+                lot_id SMALLINT NOT NULL DEFAULT 1,
+                epoch_day INT NOT NULL,
+                slot SMALLINT NOT NULL,
+                occupied_spots SMALLINT DEFAULT 0,
+                free_spots SMALLINT DEFAULT 0,
+                last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                
+                PRIMARY KEY (lot_id, epoch_day, slot),
+                
+                CHECK (slot BETWEEN 0 AND 95),
+                CHECK (occupied_spots >= 0),
+                CHECK (free_spots >= 0)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS spot_slot_availability (
+                lot_id SMALLINT NOT NULL DEFAULT 1,
+                epoch_day INT NOT NULL,
+                slot SMALLINT NOT NULL,
+                parking_spot_number SMALLINT NOT NULL,
+                is_occupied BOOLEAN DEFAULT FALSE,
+                reserved_by VARCHAR(50) DEFAULT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                
+                PRIMARY KEY (lot_id, epoch_day, slot, parking_spot_number),
+                
+                INDEX idx_day_spot (lot_id, epoch_day, parking_spot_number, slot),
+                INDEX idx_occupied (lot_id, epoch_day, slot, is_occupied),
+                
+                CHECK (slot BETWEEN 0 AND 95),
+                CHECK (parking_spot_number >= 1)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """
+        };
+    }
+}
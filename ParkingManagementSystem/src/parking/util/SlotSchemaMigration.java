@@ -0,0 +1,193 @@
+package parking.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Online migration of the availability tables to the SLOT_INDEX layout
+ *
+ * 1. Creates spot_slot_availability / parking_slot_availability if needed, with their timeline columns.
+ * 2. Copies the DATE/TIME tables one day at a time, each day in its own short statement,
+ *    so the server keeps serving (in DATE_TIME mode) while the copy runs.
+ * 3. Runs delta passes that re-apply rows changed since they were copied, until a pass
+ *    finds nothing to change (or migration.maxDeltaPasses is reached).
+ * 4. Compares row counts.
+ *
+ * Then restart the server with -Dparking.schema.mode=SLOT_INDEX. The tool is idempotent -
+ * run it again right before the switch to pick up the last changes.
+ *
+ * Options: -Dmigration.pauseMs=50 (pause between days), -Dmigration.maxDeltaPasses=5
+ */
+public class SlotSchemaMigration {
+    
+    private static final String COPY_SPOTS = """
+        INSERT IGNORE INTO spot_slot_availability
+            (lot_id, epoch_day, slot, parking_spot_number, is_occupied, reserved_by, created_at)
+        SELECT lot_id, DATEDIFF(availability_date, '1970-01-01'), TIME_TO_SEC(time_slot) DIV 900,
+               parking_spot_number, is_occupied, reserved_by, created_at
+        FROM spot_availability
+        WHERE availability_date = ?
+        """;
+    
+    private static final String COPY_SUMMARY = """
+        INSERT IGNORE INTO parking_slot_availability
+            (lot_id, epoch_day, slot, occupied_spots, free_spots, last_updated)
+        SELECT lot_id, DATEDIFF(availability_date, '1970-01-01'), TIME_TO_SEC(time_slot) DIV 900,
+               occupied_spots, free_spots, last_updated
+        FROM parking_availability
+        WHERE availability_date = ?
+        """;
+    
+    private static final String DELTA_SPOTS = """
+        UPDATE spot_slot_availability n
+        JOIN spot_availability o
+          ON n.lot_id = o.lot_id
+         AND n.epoch_day = DATEDIFF(o.availability_date, '1970-01-01')
+         AND n.slot = TIME_TO_SEC(o.time_slot) DIV 900
+         AND n.parking_spot_number = o.parking_spot_number
+        SET n.is_occupied = o.is_occupied,
+            n.reserved_by = o.reserved_by
+        WHERE o.availability_date = ?
+          AND (n.is_occupied <> o.is_occupied OR NOT (n.reserved_by <=> o.reserved_by))
+        """;
+    
+    private static final String DELTA_SUMMARY = """
+        UPDATE parking_slot_availability n
+        JOIN parking_availability o
+          ON n.lot_id = o.lot_id
+         AND n.epoch_day = DATEDIFF(o.availability_date, '1970-01-01')
+         AND n.slot = TIME_TO_SEC(o.time_slot) DIV 900
+        SET n.occupied_spots = o.occupied_spots,
+            n.free_spots = o.free_spots,
+            n.last_updated = o.last_updated
+        WHERE o.availability_date = ?
+          AND (n.occupied_spots <> o.occupied_spots OR n.free_spots <> o.free_spots)
+        """;
+    
+    private final Connection connection;
+    private final long pauseMillis;
+    
+    public SlotSchemaMigration(Connection connection, long pauseMillis) {
+        this.connection = connection;
+        this.pauseMillis = pauseMillis;
+    }
+    
+    /**
+     * Run the full migration
+     *
+     * @return true if the row counts of the old and new tables match
+     */
+    public boolean migrate(int maxDeltaPasses) throws SQLException, InterruptedException {
+        connection.setAutoCommit(true);
+        new LotSchemaUpgrade(connection).upgrade(); // Both layouts must carry lot_id
+        
+        try (Statement stmt = connection.createStatement()) {
+            for (String createSlotTable : SlotSchema.createSlotTableStatements()) {
+                stmt.executeUpdate(createSlotTable);
+            }
+        }
+        new TimelineSchemaUpgrade(connection).upgrade();
+        
+        LocalDate[] range = getDateRange();
+        if (range == null) {
+            System.out.println("No availability rows to migrate");
+            return true;
+        }
+        System.out.printf("Migrating availability from %s to %s%n", range[0], range[1]);
+        
+        long start = System.nanoTime();
+        int copied = forEachDay(range, COPY_SPOTS) + forEachDay(range, COPY_SUMMARY);
+        System.out.printf("Copy pass: %d rows in %.1fs%n", copied, (System.nanoTime() - start) / 1e9);
+        
+        for (int pass = 1; pass <= maxDeltaPasses; pass++) {
+            start = System.nanoTime();
+            // Days added while copying are picked up by the INSERT IGNORE passes
+            range = getDateRange();
+            int changed = forEachDay(range, COPY_SPOTS) + forEachDay(range, COPY_SUMMARY)
+                        + forEachDay(range, DELTA_SPOTS) + forEachDay(range, DELTA_SUMMARY);
+            System.out.printf("Delta pass %d: %d rows in %.1fs%n", pass, changed, (System.nanoTime() - start) / 1e9);
+            if (changed == 0) {
+                break;
+            }
+        }
+        
+        return verifyCounts();
+    }
+    
+    private LocalDate[] getDateRange() throws SQLException {
+        String query = "SELECT MIN(availability_date), MAX(availability_date) FROM spot_availability";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            if (rs.next() && rs.getDate(1) != null) {
+                return new LocalDate[] { rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate() };
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Run a per-day statement for every day in the range, one short statement per day
+     */
+    private int forEachDay(LocalDate[] range, String sql) throws SQLException, InterruptedException {
+        int rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (LocalDate date = range[0]; !date.isAfter(range[1]); date = date.plusDays(1)) {
+                stmt.setDate(1, java.sql.Date.valueOf(date));
+                rows += stmt.executeUpdate();
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    private boolean verifyCounts() throws SQLException {
+        boolean matches = true;
+        String[][] pairs = {
+            { "spot_availability", "spot_slot_availability" },
+            { "parking_availability", "parking_slot_availability" }
+        };
+        
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] pair : pairs) {
+                long oldCount = count(stmt, pair[0]);
+                long newCount = count(stmt, pair[1]);
+                System.out.printf("%-26s %8d rows -> %-26s %8d rows%n", pair[0], oldCount, pair[1], newCount);
+                matches &= oldCount == newCount;
+            }
+        }
+        return matches;
+    }
+    
+    private static long count(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== Slot-index schema migration ===");
+        
+        try {
+            SlotSchemaMigration migration = new SlotSchemaMigration(
+                MySQLConnectionAdapter.getConnection(), Long.getLong("migration.pauseMs", 50));
+            
+            if (migration.migrate(Integer.getInteger("migration.maxDeltaPasses", 5))) {
+                System.out.println("✓ Migration complete - restart the server with -Dparking.schema.mode=SLOT_INDEX");
+            } else {
+                System.out.println("✗ Row counts differ - run the migration again before switching");
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Migration failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            MySQLConnectionAdapter.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package parking.util;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow-query tracing for JDBC statements
+ *
+ * Keeps a rolling top-N of the slowest statements (with their bound parameters) seen in the
+ * last window, and logs statements over a threshold at a sampling rate so a burst of slow
+ * queries cannot flood the log.
+ *
+ * Configuration (system properties):
+ * parking.slowQuery.top=20, parking.slowQuery.thresholdMs=200,
+ * parking.slowQuery.sampleRate=1.0, parking.slowQuery.windowMinutes=15
+ * A top of 0 keeps no statements and only logs them.
+ */
+public class SlowQueryLog implements QueryListener {
+    
+    private final int capacity;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long windowNanos;
+    
+    // Min-heap on elapsed time: the head is the fastest of the retained slow queries
+    private final PriorityQueue<SlowQuery> slowest =
+        new PriorityQueue<>(Comparator.comparingLong((SlowQuery q) -> q.elapsedNanos));
+    private volatile long admissionFloorNanos;
+    private volatile long admissionFloorExpiresAt; // nanoTime the oldest retained entry leaves the window
+    
+    public SlowQueryLog(int capacity, long thresholdMillis, double sampleRate, long windowMinutes) {
+        this.capacity = capacity;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampleRate = sampleRate;
+        this.windowNanos = TimeUnit.MINUTES.toNanos(windowMinutes);
+    }
+    
+    /**
+     * Create a log configured from parking.slowQuery.* system properties
+     */
+    public static SlowQueryLog fromSystemProperties() {
+        return new SlowQueryLog(
+            Integer.getInteger("parking.slowQuery.top", 20),
+            Long.getLong("parking.slowQuery.thresholdMs", 200),
+            Double.parseDouble(System.getProperty("parking.slowQuery.sampleRate", "1.0")),
+            Long.getLong("parking.slowQuery.windowMinutes", 15)
+        );
+    }
+    
+    @Override
+    public void queryExecuted(String sql, Object[] parameters, long elapsedNanos, boolean failed) {
+        if (elapsedNanos >= thresholdNanos && isSampled()) {
+            System.err.printf("SLOW QUERY %.1fms%s params=%s | %s%n",
+                              elapsedNanos / 1_000_000.0, failed ? " (failed)" : "",
+                              Arrays.toString(parameters), normalize(sql));
+        }
+        
+        if (capacity < 1) {
+            return;
+        }
+        
+        // Fast path: most statements are faster than everything already retained - until the
+        // oldest of those expires and frees a place
+        if (elapsedNanos <= admissionFloorNanos && System.nanoTime() - admissionFloorExpiresAt < 0) {
+            return;
+        }
+        
+        synchronized (slowest) {
+            long now = System.nanoTime();
+            expireOldEntries(now);
+            
+            if (slowest.size() >= capacity) {
+                if (elapsedNanos <= slowest.peek().elapsedNanos) {
+                    return;
+                }
+                slowest.poll();
+            }
+            
+            slowest.add(new SlowQuery(normalize(sql), Arrays.toString(parameters), elapsedNanos, failed, now));
+            updateAdmissionFloor();
+        }
+    }
+    
+    /**
+     * Get the retained slow statements, slowest first
+     */
+    public String[] getSlowQueries() {
+        List<SlowQuery> entries;
+        synchronized (slowest) {
+            expireOldEntries(System.nanoTime());
+            updateAdmissionFloor();
+            entries = new ArrayList<>(slowest);
+        }
+        
+        entries.sort(Comparator.comparingLong((SlowQuery q) -> q.elapsedNanos).reversed());
+        
+        String[] lines = new String[entries.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = entries.get(i).toString();
+        }
+        return lines;
+    }
+    
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+    
+    private boolean isSampled() {
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+    
+    private void expireOldEntries(long now) {
+        slowest.removeIf(q -> now - q.capturedAtNanos > windowNanos);
+    }
+    
+    private void updateAdmissionFloor() {
+        if (slowest.isEmpty() || slowest.size() < capacity) {
+            admissionFloorNanos = 0;
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (SlowQuery query : slowest) {
+            oldest = Math.min(oldest, query.capturedAtNanos);
+        }
+        admissionFloorExpiresAt = oldest + windowNanos;
+        admissionFloorNanos = slowest.peek().elapsedNanos;
+    }
+    
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+    
+    /**
+     * One captured slow statement
+     */
+    private static class SlowQuery {
+        final String sql;
+        final String parameters;
+        final long elapsedNanos;
+        final boolean failed;
+        final long capturedAtNanos;
+        final LocalTime capturedAt = LocalTime.now().withNano(0);
+        
+        SlowQuery(String sql, String parameters, long elapsedNanos, boolean failed, long capturedAtNanos) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+            this.failed = failed;
+            this.capturedAtNanos = capturedAtNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%.1fms at %s%s params=%s | %s", elapsedNanos / 1_000_000.0,
+                               capturedAt, failed ? " (failed)" : "", parameters, sql);
+        }
+    }
+}
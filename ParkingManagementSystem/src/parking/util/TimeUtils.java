@@ -2,20 +2,164 @@ package parking.util;
 
 import java.time.LocalTime;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Utility class for time-related operations in the parking system
  * Adapted for OCSF client-server architecture
+ *
+ * Slots form one absolute timeline: epoch slot = epoch day * 96 + slot of the day. A range that
+ * starts on a date is given as slots counted from that date's midnight, so its end may pass 96
+ * when the stay runs past midnight (slot 100 is 01:00 the next day).
+ *
+ * The longest stay is set with -Dparking.maxStayHours (default 4, at most 7 days), the longest
+ * Park Now with -Dparking.parkNow.maxHours (default 4, at most the longest stay).
  */
 public class TimeUtils {
     
     public static final int SLOT_INTERVAL_MINUTES = 15;
     public static final double HOURS_PER_SLOT = 0.25;
-    public static final int MAX_BOOKING_HOURS = 4;
-    public static final int MAX_SLOTS_PER_BOOKING = 16; // 4 hours / 0.25 hours per slot
+    public static final int SLOTS_PER_DAY = 96; // 24 hours * 4 slots per hour
+    public static final int MAX_STAY_HOURS_LIMIT = 7 * 24;
+    public static final int MAX_BOOKING_HOURS =
+        Math.max(1, Math.min(MAX_STAY_HOURS_LIMIT, Integer.getInteger("parking.maxStayHours", 4)));
+    public static final int MAX_SLOTS_PER_BOOKING = MAX_BOOKING_HOURS * 4; // 0.25 hours per slot
+    public static final int PARK_NOW_MAX_HOURS =
+        Math.max(1, Math.min(MAX_BOOKING_HOURS, Integer.getInteger("parking.parkNow.maxHours", 4)));
+    public static final int PARK_NOW_MAX_SLOTS = PARK_NOW_MAX_HOURS * 4;
+    public static final int MAX_BOOKING_DAYS = (SLOTS_PER_DAY - 1 + MAX_SLOTS_PER_BOOKING - 1) / SLOTS_PER_DAY + 1; // Dates one booking can touch
+    
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    
+    // Slot tables - built once, the slot methods below only index into them
+    private static final LocalTime[] SLOT_TIMES = new LocalTime[SLOTS_PER_DAY];
+    private static final String[] SLOT_LABELS = new String[SLOTS_PER_DAY];
+    private static final List<LocalTime> DAY_SLOTS;
+    private static final String[] DURATION_LABELS = new String[SLOTS_PER_DAY + 1];
+    private static final String AVAILABLE_SLOTS_DISPLAY;
+    static {
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            SLOT_TIMES[slot] = LocalTime.of(slot / 4, (slot % 4) * SLOT_INTERVAL_MINUTES);
+            SLOT_LABELS[slot] = SLOT_TIMES[slot].format(TIME_FORMAT);
+        }
+        DAY_SLOTS = List.of(SLOT_TIMES);
+        for (int slots = 0; slots <= SLOTS_PER_DAY; slots++) {
+            DURATION_LABELS[slots] = buildDurationLabel(slots * HOURS_PER_SLOT);
+        }
+        AVAILABLE_SLOTS_DISPLAY = buildAvailableTimeSlotsDisplay();
+    }
+    
+    /**
+     * Get slot index (0-95) of a time, rounded down to its 15-minute slot
+     */
+    public static int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_INTERVAL_MINUTES;
+    }
+    
+    /**
+     * Get the exclusive end slot of a range, counted from the start date's midnight - an end at or
+     * before the start is on the next day, no end at all means midnight
+     */
+    public static int endSlotOf(LocalTime startTime, LocalTime endTime) {
+        if (endTime == null) {
+            return SLOTS_PER_DAY;
+        }
+        int slot = slotOf(endTime);
+        if (endTime.getMinute() % SLOT_INTERVAL_MINUTES != 0) {
+            slot++;
+        }
+        return endTime.isAfter(startTime) ? slot : SLOTS_PER_DAY + slot;
+    }
+    
+    /**
+     * Get the exclusive end slot of a range that ends on endDate, counted from date's midnight -
+     * without an end date, as endSlotOf(startTime, endTime)
+     */
+    public static int endSlotOf(LocalDate date, LocalTime startTime, LocalDate endDate, LocalTime endTime) {
+        if (endDate == null || endTime == null) {
+            return endSlotOf(startTime, endTime);
+        }
+        int slot = slotOf(endTime);
+        if (endTime.getMinute() % SLOT_INTERVAL_MINUTES != 0) {
+            slot++;
+        }
+        return (int) (endDate.toEpochDay() - date.toEpochDay()) * SLOTS_PER_DAY + slot;
+    }
+    
+    /**
+     * Get the start time of a slot counted from a midnight - slot 96 is the midnight that ends the day,
+     * later slots are times on the following days
+     */
+    public static LocalTime slotToTime(int slot) {
+        return SLOT_TIMES[Math.floorMod(slot, SLOTS_PER_DAY)];
+    }
+    
+    /**
+     * Get the date a slot counted from date's midnight falls on
+     */
+    public static LocalDate dateOfSlot(LocalDate date, int slot) {
+        return slot >= 0 && slot < SLOTS_PER_DAY ? date : date.plusDays(Math.floorDiv(slot, SLOTS_PER_DAY));
+    }
+    
+    /**
+     * Get the absolute slot of a slot counted from date's midnight
+     */
+    public static int epochSlot(LocalDate date, int slot) {
+        return (int) date.toEpochDay() * SLOTS_PER_DAY + slot;
+    }
+    
+    public static int epochSlot(LocalDate date, LocalTime time) {
+        return epochSlot(date, slotOf(time));
+    }
+    
+    /**
+     * Get the date and time an absolute slot starts at
+     */
+    public static LocalDateTime epochSlotToDateTime(int epochSlot) {
+        return LocalDateTime.of(LocalDate.ofEpochDay(Math.floorDiv(epochSlot, SLOTS_PER_DAY)), slotToTime(epochSlot));
+    }
+    
+    /**
+     * Number of slots in the range [fromSlot, toSlot), 0 if the range is empty
+     */
+    public static int slotsBetween(int fromSlot, int toSlot) {
+        return Math.max(0, toSlot - fromSlot);
+    }
+    
+    /**
+     * Number of slots a booking from startTime asks for - MAX_SLOTS_PER_BOOKING if it has no end time.
+     * An end time at or before the start is on the next day.
+     */
+    public static int requestedSlots(LocalTime startTime, LocalTime endTime) {
+        return requestedSlots(null, startTime, null, endTime);
+    }
+    
+    /**
+     * Number of slots a booking from date and startTime until endDate and endTime asks for, at most
+     * MAX_SLOTS_PER_BOOKING - MAX_SLOTS_PER_BOOKING if it has no end time or ends before it starts
+     */
+    public static int requestedSlots(LocalDate date, LocalTime startTime, LocalDate endDate, LocalTime endTime) {
+        if (endTime == null) {
+            return MAX_SLOTS_PER_BOOKING;
+        }
+        int slots = slotsBetween(slotOf(startTime), date != null ? endSlotOf(date, startTime, endDate, endTime)
+                                                                 : endSlotOf(startTime, endTime));
+        return slots > 0 ? Math.min(MAX_SLOTS_PER_BOOKING, slots) : MAX_SLOTS_PER_BOOKING;
+    }
+    
+    /**
+     * Get the HH:mm label of a slot counted from a midnight - slot 96 is labelled 00:00
+     */
+    public static String formatSlot(int slot) {
+        return SLOT_LABELS[Math.floorMod(slot, SLOTS_PER_DAY)];
+    }
+    
+    private static boolean isSlotBoundary(LocalTime time) {
+        return time.getMinute() % SLOT_INTERVAL_MINUTES == 0 && time.getSecond() == 0 && time.getNano() == 0;
+    }
     
     /**
      * Round time down to nearest 15-minute slot
@@ -23,10 +167,7 @@ public class TimeUtils {
      */
     public static LocalTime roundToNearestSlot(LocalTime time) {
         if (time == null) return null;
-        
-        int minutes = time.getMinute();
-        int roundedMinutes = (minutes / SLOT_INTERVAL_MINUTES) * SLOT_INTERVAL_MINUTES;
-        return LocalTime.of(time.getHour(), roundedMinutes);
+        return SLOT_TIMES[slotOf(time)];
     }
     
     /**
@@ -36,16 +177,10 @@ public class TimeUtils {
     public static LocalTime roundUpToNextSlot(LocalTime time) {
         if (time == null) return null;
         
-        int minutes = time.getMinute();
-        if (minutes % SLOT_INTERVAL_MINUTES == 0) {
+        if (time.getMinute() % SLOT_INTERVAL_MINUTES == 0) {
             return time; // Already on slot boundary
         }
-        
-        int roundedMinutes = ((minutes / SLOT_INTERVAL_MINUTES) + 1) * SLOT_INTERVAL_MINUTES;
-        if (roundedMinutes >= 60) {
-            return LocalTime.of((time.getHour() + 1) % 24, 0);
-        }
-        return LocalTime.of(time.getHour(), roundedMinutes);
+        return slotToTime(slotOf(time) + 1);
     }
     
     /**
@@ -60,6 +195,9 @@ public class TimeUtils {
      */
     public static LocalTime getNextSlot(LocalTime time) {
         if (time == null) return null;
+        if (isSlotBoundary(time)) {
+            return SLOT_TIMES[(slotOf(time) + 1) % SLOTS_PER_DAY];
+        }
         return time.plusMinutes(SLOT_INTERVAL_MINUTES);
     }
     
@@ -68,6 +206,9 @@ public class TimeUtils {
      */
     public static LocalTime getPreviousSlot(LocalTime time) {
         if (time == null) return null;
+        if (isSlotBoundary(time)) {
+            return SLOT_TIMES[(slotOf(time) + SLOTS_PER_DAY - 1) % SLOTS_PER_DAY];
+        }
         return time.minusMinutes(SLOT_INTERVAL_MINUTES);
     }
     
@@ -78,6 +219,9 @@ public class TimeUtils {
         if (startTime == null || endTime == null) return 0;
         if (endTime.isBefore(startTime)) return 0;
         
+        if (isSlotBoundary(startTime) && isSlotBoundary(endTime)) {
+            return slotsBetween(slotOf(startTime), slotOf(endTime));
+        }
         long minutes = java.time.Duration.between(startTime, endTime).toMinutes();
         return (int) (minutes / SLOT_INTERVAL_MINUTES);
     }
@@ -94,55 +238,35 @@ public class TimeUtils {
     }
     
     /**
-     * Generate list of all 15-minute time slots for a day
+     * Get all 15-minute time slots of a day (unmodifiable, shared)
      */
     public static List<LocalTime> generateDayTimeSlots() {
-        List<LocalTime> slots = new ArrayList<>();
-        LocalTime current = LocalTime.of(0, 0);
-        
-        for (int i = 0; i < 96; i++) { // 24 hours * 4 slots per hour = 96 slots
-            slots.add(current);
-            current = current.plusMinutes(SLOT_INTERVAL_MINUTES);
-        }
-        
-        return slots;
+        return DAY_SLOTS;
     }
     
     /**
-     * Generate time slots between start and end time
+     * Get the time slots from start to end time, both included (unmodifiable view)
+     * At most MAX_SLOTS_PER_BOOKING + 1 slots are returned
      */
     public static List<LocalTime> generateTimeSlotsBetween(LocalTime startTime, LocalTime endTime) {
-        List<LocalTime> slots = new ArrayList<>();
-        
         if (startTime == null || endTime == null || endTime.isBefore(startTime)) {
-            return slots;
+            return List.of();
         }
         
-        LocalTime current = roundToNearestSlot(startTime);
-        LocalTime end = roundToNearestSlot(endTime);
-        
-        while (!current.isAfter(end)) {
-            slots.add(current);
-            current = getNextSlot(current);
-            
-            // Safety check to prevent infinite loop
-            if (slots.size() > MAX_SLOTS_PER_BOOKING) {
-                break;
-            }
-        }
-        
-        return slots;
+        int fromSlot = slotOf(startTime);
+        int toSlot = Math.min(slotOf(endTime), fromSlot + MAX_SLOTS_PER_BOOKING);
+        return DAY_SLOTS.subList(fromSlot, toSlot + 1);
     }
     
     /**
-     * Check if a duration is within allowed limits (max 4 hours)
+     * Check if a duration is within allowed limits (max MAX_BOOKING_HOURS)
      */
     public static boolean isValidDuration(double hours) {
         return hours > 0 && hours <= MAX_BOOKING_HOURS;
     }
     
     /**
-     * Check if a duration is within allowed limits (max 4 hours)
+     * Check if a duration within one day is within allowed limits (max MAX_BOOKING_HOURS)
      */
     public static boolean isValidDuration(LocalTime startTime, LocalTime endTime) {
         double hours = calculateDurationHours(startTime, endTime);
@@ -153,6 +277,14 @@ public class TimeUtils {
      * Format duration as human readable string
      */
     public static String formatDuration(double hours) {
+        double slots = hours / HOURS_PER_SLOT;
+        if (slots >= 0 && slots <= SLOTS_PER_DAY && slots == (int) slots) {
+            return DURATION_LABELS[(int) slots];
+        }
+        return buildDurationLabel(hours);
+    }
+    
+    private static String buildDurationLabel(double hours) {
         if (hours >= 1) {
             return String.format("%.1f hours", hours);
         } else {
@@ -166,7 +298,7 @@ public class TimeUtils {
      */
     public static String formatTimeSlot(LocalTime time) {
         if (time == null) return "??:??";
-        return time.format(DateTimeFormatter.ofPattern("HH:mm"));
+        return time.getMinute() % SLOT_INTERVAL_MINUTES == 0 ? SLOT_LABELS[slotOf(time)] : time.format(TIME_FORMAT);
     }
     
     /**
@@ -174,7 +306,7 @@ public class TimeUtils {
      */
     public static String formatDate(LocalDate date) {
         if (date == null) return "No date";
-        return date.format(DateTimeFormatter.ofPattern("MMM dd, yyyy"));
+        return date.format(DATE_FORMAT);
     }
     
     /**
@@ -255,15 +387,19 @@ public class TimeUtils {
      * Get a formatted string showing available time slots for the day
      */
     public static String getAvailableTimeSlotsDisplay() {
+        return AVAILABLE_SLOTS_DISPLAY;
+    }
+    
+    private static String buildAvailableTimeSlotsDisplay() {
         StringBuilder sb = new StringBuilder();
         sb.append("Available time slots (15-minute intervals):\n");
         
-        LocalTime current = LocalTime.of(6, 0); // Start from 6:00 AM
-        LocalTime end = LocalTime.of(22, 0);    // End at 10:00 PM
+        int firstSlot = 6 * 4;  // Start from 6:00 AM
+        int lastSlot = 22 * 4;  // End at 10:00 PM
         
         int count = 0;
-        while (!current.isAfter(end)) {
-            sb.append(formatTimeSlot(current));
+        for (int slot = firstSlot; slot <= lastSlot; slot++) {
+            sb.append(SLOT_LABELS[slot]);
             
             count++;
             if (count % 8 == 0) {
@@ -271,8 +407,6 @@ public class TimeUtils {
             } else {
                 sb.append("  ");
             }
-            
-            current = getNextSlot(current);
         }
         
         return sb.toString();
@@ -0,0 +1,108 @@
+package parking.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-place upgrade of the tables to the absolute slot timeline
+ *
+ * Each availability table gets a stored generated column with the row's absolute slot -
+ * epoch_slot (epoch_day * 96 + slot) in the SLOT_INDEX layout, slot_start (date and time of the
+ * slot) in the DATE_TIME layout - and an index leading with it, so a booking window is a single
+ * index range whether or not it crosses midnight (see SlotSchema's {timeline}).
+ *
+ * parking_orders gets date_of_retrieval for stays that end on a later date. Orders without it end
+ * on their date of parking, or on the next day if the retrieval time is not after the deposit time.
+ *
+ * Tables that already have the column, or do not exist, are skipped, so the upgrade runs on every start-up.
+ */
+public class TimelineSchemaUpgrade {
+    
+    // Table, added column, ALTER TABLE clauses
+    private static final String[][] CHANGES = {
+        { "parking_orders", "date_of_retrieval",
+          "ADD COLUMN date_of_retrieval DATE NULL AFTER time_of_car_deposit" },
+        { "spot_availability", "slot_start",
+          "ADD COLUMN slot_start DATETIME AS (TIMESTAMP(availability_date, time_slot)) STORED, "
+          + "ADD INDEX idx_timeline (lot_id, slot_start, is_occupied, parking_spot_number)" },
+        { "parking_availability", "slot_start",
+          "ADD COLUMN slot_start DATETIME AS (TIMESTAMP(availability_date, time_slot)) STORED, "
+          + "ADD INDEX idx_timeline (lot_id, slot_start)" },
+        { "spot_slot_availability", "epoch_slot",
+          "ADD COLUMN epoch_slot INT AS (epoch_day * " + TimeUtils.SLOTS_PER_DAY + " + slot) STORED, "
+          + "ADD INDEX idx_timeline (lot_id, epoch_slot, is_occupied, parking_spot_number)" },
+        { "parking_slot_availability", "epoch_slot",
+          "ADD COLUMN epoch_slot INT AS (epoch_day * " + TimeUtils.SLOTS_PER_DAY + " + slot) STORED, "
+          + "ADD INDEX idx_timeline (lot_id, epoch_slot)" }
+    };
+    
+    private final Connection connection;
+    
+    public TimelineSchemaUpgrade(Connection connection) {
+        this.connection = connection;
+    }
+    
+    /**
+     * Add the timeline columns to every existing table that has none yet
+     *
+     * @return the number of tables upgraded
+     */
+    public int upgrade() throws SQLException {
+        int upgraded = 0;
+        
+        for (String[] change : CHANGES) {
+            String table = change[0];
+            if (!tableExists(table) || hasColumn(table, change[1])) {
+                continue;
+            }
+            
+            long start = System.nanoTime();
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " " + change[2]);
+            }
+            upgraded++;
+            System.out.printf("Added %s to %s in %.1fs%n", change[1], table, (System.nanoTime() - start) / 1e9);
+        }
+        return upgraded;
+    }
+    
+    private boolean tableExists(String table) throws SQLException {
+        return exists("SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                      table, null);
+    }
+    
+    private boolean hasColumn(String table, String column) throws SQLException {
+        return exists("""
+            SELECT 1 FROM information_schema.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+            """, table, column);
+    }
+    
+    private boolean exists(String query, String table, String column) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, table);
+            if (column != null) {
+                stmt.setString(2, column);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("=== Slot timeline schema upgrade ===");
+        
+        try (Connection connection = MySQLConnectionAdapter.openConnection()) {
+            int upgraded = new TimelineSchemaUpgrade(connection).upgrade();
+            System.out.println("✓ " + upgraded + " table(s) upgraded");
+            
+        } catch (Exception e) {
+            System.err.println("Upgrade failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * Decides whether a request is served or turned away with "busy, retry after"
+ *
+ * Three checks, cheapest first:
+ * - shedding: too many requests in flight (queued bookings count until they are answered)
+ * - a token bucket per connection, so one kiosk or script cannot take the whole server
+ * - a global token bucket, which bounds the total request rate
+ * A request that fails a check is answered at once with how long to wait, so the requests that
+ * are admitted keep their latency during overload.
+ *
+ * Configured with -Dparking.admission.* (clientRate, clientBurst, globalRate, globalBurst,
+ * maxInFlight, shedRetryMillis); a rate of 0 turns that bucket off.
+ */
+public class AdmissionControl {
+    
+    private static final String BUCKET_INFO = "parking.admission.bucket";
+    
+    /**
+     * Token bucket refilled continuously at ratePerSecond, holding at most burst tokens
+     */
+    static class TokenBucket {
+        private final double ratePerSecond;
+        private final double burst;
+        private double tokens;
+        private long refilledAt;
+        
+        TokenBucket(double ratePerSecond, double burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+        }
+        
+        /**
+         * Take a token
+         *
+         * @return 0 if taken, otherwise the milliseconds until one is available
+         */
+        synchronized long tryAcquire(long nowNanos) {
+            tokens = Math.min(burst, tokens + (nowNanos - refilledAt) / 1e9 * ratePerSecond);
+            refilledAt = nowNanos;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerSecond * 1000));
+        }
+    }
+    
+    private final double clientRate;
+    private final double clientBurst;
+    private final TokenBucket global;
+    private final int maxInFlight;
+    private final long shedRetryMillis;
+    private final IntSupplier inFlight;
+    
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong clientLimited = new AtomicLong();
+    private final AtomicLong globalLimited = new AtomicLong();
+    
+    public AdmissionControl(double clientRate, double clientBurst, double globalRate, double globalBurst,
+                            int maxInFlight, long shedRetryMillis, IntSupplier inFlight) {
+        this.clientRate = clientRate;
+        this.clientBurst = Math.max(1, clientBurst);
+        this.global = globalRate > 0 ? new TokenBucket(globalRate, Math.max(1, globalBurst)) : null;
+        this.maxInFlight = maxInFlight;
+        this.shedRetryMillis = shedRetryMillis;
+        this.inFlight = inFlight;
+    }
+    
+    /**
+     * Create admission control configured by -Dparking.admission.* system properties
+     */
+    public static AdmissionControl fromSystemProperties(IntSupplier inFlight) {
+        return new AdmissionControl(
+            Double.parseDouble(System.getProperty("parking.admission.clientRate", "20")),
+            Double.parseDouble(System.getProperty("parking.admission.clientBurst", "40")),
+            Double.parseDouble(System.getProperty("parking.admission.globalRate", "2000")),
+            Double.parseDouble(System.getProperty("parking.admission.globalBurst", "4000")),
+            Integer.getInteger("parking.admission.maxInFlight", 512),
+            Long.getLong("parking.admission.shedRetryMillis", 200),
+            inFlight
+        );
+    }
+    
+    /**
+     * Admit a request from a client - the request itself must already count as in flight
+     *
+     * @return 0 if admitted, otherwise the milliseconds the client should wait before retrying
+     */
+    public long admit(ConnectionToClient client) {
+        if (maxInFlight > 0 && inFlight.getAsInt() > maxInFlight) {
+            shed.incrementAndGet();
+            return shedRetryMillis;
+        }
+        
+        long now = System.nanoTime();
+        TokenBucket bucket = bucketOf(client);
+        long wait = bucket != null ? bucket.tryAcquire(now) : 0;
+        if (wait > 0) {
+            clientLimited.incrementAndGet();
+            return wait;
+        }
+        
+        wait = global != null ? global.tryAcquire(now) : 0;
+        if (wait > 0) {
+            globalLimited.incrementAndGet();
+            return wait;
+        }
+        admitted.incrementAndGet();
+        return 0;
+    }
+    
+    /**
+     * Suggested wait for a client turned away for another reason, e.g. a full booking ring
+     */
+    public long getShedRetryMillis() {
+        return shedRetryMillis;
+    }
+    
+    private TokenBucket bucketOf(ConnectionToClient client) {
+        if (client == null || clientRate <= 0) {
+            return null;
+        }
+        synchronized (client) { // Same lock as the other per-connection info
+            TokenBucket bucket = (TokenBucket) client.getInfo(BUCKET_INFO);
+            if (bucket == null) {
+                bucket = new TokenBucket(clientRate, clientBurst);
+                client.setInfo(BUCKET_INFO, bucket);
+            }
+            return bucket;
+        }
+    }
+    
+    public String getFormattedStatus() {
+        return String.format("Admission: %d admitted, %d shed (in flight > %d), %d over client rate %.0f/s, %d over global rate",
+                             admitted.get(), shed.get(), maxInFlight, clientLimited.get(), clientRate, globalLimited.get());
+    }
+}
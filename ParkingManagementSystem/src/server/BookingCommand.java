@@ -0,0 +1,86 @@
+package server;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import ocsf.server.ConnectionToClient;
+import common.ParkingRequest;
+import parking.util.TimeUtils;
+
+/**
+ * A pre-allocated entry of a lot's booking ring
+ *
+ * Producers fill in the request (or a task to run on the lot's consumer), the consumer writes
+ * the booking it made back into the same entry while the booking waits for its batch to be
+ * persisted. Entries are reused, so every field is overwritten or cleared for each booking.
+ */
+public class BookingCommand {
+    
+    // Set by the producer
+    private ParkingRequest request;
+    private ConnectionToClient client;
+    private long startNanos;
+    private Runnable task;
+    
+    // Set by the consumer
+    private int spotNumber;
+    private LocalDate date;
+    private int fromSlot;
+    private int toSlot;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    
+    void setRequest(ParkingRequest request, ConnectionToClient client, long startNanos) {
+        this.request = request;
+        this.client = client;
+        this.startNanos = startNanos;
+        this.task = null;
+    }
+    
+    void setTask(Runnable task) {
+        this.request = null;
+        this.client = null;
+        this.task = task;
+    }
+    
+    void setBooking(int spotNumber, LocalDate date, int fromSlot, int toSlot, LocalTime startTime, LocalTime endTime) {
+        this.spotNumber = spotNumber;
+        this.date = date;
+        this.fromSlot = fromSlot;
+        this.toSlot = toSlot;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+    
+    /**
+     * Drop references once the entry is done, so the ring does not keep requests and clients alive
+     */
+    void clear() {
+        request = null;
+        client = null;
+        task = null;
+        date = null;
+    }
+    
+    // Getters
+    public ParkingRequest getRequest() { return request; }
+    public ConnectionToClient getClient() { return client; }
+    public long getStartNanos() { return startNanos; }
+    public Runnable getTask() { return task; }
+    public int getSpotNumber() { return spotNumber; }
+    public LocalDate getDate() { return date; }
+    public int getFromSlot() { return fromSlot; }
+    public int getToSlot() { return toSlot; }
+    public LocalTime getStartTime() { return startTime; }
+    public LocalTime getEndTime() { return endTime; }
+    
+    /**
+     * Date the booking ends on - later than date when it runs past midnight
+     */
+    public LocalDate getEndDate() {
+        return TimeUtils.dateOfSlot(date, toSlot);
+    }
+    
+    public double getDurationHours() {
+        return (toSlot - fromSlot) * TimeUtils.HOURS_PER_SLOT;
+    }
+}
@@ -0,0 +1,196 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import ocsf.server.ConnectionToClient;
+import common.ParkingRequest;
+import common.ParkingResponse;
+
+/**
+ * Recent booking requests by idempotency key, so a client retrying a booking it got no answer
+ * for does not book twice
+ *
+ * The first request with a key claims it and is executed. Duplicates that arrive while it is
+ * still queued wait for its response instead of being executed; duplicates that arrive later get
+ * the stored response. Only bookings that were written are kept - a failed booking can be
+ * retried for real. Keys are scoped by customer, least recently used keys are evicted beyond
+ * maxEntries, and answered keys expire after ttlMillis.
+ */
+public class IdempotencyCache {
+    
+    /**
+     * Returned by begin() when the request was queued behind the one that claimed its key
+     */
+    public static final ParkingResponse IN_FLIGHT = new ParkingResponse(false, "In flight", null);
+    
+    /**
+     * A duplicate waiting for the response of the request that claimed its key
+     */
+    public static class Waiter {
+        private final ParkingRequest request;
+        private final ConnectionToClient client;
+        private final long startNanos;
+        
+        Waiter(ParkingRequest request, ConnectionToClient client, long startNanos) {
+            this.request = request;
+            this.client = client;
+            this.startNanos = startNanos;
+        }
+        
+        public ParkingRequest getRequest() { return request; }
+        public ConnectionToClient getClient() { return client; }
+        public long getStartNanos() { return startNanos; }
+    }
+    
+    private static class Entry {
+        ParkingResponse response; // Null while in flight
+        long answeredAt;
+        List<Waiter> waiters;
+    }
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private long duplicates;
+    
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                // In-flight keys are bounded by the booking rings and must stay until answered
+                return size() > IdempotencyCache.this.maxEntries && eldest.getValue().response != null;
+            }
+        };
+    }
+    
+    /**
+     * Create a cache sized by -Dparking.idempotency.maxEntries and -Dparking.idempotency.ttlSeconds
+     */
+    public static IdempotencyCache fromSystemProperties() {
+        return new IdempotencyCache(Integer.getInteger("parking.idempotency.maxEntries", 10000),
+                                    Long.getLong("parking.idempotency.ttlSeconds", 600) * 1000);
+    }
+    
+    /**
+     * Claim the request's key, or register it as a duplicate
+     *
+     * @return null if the request has no key or claimed it and must be executed; IN_FLIGHT if it
+     *         was queued behind the request that claimed the key; otherwise the stored response
+     */
+    public synchronized ParkingResponse begin(ParkingRequest request, ConnectionToClient client, long startNanos) {
+        String key = keyOf(request);
+        if (key == null) {
+            return null;
+        }
+        
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response != null && isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            entries.put(key, new Entry());
+            return null;
+        }
+        
+        duplicates++;
+        if (entry.response != null) {
+            return entry.response;
+        }
+        if (entry.waiters == null) {
+            entry.waiters = new ArrayList<>(2);
+        }
+        entry.waiters.add(new Waiter(request, client, startNanos));
+        return IN_FLIGHT;
+    }
+    
+    /**
+     * Record the response of a request that claimed its key
+     *
+     * @param keep true to answer later duplicates with the response, false to forget the key
+     * @return the duplicates that waited for it, to be answered with the same response
+     */
+    public synchronized List<Waiter> complete(ParkingRequest request, ParkingResponse response, boolean keep) {
+        String key = keyOf(request);
+        if (key == null) {
+            return List.of();
+        }
+        
+        Entry entry = keep ? entries.get(key) : entries.remove(key);
+        if (entry == null || entry.response != null) {
+            return List.of();
+        }
+        
+        List<Waiter> waiters = entry.waiters != null ? entry.waiters : List.of();
+        entry.waiters = null;
+        if (keep) {
+            entry.response = response;
+            entry.answeredAt = System.currentTimeMillis();
+        }
+        return waiters;
+    }
+    
+    /**
+     * Pass the claim of an unanswered request whose client stopped waiting to the oldest duplicate
+     * waiting for it, which is then executed in its place. Call again if that duplicate turns out
+     * to have expired as well.
+     *
+     * @return the duplicate now holding the claim, or null if none was waiting (the key is forgotten)
+     */
+    public synchronized Waiter handOff(ParkingRequest request) {
+        String key = keyOf(request);
+        if (key == null) {
+            return null;
+        }
+        
+        Entry entry = entries.get(key);
+        if (entry == null || entry.response != null) {
+            return null;
+        }
+        if (entry.waiters == null || entry.waiters.isEmpty()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.waiters.remove(0);
+    }
+    
+    /**
+     * Drop expired responses
+     */
+    public synchronized void prune() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.response != null && isExpired(entry, now)) {
+                it.remove();
+            }
+        }
+    }
+    
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getDuplicateCount() { return duplicates; }
+    
+    public synchronized String getFormattedStatus() {
+        return String.format("Idempotency keys: %d kept, %d duplicate bookings answered without executing",
+                             entries.size(), duplicates);
+    }
+    
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.answeredAt > ttlMillis;
+    }
+    
+    private static String keyOf(ParkingRequest request) {
+        String key = request.getIdempotencyKey();
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        String customerId = request.getCustomerId();
+        return (customerId != null ? customerId.trim() : "") + '/' + key;
+    }
+}
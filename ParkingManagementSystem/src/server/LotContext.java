@@ -0,0 +1,597 @@
+package server;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import ocsf.server.ConnectionToClient;
+import common.*;
+import parking.service.*;
+import parking.model.*;
+import parking.util.*;
+
+/**
+ * Everything that belongs to one parking lot: its in-memory occupancy, booking journal and
+ * snapshots, its own write connection, and the booking ring that all of its mutations go through.
+ *
+ * Network threads publish bookings (park, prebook, cancel) into the lot's pre-allocated ring
+ * and return at once - when the ring is full the booking is refused, never waited for. The ring's
+ * single consumer, the lot's writer thread, applies them in arrival order to the in-memory
+ * occupancy, which picks the spot, so bookings never race each other for a spot and no query
+ * runs to find one. The bookings the consumer has taken off the ring so far are written to the
+ * database as one JDBC batch in one transaction, then journaled and answered. Different lots
+ * book in parallel on their own rings and connections.
+ *
+ * Read-only requests do not go through the ring: after each batch the writer publishes an
+ * immutable AvailabilityView of the occupancy, and readers answer from the latest one.
+ *
+ * Maintenance that changes the occupancy, such as re-packing prebookings, runs as a ring task
+ * so it is ordered with the bookings.
+ */
+public class LotContext {
+    
+    /**
+     * Receives the outcome of each booking, on the lot's writer thread
+     */
+    @FunctionalInterface
+    public interface BookingListener {
+        void bookingCompleted(BookingCommand command, ParkingResponse response, boolean written);
+    }
+    
+    /**
+     * Receives each prebooking moved to another spot, on the lot's writer thread
+     */
+    @FunctionalInterface
+    public interface ReassignmentListener {
+        void spotReassigned(SpotReassignmentNotice notice);
+    }
+    
+    private final int lotId;
+    private final int capacity;
+    private final OccupancyState occupancy;
+    private final RingBuffer<BookingCommand> ring;
+    private final BookingListener listener;
+    private final ReassignmentListener reassignmentListener;
+    private final AllocationStrategy allocation = AllocationStrategy.current();
+    
+    // Used only by the writer thread
+    private final BookingCommand[] batch; // Ring entries are not reused before the batch is flushed
+    private final boolean[] batchWritten;
+    private int batchSize;
+    private final SpotCandidates candidates;
+    private final BookingEvent journalEvent = new BookingEvent();
+    private volatile long bookingsWritten;
+    private volatile long batchesWritten;
+    private volatile long prebookingsMoved;
+    
+    // Written during startup, before the server is serving
+    private Connection writeConnection;
+    private BookingPersister persister;
+    private ParkNowService primaryReadService;
+    private ParkNowService replicaReadService;
+    private final ParkingAvailabilityService availabilityService;
+    private BookingJournal journal;
+    private volatile OccupancySnapshot lastSnapshot;
+    private volatile AvailabilityView view; // Null until the occupancy is loaded
+    
+    public LotContext(int lotId, int capacity, BookingListener listener, ReassignmentListener reassignmentListener) {
+        this.lotId = lotId;
+        this.capacity = capacity;
+        this.occupancy = new OccupancyState(lotId, capacity);
+        this.listener = listener;
+        this.reassignmentListener = reassignmentListener;
+        this.batch = new BookingCommand[Integer.getInteger("parking.ring.maxBatch", 64)];
+        this.batchWritten = new boolean[batch.length];
+        this.candidates = new SpotCandidates(capacity);
+        this.availabilityService = new ParkingAvailabilityService(null, lotId);
+        this.ring = new RingBuffer<>(Integer.getInteger("parking.ring.size", 1024), BookingCommand::new);
+        ring.start("lot-" + lotId + "-writer", this::onEvent);
+    }
+    
+    // Getters
+    public int getLotId() { return lotId; }
+    public int getCapacity() { return capacity; }
+    public OccupancyState getOccupancy() { return occupancy; }
+    public AllocationStrategy getAllocationStrategy() { return allocation; }
+    public boolean hasDatabase() { return writeConnection != null; }
+    public boolean isAcceptingBookings() { return ring.isRunning(); }
+    
+    /**
+     * Latest published availability, or null if the occupancy could not be loaded
+     */
+    public AvailabilityView getAvailabilityView() { return view; }
+    
+    /**
+     * Read-only service on the replica's read connection, or on the shared primary connection
+     */
+    public ParkNowService getReadService(boolean replica) {
+        return replica ? replicaReadService : primaryReadService;
+    }
+    
+    /**
+     * Time frames of a date - from the given view, where unchanged dates come from the cache,
+     * or from the database if there is no view yet
+     */
+    public List<OptimalTimeFrame> getTimeFrames(AvailabilityView view, LocalDate date) {
+        return view != null ? availabilityService.getAvailableTimeFrames(view, date)
+                            : availabilityService.getAvailableTimeFrames(date);
+    }
+    
+    /**
+     * Queue a booking request for the lot's writer without blocking; the listener gets its response
+     *
+     * @return false if the ring is full or the lot is closing
+     */
+    public boolean tryPublish(ParkingRequest request, ConnectionToClient client, long startNanos) {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        ring.get(sequence).setRequest(request, client, startNanos);
+        ring.publish(sequence);
+        return true;
+    }
+    
+    /**
+     * Run a task on the lot's writer thread, after every booking queued before it
+     *
+     * @return false if the ring is full or the lot is closing
+     */
+    public boolean tryRun(Runnable task) {
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        ring.get(sequence).setTask(task);
+        ring.publish(sequence);
+        return true;
+    }
+    
+    /**
+     * Open the lot's write connection and create its services
+     *
+     * @param primaryConnection shared primary connection for reads that must not be stale
+     * @param readConnection read connection of the ReadRouter, or null to read from the primary
+     */
+    public void initializeDatabase(Connection primaryConnection, Connection readConnection, QueryListener listener)
+            throws SQLException {
+        writeConnection = InstrumentedConnection.wrap(MySQLConnectionAdapter.openConnection(), listener);
+        persister = new BookingPersister(writeConnection, lotId);
+        primaryReadService = new ParkNowService(primaryConnection, lotId);
+        replicaReadService = readConnection != null ? new ParkNowService(readConnection, lotId) : primaryReadService;
+        availabilityService.setConnection(primaryConnection);
+    }
+    
+    /**
+     * Rebuild in-memory occupancy: restore the latest snapshot, replay the journal events after it,
+     * then catch up with orders the database received since the snapshot was taken.
+     * Without a snapshot the journal is only enough if compaction never dropped events from it;
+     * otherwise the occupancy is loaded from the database and the journal re-seeded with it.
+     */
+    public void initializeOccupancy() {
+        try {
+            long start = System.nanoTime();
+            journal = BookingJournal.openFromSystemProperties(LotConfig.dataPath(lotId, BookingJournal.defaultPath()));
+            lastSnapshot = OccupancySnapshot.read(snapshotPath(), occupancy);
+            
+            boolean journalComplete = journal.getRecordCount() > 0 && journal.getFirstSequence() <= 1;
+            if (lastSnapshot != null || journalComplete) {
+                long coveredSequence = lastSnapshot != null ? lastSnapshot.getJournalSequence() : 0;
+                int replayed = journal.replay(coveredSequence, occupancy::apply);
+                occupancy.clearBefore(LocalDate.now());
+                System.out.printf("Lot %d occupancy restored from %s and %d journal events in %.1fms%n",
+                                  lotId, lastSnapshot != null ? lastSnapshot : "journal", replayed,
+                                  (System.nanoTime() - start) / 1_000_000.0);
+                
+                if (lastSnapshot != null && writeConnection != null) {
+                    // Orders written by other paths, or lost in the journal's unsynced tail
+                    long catchUpStart = System.nanoTime();
+                    Timestamp since = Timestamp.from(lastSnapshot.getCreatedAt().minusSeconds(60));
+                    int applied = occupancy.loadOrdersCreatedSince(writeConnection, since, LocalDate.now());
+                    System.out.printf("Lot %d database catch-up: %d orders in %.1fms%n",
+                                      lotId, applied, (System.nanoTime() - catchUpStart) / 1_000_000.0);
+                }
+            } else if (writeConnection != null) {
+                if (journal.getLastSequence() > 0) {
+                    // Compacted against a snapshot that cannot be used - its sequences mean nothing now
+                    System.out.println("Lot " + lotId + " journal was compacted and has no usable snapshot - reloading from database");
+                    journal.reset();
+                    Files.deleteIfExists(snapshotPath());
+                }
+                LocalDate today = LocalDate.now();
+                occupancy.loadFromDatabase(writeConnection, today, today.plusDays(Integer.getInteger("parking.occupancy.horizonDays", 30)));
+                
+                BookingEvent baseline = new BookingEvent();
+                occupancy.forEachOccupiedRun((date, spot, from, to) -> {
+                    baseline.set(BookingEvent.Type.PARK, date, spot, from, to, null);
+                    appendToJournal(baseline);
+                });
+                journal.sync();
+                System.out.printf("Lot %d occupancy loaded from database and journaled in %.1fms%n",
+                                  lotId, (System.nanoTime() - start) / 1_000_000.0);
+            }
+            
+            publishView();
+            
+        } catch (Exception ex) {
+            System.err.println("Lot " + lotId + " occupancy initialization failed: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Publish the occupancy's changes since the last view - writer thread (or startup) only
+     */
+    private void publishView() {
+        view = occupancy.publishView(view);
+    }
+    
+    private Path snapshotPath() {
+        return LotConfig.dataPath(lotId, OccupancySnapshot.defaultPath());
+    }
+    
+    private void appendToJournal(BookingEvent event) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(event);
+        } catch (IOException e) {
+            System.err.println("Error appending to lot " + lotId + " booking journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Apply one ring entry - runs on the writer thread
+     */
+    private void onEvent(BookingCommand command, long sequence, boolean endOfBatch) {
+        try {
+            if (command.getTask() != null) {
+                flush(); // Tasks see every booking before them written
+                Runnable task = command.getTask();
+                command.clear();
+                task.run();
+                if (view != null) {
+                    publishView();
+                }
+                
+            } else if (persister == null) {
+                complete(command, new ParkingResponse(false, "Bookings are unavailable without a database connection", null), false);
+                
+            } else if (command.getRequest().isExpired(System.currentTimeMillis())) {
+                // Not booked - a client that timed out retries with the same idempotency key
+                complete(command, new ParkingResponse(false, "Request deadline passed", null), false);
+                
+            } else {
+                switch (command.getRequest().getRequestType()) {
+                    case PARK_NOW:
+                        book(command, LocalDate.now(), TimeUtils.getCurrentTimeSlot());
+                        break;
+                    case PREBOOKING:
+                        book(command, command.getRequest().getDate(), command.getRequest().getStartTime());
+                        break;
+                    case CANCEL_BOOKING:
+                        flush(); // The booking to cancel may still be in the batch
+                        cancel(command);
+                        break;
+                    default:
+                        complete(command, new ParkingResponse(false, "Unknown request type", null), false);
+                }
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Error processing lot " + lotId + " booking: " + e.getMessage());
+            if (command.getRequest() != null) {
+                complete(command, new ParkingResponse(false, "Server error: " + e.getMessage(), null), false);
+            }
+        } finally {
+            if (endOfBatch || batchSize == batch.length) {
+                flush();
+            }
+        }
+    }
+    
+    /**
+     * Assign the spot the allocation strategy picks among the spots free at startTime,
+     * occupy it in memory and add it to the batch. The booking covers the requested end time if
+     * given, otherwise the spot's free run (up to the maximum stay) - past midnight if it gets there.
+     * Park Now is capped at PARK_NOW_MAX_SLOTS.
+     */
+    private void book(BookingCommand command, LocalDate date, LocalTime startTime) {
+        boolean park = command.getRequest().getRequestType() == ParkingRequestType.PARK_NOW;
+        int fromSlot = TimeUtils.slotOf(startTime);
+        int maxSlots = park ? TimeUtils.PARK_NOW_MAX_SLOTS : TimeUtils.MAX_SLOTS_PER_BOOKING;
+        int requestedSlots = Math.min(maxSlots, TimeUtils.requestedSlots(date, startTime, command.getRequest().getEndDate(),
+                                                                         command.getRequest().getEndTime()));
+        occupancy.collectFreeRuns(date, fromSlot, maxSlots, candidates);
+        long chosen = allocation.select(candidates, requestedSlots);
+        
+        if (chosen == SpotCandidates.NONE) {
+            complete(command, new ParkingResponse(false, park ? ParkNowResult.noAvailability().getMessage()
+                                                              : "No spots available for the requested time", null), false);
+            return;
+        }
+        
+        int spotNumber = SpotCandidates.spotOf(chosen);
+        int slots = Math.min(SpotCandidates.runLengthOf(chosen), requestedSlots);
+        occupancy.occupy(date, spotNumber, fromSlot, fromSlot + slots);
+        command.setBooking(spotNumber, date, fromSlot, fromSlot + slots,
+                           startTime, TimeUtils.slotToTime(fromSlot + slots));
+        
+        if (addToPersister(command)) {
+            batch[batchSize++] = command;
+        } else {
+            releaseBooking(command);
+            finishBooking(command, false);
+        }
+    }
+    
+    private boolean addToPersister(BookingCommand command) {
+        String customerId = command.getRequest().getCustomerId().trim();
+        try {
+            if (command.getRequest().getRequestType() == ParkingRequestType.PARK_NOW) {
+                persister.addPark(command.getSpotNumber(), customerId, command.getDate(),
+                                  command.getFromSlot(), command.getToSlot());
+            } else {
+                persister.addPrebook(command.getSpotNumber(), customerId, command.getDate(),
+                                     command.getFromSlot(), command.getToSlot());
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error adding lot " + lotId + " booking to batch: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Write the batched bookings in one transaction, publish the resulting view, then journal and
+     * answer them - so a client that got a confirmation reads its own booking.
+     * If the batch fails, its bookings are retried one by one so one bad booking cannot fail the others.
+     */
+    private void flush() {
+        if (batchSize == 0) {
+            return;
+        }
+        
+        if (persister.flush()) {
+            Arrays.fill(batchWritten, 0, batchSize, true);
+        } else {
+            for (int i = 0; i < batchSize; i++) {
+                batchWritten[i] = batchSize > 1 && addToPersister(batch[i]) && persister.flush();
+            }
+        }
+        
+        for (int i = 0; i < batchSize; i++) {
+            if (!batchWritten[i]) {
+                releaseBooking(batch[i]);
+            }
+        }
+        publishView();
+        
+        for (int i = 0; i < batchSize; i++) {
+            finishBooking(batch[i], batchWritten[i]);
+        }
+        
+        batchesWritten++;
+        Arrays.fill(batch, 0, batchSize, null);
+        batchSize = 0;
+    }
+    
+    private void releaseBooking(BookingCommand command) {
+        occupancy.release(command.getDate(), command.getSpotNumber(), command.getFromSlot(), command.getToSlot());
+    }
+    
+    private void finishBooking(BookingCommand command, boolean written) {
+        boolean park = command.getRequest().getRequestType() == ParkingRequestType.PARK_NOW;
+        
+        if (!written) {
+            complete(command, new ParkingResponse(false, park ? "Failed to park - spot may no longer be available"
+                                                              : "Failed to save prebooking", null), false);
+            return;
+        }
+        
+        String customerId = command.getRequest().getCustomerId().trim();
+        journalEvent.set(park ? BookingEvent.Type.PARK : BookingEvent.Type.PREBOOK, command.getDate(),
+                         command.getSpotNumber(), command.getFromSlot(), command.getToSlot(), customerId);
+        appendToJournal(journalEvent);
+        bookingsWritten++;
+        
+        ParkingConfirmation confirmation = new ParkingConfirmation(
+            lotId,
+            command.getSpotNumber(),
+            customerId,
+            command.getDate(),
+            command.getStartTime(),
+            command.getEndTime(),
+            command.getDurationHours()
+        );
+        confirmation.setEndDate(command.getEndDate());
+        complete(command, new ParkingResponse(true, park ? "Parking confirmed" : "Prebooking confirmed", confirmation), true);
+    }
+    
+    /**
+     * Cancel a customer's order - needs the order from the database, so it is written on its own
+     */
+    private void cancel(BookingCommand command) throws SQLException {
+        ParkingRequest request = command.getRequest();
+        ParkingOrder order;
+        QueryDeadline.set(request.getDeadlineMillis()); // Only the lookup - the write may be batched with others
+        try {
+            order = persister.findOrder(request.getCustomerId().trim(), request.getDate(), request.getStartTime());
+        } finally {
+            QueryDeadline.clear();
+        }
+        if (order == null) {
+            complete(command, new ParkingResponse(false, "No booking found to cancel", null), false);
+            return;
+        }
+        
+        persister.addCancel(order);
+        if (!persister.flush()) {
+            complete(command, new ParkingResponse(false, "Failed to cancel booking", null), false);
+            return;
+        }
+        
+        LocalTime startTime = order.getTimeOfCarDeposit();
+        int fromSlot = order.getStartSlot();
+        int toSlot = order.getEndSlot();
+        occupancy.release(order.getDateOfParking(), order.getParkingSpotNumber(), fromSlot, toSlot);
+        publishView();
+        journalEvent.set(BookingEvent.Type.CANCEL, order.getDateOfParking(), order.getParkingSpotNumber(),
+                         fromSlot, toSlot, order.getSubscriberId());
+        appendToJournal(journalEvent);
+        bookingsWritten++;
+        
+        String booking = TimeUtils.formatTimeRange(order.getDateOfParking(), startTime, order.getTimeOfRetrievalTime());
+        complete(command, new ParkingResponse(true, "Booking cancelled: spot #" + order.getParkingSpotNumber() + " on " + booking, null), true);
+    }
+    
+    /**
+     * Answer a booking; the response carries the version of the view that includes its outcome
+     */
+    private void complete(BookingCommand command, ParkingResponse response, boolean written) {
+        AvailabilityView current = view;
+        response.setSnapshotVersion(current != null ? current.getVersion() : 0);
+        try {
+            listener.bookingCompleted(command, response, written);
+        } finally {
+            command.clear();
+        }
+    }
+    
+    /**
+     * Write an occupancy snapshot covering the journal up to its current sequence - run on the writer,
+     * after flush(), or once it has stopped, so the state holds no booking the database may still reject
+     */
+    public void writeSnapshot() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long sequence = journal.getLastSequence(); // Read before copying the state
+            lastSnapshot = OccupancySnapshot.write(snapshotPath(), occupancy, sequence);
+            System.out.printf("Lot %d occupancy snapshot written: %s in %.1fms%n",
+                              lotId, lastSnapshot, (System.nanoTime() - start) / 1_000_000.0);
+        } catch (Exception e) {
+            System.err.println("Error writing lot " + lotId + " occupancy snapshot: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Drop past dates from memory, and past or snapshotted events from the journal - run on the writer
+     */
+    public void compactJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            occupancy.clearBefore(LocalDate.now());
+            journal.compact(LocalDate.now(), lastSnapshot != null ? lastSnapshot.getJournalSequence() : 0);
+        } catch (Exception e) {
+            System.err.println("Error compacting lot " + lotId + " booking journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Move not-yet-started prebookings to other spots so more long windows stay free - run on the writer.
+     * Prebookings starting within parking.repack.leadMinutes keep their spot. The orders are updated
+     * in one transaction before memory and the journal, and every moved customer is notified.
+     */
+    public void repackPrebookings() {
+        if (persister == null || view == null) {
+            return;
+        }
+        
+        try {
+            long start = System.nanoTime();
+            LocalDateTime notBefore = LocalDateTime.now().plusMinutes(Long.getLong("parking.repack.leadMinutes", 60));
+            LocalDate until = LocalDate.now().plusDays(Integer.getInteger("parking.occupancy.horizonDays", 30));
+            
+            Map<LocalDate, List<ParkingOrder>> byDate = new TreeMap<>();
+            for (ParkingOrder order : persister.findPrebookingsFrom(notBefore, until)) {
+                byDate.computeIfAbsent(order.getDateOfParking(), d -> new ArrayList<>()).add(order);
+            }
+            
+            PrebookingRepacker repacker = new PrebookingRepacker(capacity);
+            List<SpotReassignment> moves = new ArrayList<>();
+            byDate.forEach((date, orders) -> moves.addAll(repacker.plan(occupancy, date, orders)));
+            if (moves.isEmpty() || !persister.reassign(moves)) {
+                return;
+            }
+            
+            // Release every old range first - moves may swap spots between prebookings
+            for (SpotReassignment move : moves) {
+                ParkingOrder order = move.getOrder();
+                occupancy.release(order.getDateOfParking(), move.getOldSpotNumber(), move.getFromSlot(), move.getToSlot());
+                journalEvent.set(BookingEvent.Type.RELEASE, order.getDateOfParking(), move.getOldSpotNumber(),
+                                 move.getFromSlot(), move.getToSlot(), order.getSubscriberId());
+                appendToJournal(journalEvent);
+            }
+            for (SpotReassignment move : moves) {
+                ParkingOrder order = move.getOrder();
+                occupancy.occupy(order.getDateOfParking(), move.getNewSpotNumber(), move.getFromSlot(), move.getToSlot());
+                journalEvent.set(BookingEvent.Type.PREBOOK, order.getDateOfParking(), move.getNewSpotNumber(),
+                                 move.getFromSlot(), move.getToSlot(), order.getSubscriberId());
+                appendToJournal(journalEvent);
+            }
+            publishView();
+            prebookingsMoved += moves.size();
+            System.out.printf("Lot %d re-packed: %d prebookings moved in %.1fms%n",
+                              lotId, moves.size(), (System.nanoTime() - start) / 1_000_000.0);
+            
+            for (SpotReassignment move : moves) {
+                ParkingOrder order = move.getOrder();
+                reassignmentListener.spotReassigned(new SpotReassignmentNotice(
+                    lotId, order.getSubscriberId(), order.getDateOfParking(), order.getTimeOfCarDeposit(),
+                    order.getTimeOfRetrievalTime(), move.getOldSpotNumber(), move.getNewSpotNumber()));
+            }
+            
+        } catch (SQLException e) {
+            System.err.println("Error re-packing lot " + lotId + " prebookings: " + e.getMessage());
+        }
+    }
+    
+    public String getFormattedStatus() {
+        AvailabilityView current = view;
+        return String.format("Lot %d: %d spots (%s), ring backlog %d/%d, %d bookings written in %d batches, %d prebookings re-packed, view version %d, journal %d events",
+                             lotId, capacity, allocation, ring.getBacklog(), ring.getSize(), bookingsWritten, batchesWritten,
+                             prebookingsMoved, current != null ? current.getVersion() : 0, journal != null ? journal.getRecordCount() : 0);
+    }
+    
+    /**
+     * Finish queued bookings, then optionally snapshot and release the journal and connection
+     */
+    public void close(boolean snapshot) {
+        try {
+            if (!ring.stop(10_000)) {
+                System.err.println("Lot " + lotId + " writer did not finish its queued bookings");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (persister != null) {
+            persister.close();
+        }
+        
+        if (journal != null) {
+            if (snapshot) {
+                writeSnapshot();
+            }
+            journal.close();
+        }
+        
+        try {
+            if (writeConnection != null && !writeConnection.isClosed()) {
+                writeConnection.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error closing lot " + lotId + " connection: " + e.getMessage());
+        }
+    }
+}
@@ -3,7 +3,16 @@ package server;
 import java.io.*;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import ocsf.server.*;
 import common.*;
 import parking.service.*;
@@ -12,32 +21,215 @@ import parking.util.*;
 
 /**
  * Parking Management Server using OCSF framework
+ *
+ * Serves every lot configured in -Dparking.lots. Parking requests are admitted on the connection's
+ * thread and then served by the RequestScheduler's workers, most urgent type first. Bookings (PARK_NOW, PREBOOKING, CANCEL_BOOKING)
+ * are validated here, then published to the requested lot's booking ring, whose writer thread
+ * answers the client itself. Read-only requests are answered on the worker from the
+ * lot's latest availability view, without locks or database access.
+ *
+ * Requests first pass admission control (see AdmissionControl): over the per-connection or
+ * global rate, or with too many requests in flight, they are answered at once with a retry delay.
+ *
+ * Bookings may carry an idempotency key: a retried booking with the same key is answered with
+ * the first one's response instead of being executed again (see IdempotencyCache).
+ *
+ * The server remembers which connection each customer last booked from, to tell them when a
+ * prebooking is moved to another spot; customers who are not connected get the notice with their
+ * next booking request.
  */
 public class ParkingServer extends AbstractServer {
     
     final public static int DEFAULT_PORT = 5555;
     
+    /**
+     * Startup phases - requests are only served once the server is READY or DEGRADED
+     */
+    public enum Readiness {
+        STARTING("starting"),
+        CONNECTING_DATABASE("connecting to database"),
+        LOADING_OCCUPANCY("loading occupancy"),
+        READY("ready"),
+        DEGRADED("ready without database");
+        
+        private final String description;
+        
+        Readiness(String description) {
+            this.description = description;
+        }
+        
+        public String getDescription() { return description; }
+        
+        public boolean isServing() {
+            return this == READY || this == DEGRADED;
+        }
+    }
+    
+    // Written by the startup thread before readiness is published
     private Connection dbConnection;
-    private ParkNowService parkNowService;
-    private ParkingSpotAssigner spotAssigner;
+    private ReadRouter readRouter;
+    private volatile Readiness readiness = Readiness.STARTING;
+    private final AtomicBoolean startupLaunched = new AtomicBoolean();
+    private final long constructedAt = System.nanoTime();
+    private final ServerMetrics metrics;
+    private final AdmissionControl admission;
+    private final RequestScheduler scheduler;
+    private final Map<Integer, LotContext> lots;
+    private final Map<String, ConnectionToClient> customerConnections = new ConcurrentHashMap<>();
+    private final Map<String, List<SpotReassignmentNotice>> pendingNotices = new ConcurrentHashMap<>();
+    private final IdempotencyCache idempotency = IdempotencyCache.fromSystemProperties();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "parking-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     public ParkingServer(int port) {
         super(port);
-        initializeDatabase();
+        metrics = new ServerMetrics(this::getNumberOfClients);
+        metrics.registerMBean();
+        admission = AdmissionControl.fromSystemProperties(metrics::getInFlightRequests);
+        scheduler = RequestScheduler.fromSystemProperties(this::handleParkingRequest);
+        
+        Map<Integer, LotContext> configured = new TreeMap<>();
+        for (int lotId : LotConfig.getLotIds()) {
+            configured.put(lotId, new LotContext(lotId, LotConfig.getCapacity(lotId), this::completeBooking, this::notifyReassigned));
+        }
+        lots = Collections.unmodifiableMap(configured);
+    }
+    
+    /**
+     * Connect to the database and warm the in-memory state in the background,
+     * so clients can connect while the server starts up
+     */
+    private void startInitialization() {
+        if (!startupLaunched.compareAndSet(false, true)) {
+            return;
+        }
+        
+        Thread startup = new Thread(() -> {
+            readiness = Readiness.CONNECTING_DATABASE;
+            initializeDatabase();
+            
+            readiness = Readiness.LOADING_OCCUPANCY;
+            initializeOccupancy();
+            
+            readiness = dbConnection != null ? Readiness.READY : Readiness.DEGRADED;
+            System.out.println("Database connection: " + (dbConnection != null ? "Connected" : "Failed"));
+            System.out.printf("Parking Server %s after %.1fms%n", readiness.getDescription(),
+                              (System.nanoTime() - constructedAt) / 1_000_000.0);
+        }, "parking-startup");
+        startup.setDaemon(true);
+        startup.start();
+    }
+    
+    public Readiness getReadiness() {
+        return readiness;
+    }
+    
+    private String getReadinessReport() {
+        Readiness current = readiness;
+        long uptimeMillis = (System.nanoTime() - constructedAt) / 1_000_000;
+        return current.isServing()
+            ? String.format("Server is %s (up %ds)", current.getDescription(), uptimeMillis / 1000)
+            : String.format("Server is warming up: %s (%.1fs)", current.getDescription(), uptimeMillis / 1000.0);
     }
     
     /**
-     * Initialize database connection and services
+     * Initialize the shared database connection, the read router and every lot's write connection
      */
     private void initializeDatabase() {
         try {
-            dbConnection = MySQLConnectionAdapter.getConnection();
-            parkNowService = new ParkNowService(dbConnection);
-            spotAssigner = new ParkingSpotAssigner(dbConnection);
+            dbConnection = InstrumentedConnection.wrap(MySQLConnectionAdapter.getConnection(), metrics);
             
         } catch (Exception ex) {
             System.err.println("Database initialization failed: " + ex.getMessage());
             ex.printStackTrace();
+            return;
+        }
+        
+        try {
+            readRouter = ReadRouter.fromSystemProperties(metrics);
+            System.out.println("Read connection: " + (readRouter.hasReplica() ? "replica" : "second primary connection"));
+            
+        } catch (Exception ex) {
+            System.err.println("Read connection unavailable, reads use the primary: " + ex.getMessage());
+        }
+        
+        for (LotContext lot : lots.values()) {
+            try {
+                lot.initializeDatabase(dbConnection, readRouter != null ? readRouter.getReadConnection() : null, metrics);
+            } catch (SQLException ex) {
+                System.err.println("Lot " + lot.getLotId() + " database initialization failed: " + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Pick the database service for a read-only request of a lot without an availability view:
+     * the read connection when the request's staleness bound and the session's own writes allow it,
+     * otherwise the primary
+     */
+    private ParkNowService readServiceFor(ParkingRequestType type, ConnectionToClient client, LotContext lot) {
+        return lot.getReadService(readRouter != null && readRouter.useReadConnection(type, client));
+    }
+    
+    /**
+     * Rebuild every lot's in-memory occupancy in parallel, then schedule maintenance.
+     * No bookings reach the lots' writers before the server is serving.
+     */
+    private void initializeOccupancy() {
+        lots.values().parallelStream().forEach(LotContext::initializeOccupancy);
+        
+        long snapshotMinutes = Long.getLong("parking.snapshot.intervalMinutes", 5);
+        maintenance.scheduleWithFixedDelay(() -> lots.values().forEach(lot -> {
+            if (!lot.tryRun(lot::writeSnapshot)) {
+                System.err.println("Lot " + lot.getLotId() + " booking ring full - occupancy snapshot skipped");
+            }
+        }), snapshotMinutes, snapshotMinutes, TimeUnit.MINUTES);
+        maintenance.scheduleWithFixedDelay(idempotency::prune, 1, 1, TimeUnit.MINUTES);
+        
+        long compactMinutes = Long.getLong("parking.journal.compactMinutes", 60);
+        maintenance.scheduleWithFixedDelay(() -> lots.values().forEach(lot -> {
+            if (!lot.tryRun(lot::compactJournal)) {
+                System.err.println("Lot " + lot.getLotId() + " booking ring full - journal compaction skipped");
+            }
+        }), compactMinutes, compactMinutes, TimeUnit.MINUTES);
+        
+        long repackMinutes = Long.getLong("parking.repack.intervalMinutes", 30);
+        if (repackMinutes > 0) {
+            maintenance.scheduleWithFixedDelay(() -> {
+                pruneNotices();
+                lots.values().forEach(lot -> {
+                    if (!lot.tryRun(lot::repackPrebookings)) {
+                        System.err.println("Lot " + lot.getLotId() + " booking ring full - prebooking re-packing skipped");
+                    }
+                });
+            }, repackMinutes, repackMinutes, TimeUnit.MINUTES);
+        }
+        
+        if (PartitionManager.isEnabled() && dbConnection != null) {
+            // Rotation only - the tables are converted by the PartitionManager tool. Cheap when there
+            // is nothing to do, so checking hourly keeps up across midnight
+            maintenance.scheduleWithFixedDelay(this::rotatePartitions, 0, 60, TimeUnit.MINUTES);
+        }
+    }
+    
+    private void recordWrite(ConnectionToClient client) {
+        if (readRouter != null) {
+            readRouter.recordWrite(client);
+        }
+    }
+    
+    /**
+     * Create upcoming daily partitions and retire expired ones, on a separate connection
+     * so the DDL cannot commit a request's transaction
+     */
+    private void rotatePartitions() {
+        try (Connection connection = MySQLConnectionAdapter.openConnection()) {
+            PartitionManager.fromSystemProperties(connection).rotate();
+        } catch (Exception e) {
+            System.err.println("Error rotating partitions: " + e.getMessage());
         }
     }
     
@@ -48,12 +240,12 @@ public class ParkingServer extends AbstractServer {
         System.out.println("Message received: " + msg + " from " + client);
         
         if (msg instanceof ParkingRequest) {
-            handleParkingRequest((ParkingRequest) msg, client);
+            submitParkingRequest((ParkingRequest) msg, client);
         } else if (msg instanceof String) {
             handleStringCommand((String) msg, client);
         } else {
             try {
-                client.sendToClient(new ParkingResponse(false, "Unknown command type", null));
+                send(client, new ParkingResponse(false, "Unknown command type", null));
             } catch (IOException e) {
                 System.err.println("Error sending response to client: " + e.getMessage());
             }
@@ -61,91 +253,278 @@ public class ParkingServer extends AbstractServer {
     }
     
     /**
-     * Handle parking-specific requests
+     * Admit a parking request and queue it for the scheduler's workers - runs under the OCSF
+     * server monitor, so it only does the cheap checks
+     */
+    private void submitParkingRequest(ParkingRequest request, ConnectionToClient client) {
+        long startTime = System.nanoTime();
+        metrics.requestStarted();
+        
+        long retryAfter = admission.admit(client);
+        if (retryAfter > 0) {
+            respond(request, client, busy("Server busy", retryAfter), startTime);
+            return;
+        }
+        if (!scheduler.submit(request, client, startTime)) {
+            respond(request, client, new ParkingResponse(false, "Server is shutting down", null), startTime);
+        }
+    }
+    
+    /**
+     * Handle parking-specific requests - called on a scheduler worker. A request whose client has
+     * stopped waiting is dropped; the others run with their remaining time as the JDBC query timeout.
      */
-    private void handleParkingRequest(ParkingRequest request, ConnectionToClient client) {
+    private void handleParkingRequest(ParkingRequest request, ConnectionToClient client, long startTime) {
+        if (request.isExpired(System.currentTimeMillis())) {
+            metrics.requestExpired(request.getRequestType(), System.nanoTime() - startTime);
+            return;
+        }
+        
+        QueryDeadline.set(request.getDeadlineMillis());
         try {
-            ParkingResponse response = null;
-            
-            switch (request.getRequestType()) {
-                case PARK_NOW:
-                    response = handleParkNowRequest(request);
-                    break;
-                case CHECK_AVAILABILITY:
-                    response = handleAvailabilityCheck(request);
-                    break;
-                case PREBOOKING:
-                    response = handlePrebookingRequest(request);
+            dispatchParkingRequest(request, client, startTime);
+        } finally {
+            QueryDeadline.clear();
+        }
+    }
+    
+    private void dispatchParkingRequest(ParkingRequest request, ConnectionToClient client, long startTime) {
+        if (!readiness.isServing()) {
+            respond(request, client, new ParkingResponse(false, getReadinessReport() + " - please retry shortly", null), startTime);
+            return;
+        }
+        
+        LotContext lot = lots.get(request.getLotId());
+        if (lot == null) {
+            respond(request, client, new ParkingResponse(false, "Unknown parking lot: " + request.getLotId(), null), startTime);
+            return;
+        }
+        
+        switch (request.getRequestType()) {
+            case PARK_NOW:
+            case PREBOOKING:
+            case CANCEL_BOOKING:
+                String error = validateBooking(request);
+                if (error != null) {
+                    respond(request, client, new ParkingResponse(false, error, null), startTime);
                     break;
-                case GET_SUMMARY:
-                    response = handleSummaryRequest();
+                }
+                rememberCustomer(request.getCustomerId().trim(), client);
+                ParkingResponse earlier = idempotency.begin(request, client, startTime);
+                if (earlier == IdempotencyCache.IN_FLIGHT) {
+                    break; // Answered together with the request that claimed the key
+                }
+                if (earlier != null) {
+                    respond(request, client, earlier, startTime);
                     break;
-                default:
-                    response = new ParkingResponse(false, "Unknown request type", null);
+                }
+                if (!lot.tryPublish(request, client, startTime)) {
+                    // Never wait for room in the ring - the client retries
+                    ParkingResponse rejected = lot.isAcceptingBookings()
+                        ? busy("Server busy", admission.getShedRetryMillis())
+                        : new ParkingResponse(false, "Server is shutting down", null);
+                    respond(request, client, rejected, startTime);
+                    answerDuplicates(request, rejected, false);
+                }
+                break;
+            case CHECK_AVAILABILITY:
+                respond(request, client, handleAvailabilityCheck(request, client, lot), startTime);
+                break;
+            case GET_SUMMARY:
+                respond(request, client, handleSummaryRequest(client, lot), startTime);
+                break;
+            case GET_TIME_FRAMES:
+                respond(request, client, handleTimeFramesRequest(request, lot), startTime);
+                break;
+            default:
+                respond(request, client, new ParkingResponse(false, "Unknown request type", null), startTime);
+        }
+    }
+    
+    /**
+     * Answer for a request turned away - the client may retry after retryAfterMillis
+     */
+    private static ParkingResponse busy(String reason, long retryAfterMillis) {
+        ParkingResponse response = new ParkingResponse(false, reason + " - please retry in " + retryAfterMillis + "ms", null);
+        response.setRetryAfterMillis(retryAfterMillis);
+        return response;
+    }
+    
+    /**
+     * Check a booking request before it is queued
+     *
+     * @return the error message, or null if the request is complete
+     */
+    private String validateBooking(ParkingRequest request) {
+        String customerId = request.getCustomerId();
+        
+        if (request.getRequestType() == ParkingRequestType.PREBOOKING
+            && (request.getDate() == null || request.getStartTime() == null || customerId == null)) {
+            return "Date, time, and customer ID are required for prebooking";
+        }
+        if (request.getRequestType() == ParkingRequestType.CANCEL_BOOKING
+            && (request.getDate() == null || customerId == null)) {
+            return "Date and customer ID are required to cancel a booking";
+        }
+        if (request.getEndDate() != null) {
+            if (request.getDate() == null || request.getEndTime() == null || request.getEndDate().isBefore(request.getDate())) {
+                return "End date requires an end time on or after the booking date";
             }
-            
-            client.sendToClient(response);
-            
-        } catch (IOException e) {
-            System.err.println("Error handling parking request: " + e.getMessage());
+            if (request.getStartTime() != null && !request.getEndDate().atTime(request.getEndTime())
+                                                          .isAfter(request.getDate().atTime(request.getStartTime()))) {
+                return "End must be after the start";
+            }
+        }
+        if (customerId == null || customerId.trim().isEmpty()) {
+            return "Customer ID is required";
         }
+        return null;
     }
     
     /**
-     * Handle immediate parking requests
+     * Answer a booking once its lot's writer has applied it - called on the writer thread
      */
-    private ParkingResponse handleParkNowRequest(ParkingRequest request) {
-        try {
-            String customerId = request.getCustomerId();
-            if (customerId == null || customerId.trim().isEmpty()) {
-                return new ParkingResponse(false, "Customer ID is required", null);
+    private void completeBooking(BookingCommand command, ParkingResponse response, boolean written) {
+        if (written) {
+            recordWrite(command.getClient());
+        }
+        respond(command.getRequest(), command.getClient(), response, command.getStartNanos());
+        
+        if (!written && command.getRequest().isExpired(System.currentTimeMillis())) {
+            // Nobody reads this answer - a retry waiting on the key is executed instead of failed
+            handOffClaim(command.getRequest());
+        } else {
+            answerDuplicates(command.getRequest(), response, written);
+        }
+    }
+    
+    /**
+     * Queue the oldest live duplicate of an expired, unwritten booking in its place - called on
+     * the lot writer, which only claims ring entries without waiting for them
+     */
+    private void handOffClaim(ParkingRequest expired) {
+        IdempotencyCache.Waiter waiter;
+        while ((waiter = idempotency.handOff(expired)) != null) {
+            ParkingRequest request = waiter.getRequest();
+            if (request.isExpired(System.currentTimeMillis())) {
+                metrics.requestExpired(request.getRequestType(), System.nanoTime() - waiter.getStartNanos());
+                continue;
             }
             
-            // First check availability
-            ParkNowResult availabilityResult = parkNowService.checkAvailableNow();
-            if (!availabilityResult.isAvailable()) {
-                return new ParkingResponse(false, availabilityResult.getMessage(), null);
+            LotContext lot = lots.get(request.getLotId());
+            if (lot == null || !lot.tryPublish(request, waiter.getClient(), waiter.getStartNanos())) {
+                ParkingResponse rejected = busy("Server busy", admission.getShedRetryMillis());
+                respond(request, waiter.getClient(), rejected, waiter.getStartNanos());
+                answerDuplicates(request, rejected, false);
             }
-            
-            // Park the car
-            CurrentSpotAvailability bestSpot = availabilityResult.getAssignedSpot();
-            boolean success = parkNowService.parkNow(bestSpot, customerId);
-            
-            if (success) {
-                ParkingConfirmation confirmation = new ParkingConfirmation(
-                    bestSpot.getSpotNumber(),
-                    customerId,
-                    LocalDate.now(),
-                    bestSpot.getAvailableFrom(),
-                    bestSpot.getFreeUntil(),
-                    bestSpot.getDurationHours()
-                );
-                return new ParkingResponse(true, "Parking confirmed", confirmation);
-            } else {
-                return new ParkingResponse(false, "Failed to park - spot may no longer be available", null);
+            return;
+        }
+    }
+    
+    /**
+     * Answer the duplicates that waited for a booking - the response is kept for later retries
+     * only if the booking was written
+     */
+    private void answerDuplicates(ParkingRequest request, ParkingResponse response, boolean keep) {
+        for (IdempotencyCache.Waiter waiter : idempotency.complete(request, response, keep)) {
+            respond(waiter.getRequest(), waiter.getClient(), response, waiter.getStartNanos());
+        }
+    }
+    
+    /**
+     * Tell a customer their prebooking moved - called on a lot writer.
+     * Kept for their next booking request if they are not connected.
+     */
+    private void notifyReassigned(SpotReassignmentNotice notice) {
+        ConnectionToClient client = customerConnections.get(notice.getCustomerId());
+        if (client != null) {
+            try {
+                send(client, notice);
+                return;
+            } catch (IOException e) {
+                customerConnections.remove(notice.getCustomerId(), client);
+            }
+        }
+        pendingNotices.computeIfAbsent(notice.getCustomerId(), id -> new CopyOnWriteArrayList<>()).add(notice);
+    }
+    
+    /**
+     * Remember the customer's connection and deliver notices kept for them
+     */
+    private void rememberCustomer(String customerId, ConnectionToClient client) {
+        customerConnections.put(customerId, client);
+        
+        List<SpotReassignmentNotice> notices = pendingNotices.remove(customerId);
+        if (notices == null) {
+            return;
+        }
+        for (SpotReassignmentNotice notice : notices) {
+            try {
+                send(client, notice);
+            } catch (IOException e) {
+                System.err.println("Error sending spot reassignment to " + customerId + ": " + e.getMessage());
             }
+        }
+    }
+    
+    /**
+     * Drop kept notices for prebookings that are already over
+     */
+    private void pruneNotices() {
+        LocalDate today = LocalDate.now();
+        pendingNotices.values().forEach(notices -> notices.removeIf(notice -> notice.getDate().isBefore(today)));
+        pendingNotices.values().removeIf(List::isEmpty);
+    }
+    
+    /**
+     * Send a request's response and record its metrics - called from a connection thread, a scheduler worker or a lot writer.
+     * Nothing is sent once the client's deadline has passed: it no longer reads the answer.
+     */
+    private void respond(ParkingRequest request, ConnectionToClient client, ParkingResponse response, long startTime) {
+        if (request.isExpired(System.currentTimeMillis())) {
+            metrics.requestExpired(request.getRequestType(), System.nanoTime() - startTime);
+            return;
+        }
+        try {
+            long sendStart = System.nanoTime();
+            send(client, response);
+            metrics.responseSent(System.nanoTime() - sendStart);
             
-        } catch (Exception e) {
-            System.err.println("Error processing park now request: " + e.getMessage());
-            return new ParkingResponse(false, "Server error: " + e.getMessage(), null);
+        } catch (IOException e) {
+            System.err.println("Error handling parking request: " + e.getMessage());
+        } finally {
+            metrics.requestCompleted(request.getRequestType(), System.nanoTime() - startTime, response);
+        }
+    }
+    
+    /**
+     * Send a message to a client - lot writers and scheduler workers may send to the same client,
+     * and ConnectionToClient.sendToClient is not synchronized
+     */
+    private static void send(ConnectionToClient client, Object message) throws IOException {
+        synchronized (client) {
+            client.sendToClient(message);
         }
     }
     
     /**
      * Handle availability check requests
      */
-    private ParkingResponse handleAvailabilityCheck(ParkingRequest request) {
+    private ParkingResponse handleAvailabilityCheck(ParkingRequest request, ConnectionToClient client, LotContext lot) {
         try {
-            ParkNowResult result = parkNowService.checkAvailableNow();
+            AvailabilityView view = lot.getAvailabilityView(); // Read once - one consistent state per answer
+            ParkNowResult result = view != null
+                ? view.checkAvailable(LocalDate.now(), TimeUtils.getCurrentTimeSlot(), lot.getAllocationStrategy())
+                : readServiceFor(ParkingRequestType.CHECK_AVAILABILITY, client, lot).checkAvailableNow();
             
             if (result.isAvailable()) {
                 CurrentSpotAvailability spot = result.getAssignedSpot();
-                return new ParkingResponse(true, 
+                return versioned(new ParkingResponse(true, 
                     String.format("Best spot: #%d available for %s", 
                                  spot.getSpotNumber(), spot.getFormattedDuration()), 
-                    spot);
+                    spot), view);
             } else {
-                return new ParkingResponse(false, result.getMessage(), null);
+                return versioned(new ParkingResponse(false, result.getMessage(), null), view);
             }
             
         } catch (Exception e) {
@@ -155,77 +534,94 @@ public class ParkingServer extends AbstractServer {
     }
     
     /**
-     * Handle prebooking requests
+     * Handle summary requests
      */
-    private ParkingResponse handlePrebookingRequest(ParkingRequest request) {
+    private ParkingResponse handleSummaryRequest(ConnectionToClient client, LotContext lot) {
         try {
-            LocalDate date = request.getDate();
-            LocalTime startTime = request.getStartTime();
-            String customerId = request.getCustomerId();
-            
-            if (date == null || startTime == null || customerId == null) {
-                return new ParkingResponse(false, "Date, time, and customer ID are required for prebooking", null);
-            }
-            
-            // Find optimal spot assignment
-            ParkingAssignment assignment = spotAssigner.assignOptimalSpot(date, startTime);
-            
-            if (assignment == null) {
-                return new ParkingResponse(false, "No spots available for the requested time", null);
-            }
-            
-            // Create and save the parking order
-            ParkingOrder order = assignment.toParkingOrder(customerId);
-            boolean success = saveParkingOrder(order);
-            
-            if (success) {
-                ParkingConfirmation confirmation = new ParkingConfirmation(
-                    assignment.getAssignedSpotNumber(),
-                    customerId,
-                    assignment.getDate(),
-                    assignment.getStartTime(),
-                    assignment.getEndTime(),
-                    assignment.getDurationHours()
-                );
-                return new ParkingResponse(true, "Prebooking confirmed", confirmation);
-            } else {
-                return new ParkingResponse(false, "Failed to save prebooking", null);
-            }
+            AvailabilityView view = lot.getAvailabilityView();
+            return versioned(new ParkingResponse(true, "Summary retrieved", getSummary(view, client, lot)), view);
             
         } catch (Exception e) {
-            System.err.println("Error processing prebooking request: " + e.getMessage());
+            System.err.println("Error getting summary: " + e.getMessage());
             return new ParkingResponse(false, "Server error: " + e.getMessage(), null);
         }
     }
     
     /**
-     * Handle summary requests
+     * Handle time frame requests for one date
      */
-    private ParkingResponse handleSummaryRequest() {
+    private ParkingResponse handleTimeFramesRequest(ParkingRequest request, LotContext lot) {
+        if (request.getDate() == null) {
+            return new ParkingResponse(false, "Date is required", null);
+        }
+        
         try {
-            ParkingAvailabilitySummary summary = parkNowService.getCurrentAvailabilitySummary();
-            return new ParkingResponse(true, "Summary retrieved", summary);
+            AvailabilityView view = lot.getAvailabilityView();
+            List<OptimalTimeFrame> frames = lot.getTimeFrames(view, request.getDate());
+            return versioned(new ParkingResponse(true, frames.size() + " time frames available", frames), view);
             
         } catch (Exception e) {
-            System.err.println("Error getting summary: " + e.getMessage());
+            System.err.println("Error getting time frames: " + e.getMessage());
             return new ParkingResponse(false, "Server error: " + e.getMessage(), null);
         }
     }
     
+    /**
+     * Get a lot's current summary from its view, or from the database if it has none
+     */
+    private ParkingAvailabilitySummary getSummary(AvailabilityView view, ConnectionToClient client, LotContext lot) {
+        return view != null
+            ? view.getSummary(LocalDate.now(), TimeUtils.getCurrentTimeSlot())
+            : readServiceFor(ParkingRequestType.GET_SUMMARY, client, lot).getCurrentAvailabilitySummary();
+    }
+    
+    /**
+     * Tag a read's response with the version of the view it was answered from
+     */
+    private static ParkingResponse versioned(ParkingResponse response, AvailabilityView view) {
+        if (view != null) {
+            response.setSnapshotVersion(view.getVersion());
+        }
+        return response;
+    }
+    
     /**
      * Handle string commands (legacy support)
      */
     private void handleStringCommand(String command, ConnectionToClient client) {
         try {
-            if (command.startsWith("#STATUS")) {
-                ParkingAvailabilitySummary summary = parkNowService.getCurrentAvailabilitySummary();
-                client.sendToClient("STATUS: " + summary.getFormattedOccupancy());
+            if (command.startsWith("#PING")) {
+                send(client, "PONG: " + getReadinessReport());
+                
+            } else if (!readiness.isServing()) {
+                send(client, getReadinessReport());
                 
-            } else if (command.startsWith("#PING")) {
-                client.sendToClient("PONG: Server is alive");
+            } else if (command.startsWith("#STATUS")) {
+                StringBuilder status = new StringBuilder("STATUS:");
+                for (LotContext lot : lots.values()) {
+                    ParkingAvailabilitySummary summary = getSummary(lot.getAvailabilityView(), client, lot);
+                    status.append(lots.size() > 1 ? "\n  Lot " + lot.getLotId() + ": " : " ").append(summary.getFormattedOccupancy());
+                }
+                send(client, status.toString());
+                
+            } else if (command.startsWith("#METRICS")) {
+                StringBuilder report = new StringBuilder(metrics.getFormattedReport());
+                if (readRouter != null) {
+                    report.append("\n").append(readRouter.getFormattedStatus());
+                }
+                for (LotContext lot : lots.values()) {
+                    report.append("\n").append(lot.getFormattedStatus());
+                }
+                report.append("\n").append(admission.getFormattedStatus());
+                report.append("\n").append(scheduler.getFormattedStatus());
+                report.append("\n").append(idempotency.getFormattedStatus());
+                send(client, report.toString());
+                
+            } else if (command.startsWith("#SLOWQUERIES")) {
+                send(client, metrics.getFormattedSlowQueries());
                 
             } else {
-                client.sendToClient("Unknown command: " + command);
+                send(client, "Unknown command: " + command);
             }
             
         } catch (IOException e) {
@@ -233,39 +629,10 @@ public class ParkingServer extends AbstractServer {
         }
     }
     
-    /**
-     * Save parking order to database
-     */
-    private boolean saveParkingOrder(ParkingOrder order) {
-        try {
-            String insertOrder = """
-                INSERT INTO parking_orders 
-                (parking_spot_number, subscriber_id, date_of_parking, date_placing_order, 
-                 time_of_car_deposit, time_of_retrieval_time)
-                VALUES (?, ?, ?, ?, ?, ?)
-                """;
-            
-            try (PreparedStatement stmt = dbConnection.prepareStatement(insertOrder)) {
-                stmt.setInt(1, order.getParkingSpotNumber());
-                stmt.setString(2, order.getSubscriberId());
-                stmt.setDate(3, Date.valueOf(order.getDateOfParking()));
-                stmt.setDate(4, Date.valueOf(LocalDate.now()));
-                stmt.setTime(5, Time.valueOf(order.getTimeOfCarDeposit()));
-                stmt.setTime(6, Time.valueOf(order.getTimeOfRetrievalTime()));
-                
-                int result = stmt.executeUpdate();
-                return result > 0;
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error saving parking order: " + e.getMessage());
-            return false;
-        }
-    }
-    
     protected void serverStarted() {
         System.out.println("Parking Server listening for connections on port " + getPort());
-        System.out.println("Database connection: " + (dbConnection != null ? "Connected" : "Failed"));
+        scheduler.start();
+        startInitialization();
     }
     
     protected void serverStopped() {
@@ -279,10 +646,26 @@ public class ParkingServer extends AbstractServer {
     
     protected void clientDisconnected(ConnectionToClient client) {
         System.out.println("Client disconnected: " + client);
+        customerConnections.values().removeIf(connection -> connection == client);
         super.clientDisconnected(client);
     }
     
     protected void serverClosed() {
+        maintenance.shutdown();
+        for (RequestScheduler.Task task : scheduler.close()) {
+            respond(task.getRequest(), task.getClient(), new ParkingResponse(false, "Server is shutting down", null),
+                    task.getStartNanos());
+        }
+        boolean serving = readiness.isServing();
+        for (LotContext lot : lots.values()) {
+            lot.close(serving);
+        }
+        System.out.println("Parking lots closed");
+        
+        if (readRouter != null) {
+            readRouter.close();
+        }
+        
         try {
             if (dbConnection != null && !dbConnection.isClosed()) {
                 dbConnection.close();
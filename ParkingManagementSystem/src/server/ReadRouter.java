@@ -0,0 +1,188 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import ocsf.server.ConnectionToClient;
+import common.*;
+import parking.util.InstrumentedConnection;
+import parking.util.MySQLConnectionAdapter;
+import parking.util.QueryListener;
+
+/**
+ * Routes read-only requests to a separate read connection, so reads do not queue behind
+ * booking transactions on the primary connection.
+ *
+ * The read connection points at a replica (-Dparking.read.url) or, by default, is a second
+ * connection to the primary. For a replica, the primary writes a heartbeat every
+ * parking.read.heartbeatMs and the replica's copy of it gives both the replication lag and the
+ * point in time the replica has caught up to. A read goes to the replica only if:
+ * - its request type has a staleness bound (parking.read.maxStalenessMs.<TYPE>) - writes never do
+ * - the current lag is within that bound
+ * - the replica has caught up to the session's last booking (read-your-writes)
+ */
+public class ReadRouter {
+    
+    private static final String LAST_WRITE_INFO = "lastWriteMillis";
+    
+    private final Connection readConnection;
+    private final Connection heartbeatConnection; // Primary - null without a replica
+    private final Map<ParkingRequestType, Long> maxStalenessMillis = new EnumMap<>(ParkingRequestType.class);
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final ScheduledExecutorService heartbeat;
+    
+    private volatile long replicaCaughtUpToMillis;
+    private volatile long lagMillis = Long.MAX_VALUE;
+    
+    private ReadRouter(Connection readConnection, Connection heartbeatConnection, long heartbeatMillis) throws SQLException {
+        this.readConnection = readConnection;
+        this.heartbeatConnection = heartbeatConnection;
+        
+        maxStalenessMillis.put(ParkingRequestType.CHECK_AVAILABILITY, Long.getLong("parking.read.maxStalenessMs.CHECK_AVAILABILITY", 1000));
+        maxStalenessMillis.put(ParkingRequestType.GET_SUMMARY, Long.getLong("parking.read.maxStalenessMs.GET_SUMMARY", 5000));
+        
+        if (heartbeatConnection == null) {
+            heartbeat = null;
+            lagMillis = 0;
+            return;
+        }
+        
+        try (Statement stmt = heartbeatConnection.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS replication_heartbeat (
+                    id TINYINT PRIMARY KEY,
+                    beat_millis BIGINT NOT NULL
+                ) ENGINE=InnoDB
+                """);
+            stmt.executeUpdate("INSERT IGNORE INTO replication_heartbeat (id, beat_millis) VALUES (1, 0)");
+        }
+        
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Create a router configured by parking.read.* system properties; read statements are timed by listener
+     */
+    public static ReadRouter fromSystemProperties(QueryListener listener) throws SQLException {
+        String replicaUrl = System.getProperty("parking.read.url");
+        
+        if (replicaUrl == null || replicaUrl.isBlank()) {
+            return new ReadRouter(InstrumentedConnection.wrap(MySQLConnectionAdapter.openConnection(), listener), null, 0);
+        }
+        
+        return new ReadRouter(
+            InstrumentedConnection.wrap(MySQLConnectionAdapter.openConnection(replicaUrl), listener),
+            MySQLConnectionAdapter.openConnection(),
+            Long.getLong("parking.read.heartbeatMs", 500)
+        );
+    }
+    
+    public Connection getReadConnection() {
+        return readConnection;
+    }
+    
+    public boolean hasReplica() {
+        return heartbeatConnection != null;
+    }
+    
+    /**
+     * Decide whether a request may be served from the read connection
+     */
+    public boolean useReadConnection(ParkingRequestType type, ConnectionToClient client) {
+        boolean allowed = isReadAllowed(type, client);
+        (allowed ? replicaReads : primaryReads).incrementAndGet();
+        return allowed;
+    }
+    
+    private boolean isReadAllowed(ParkingRequestType type, ConnectionToClient client) {
+        Long bound = maxStalenessMillis.get(type);
+        if (bound == null) {
+            return false;
+        }
+        if (!hasReplica()) {
+            return true; // A second primary connection is never stale
+        }
+        if (lagMillis > bound) {
+            return false;
+        }
+        
+        Object lastWrite = null;
+        if (client != null) {
+            synchronized (client) { // Lot writers record writes from their own threads
+                lastWrite = client.getInfo(LAST_WRITE_INFO);
+            }
+        }
+        return !(lastWrite instanceof Long) || (Long) lastWrite <= replicaCaughtUpToMillis;
+    }
+    
+    /**
+     * Remember that the session just wrote, so its next reads see the write
+     */
+    public void recordWrite(ConnectionToClient client) {
+        if (client != null) {
+            synchronized (client) {
+                client.setInfo(LAST_WRITE_INFO, System.currentTimeMillis());
+            }
+        }
+    }
+    
+    /**
+     * Write a heartbeat on the primary and read back the newest one the replica has applied
+     */
+    private void beat() {
+        try {
+            try (PreparedStatement stmt = heartbeatConnection.prepareStatement(
+                    "UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1")) {
+                stmt.setLong(1, System.currentTimeMillis());
+                stmt.executeUpdate();
+            }
+            
+            try (Statement stmt = readConnection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT beat_millis FROM replication_heartbeat WHERE id = 1")) {
+                if (rs.next()) {
+                    replicaCaughtUpToMillis = rs.getLong(1);
+                    lagMillis = Math.max(0, System.currentTimeMillis() - replicaCaughtUpToMillis);
+                }
+            }
+        } catch (SQLException e) {
+            lagMillis = Long.MAX_VALUE; // Unknown lag - keep reads on the primary
+            System.err.println("Replica heartbeat failed: " + e.getMessage());
+        }
+    }
+    
+    public String getFormattedStatus() {
+        String lag = !hasReplica() ? "none (second primary connection)"
+                   : lagMillis == Long.MAX_VALUE ? "unknown" : lagMillis + "ms";
+        return String.format("Read routing: replica lag %s, %d read-connection reads, %d primary reads",
+                             lag, replicaReads.get(), primaryReads.get());
+    }
+    
+    public void close() {
+        if (heartbeat != null) {
+            heartbeat.shutdown();
+        }
+        for (Connection connection : new Connection[] { readConnection, heartbeatConnection }) {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error closing read connection: " + e.getMessage());
+            }
+        }
+    }
+}
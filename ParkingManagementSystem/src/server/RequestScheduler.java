@@ -0,0 +1,233 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import ocsf.server.ConnectionToClient;
+import common.ParkingRequest;
+import common.ParkingRequestType;
+
+/**
+ * Runs parking requests on a small pool of workers in priority order
+ *
+ * OCSF hands every message to the server under one monitor, in arrival order. The server only
+ * submits requests here, so the monitor is released at once, and the workers take the most
+ * urgent request first: a driver at the barrier (PARK_NOW) before a dashboard refresh.
+ * Each priority level is a FIFO queue. A waiting request rises one level every agingMillis, so
+ * low-priority requests are delayed under load but never starved.
+ *
+ * The order is set with -Dparking.scheduler.priorities (request types, most urgent first; types
+ * not listed come last), the pool size with -Dparking.scheduler.threads and the aging step with
+ * -Dparking.scheduler.agingMillis.
+ */
+public class RequestScheduler {
+    
+    public static final String DEFAULT_PRIORITIES =
+        "PARK_NOW,CHECK_AVAILABILITY,CANCEL_BOOKING,PREBOOKING,GET_TIME_FRAMES,GET_SUMMARY";
+    
+    /**
+     * Serves a request on a worker thread
+     */
+    public interface Handler {
+        void handle(ParkingRequest request, ConnectionToClient client, long startNanos);
+    }
+    
+    /**
+     * A request waiting for a worker
+     */
+    public static class Task {
+        private final ParkingRequest request;
+        private final ConnectionToClient client;
+        private final long startNanos;
+        
+        Task(ParkingRequest request, ConnectionToClient client, long startNanos) {
+            this.request = request;
+            this.client = client;
+            this.startNanos = startNanos;
+        }
+        
+        public ParkingRequest getRequest() { return request; }
+        public ConnectionToClient getClient() { return client; }
+        public long getStartNanos() { return startNanos; }
+    }
+    
+    private final Map<ParkingRequestType, Integer> levels = new EnumMap<>(ParkingRequestType.class);
+    private final List<ArrayDeque<Task>> queues;
+    private final long[] dispatched;
+    private final long agingNanos;
+    private final int threadCount;
+    private final Handler handler;
+    private final List<Thread> workers = new ArrayList<>();
+    
+    private int queued;
+    private long promoted; // Taken ahead of a more urgent request because they had waited longer
+    private long maxWaitNanos;
+    private boolean closed;
+    
+    public RequestScheduler(List<ParkingRequestType> priorities, int threadCount, long agingMillis, Handler handler) {
+        for (ParkingRequestType type : priorities) {
+            levels.putIfAbsent(type, levels.size());
+        }
+        int last = levels.size();
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            levels.putIfAbsent(type, last);
+        }
+        
+        queues = new ArrayList<>(last + 1);
+        for (int level = 0; level <= last; level++) {
+            queues.add(new ArrayDeque<>());
+        }
+        dispatched = new long[ParkingRequestType.values().length];
+        this.agingNanos = Math.max(1, agingMillis) * 1_000_000;
+        this.threadCount = Math.max(1, threadCount);
+        this.handler = handler;
+    }
+    
+    /**
+     * Create a scheduler configured by -Dparking.scheduler.* system properties
+     */
+    public static RequestScheduler fromSystemProperties(Handler handler) {
+        List<ParkingRequestType> priorities = new ArrayList<>();
+        for (String name : System.getProperty("parking.scheduler.priorities", DEFAULT_PRIORITIES).split(",")) {
+            if (!name.isBlank()) {
+                priorities.add(ParkingRequestType.valueOf(name.trim().toUpperCase()));
+            }
+        }
+        return new RequestScheduler(
+            priorities,
+            Integer.getInteger("parking.scheduler.threads", Math.max(2, Runtime.getRuntime().availableProcessors() / 2)),
+            Long.getLong("parking.scheduler.agingMillis", 50),
+            handler
+        );
+    }
+    
+    public synchronized void start() {
+        if (!workers.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < threadCount; i++) {
+            Thread worker = new Thread(this::runWorker, "parking-request-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+    
+    /**
+     * Queue a request for the workers
+     *
+     * @return false if the scheduler is closed
+     */
+    public synchronized boolean submit(ParkingRequest request, ConnectionToClient client, long startNanos) {
+        if (closed) {
+            return false;
+        }
+        queues.get(levels.get(request.getRequestType())).addLast(new Task(request, client, startNanos));
+        queued++;
+        notify();
+        return true;
+    }
+    
+    /**
+     * Take the request with the best aged priority: its level minus one per agingMillis waited.
+     * Queue heads are the longest waiting of their level, so only they need comparing.
+     */
+    private synchronized Task take() throws InterruptedException {
+        while (true) {
+            if (closed) {
+                return null;
+            }
+            
+            long now = System.nanoTime();
+            int best = -1;
+            long bestPriority = Long.MAX_VALUE;
+            int mostUrgent = -1;
+            for (int level = 0; level < queues.size(); level++) {
+                Task head = queues.get(level).peekFirst();
+                if (head == null) {
+                    continue;
+                }
+                if (mostUrgent < 0) {
+                    mostUrgent = level;
+                }
+                long priority = level - (now - head.startNanos) / agingNanos;
+                if (priority < bestPriority) {
+                    best = level;
+                    bestPriority = priority;
+                }
+            }
+            
+            if (best >= 0) {
+                Task task = queues.get(best).pollFirst();
+                queued--;
+                dispatched[task.request.getRequestType().ordinal()]++;
+                if (best != mostUrgent) {
+                    promoted++;
+                }
+                maxWaitNanos = Math.max(maxWaitNanos, now - task.startNanos);
+                return task;
+            }
+            wait();
+        }
+    }
+    
+    private void runWorker() {
+        while (true) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                return;
+            }
+            
+            try {
+                handler.handle(task.request, task.client, task.startNanos);
+            } catch (Exception e) {
+                System.err.println("Error handling " + task.request.getRequestType() + " request: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Stop the workers after the requests they are running
+     *
+     * @return the requests that were still queued, to be answered by the caller
+     */
+    public List<Task> close() {
+        List<Task> pending = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (ArrayDeque<Task> queue : queues) {
+                pending.addAll(queue);
+                queue.clear();
+            }
+            queued = 0;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return pending;
+    }
+    
+    public synchronized int getQueuedCount() { return queued; }
+    
+    public synchronized String getFormattedStatus() {
+        StringBuilder sb = new StringBuilder(String.format("Scheduler: %d workers, %d queued, %d taken early by aging, max wait %.1fms, dispatched",
+                                                           threadCount, queued, promoted, maxWaitNanos / 1_000_000.0));
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            sb.append(String.format(" %s(p%d)=%d", type, levels.get(type), dispatched[type.ordinal()]));
+        }
+        return sb.toString();
+    }
+}
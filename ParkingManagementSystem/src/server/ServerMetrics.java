@@ -0,0 +1,223 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import common.*;
+import parking.util.LatencyHistogram;
+import parking.util.QueryListener;
+import parking.util.SlowQueryLog;
+
+/**
+ * Runtime metrics for the parking server: request latency per type, JDBC timings per statement,
+ * response send times, connected clients, in-flight requests and error rates.
+ * Exposed through JMX and the #METRICS command.
+ */
+public class ServerMetrics implements ServerMetricsMBean, QueryListener {
+    
+    public static final String OBJECT_NAME = "parking:type=ServerMetrics";
+    
+    private final IntSupplier connectedClients;
+    private final Map<ParkingRequestType, LatencyHistogram> requestLatencies = new EnumMap<>(ParkingRequestType.class);
+    private final Map<ParkingRequestType, AtomicLong> requestErrors = new EnumMap<>(ParkingRequestType.class);
+    private final Map<String, QueryTiming> queryTimings = new ConcurrentHashMap<>();
+    private final SlowQueryLog slowQueryLog = SlowQueryLog.fromSystemProperties();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong totalErrors = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    
+    public ServerMetrics(IntSupplier connectedClients) {
+        this.connectedClients = connectedClients;
+        
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            requestLatencies.put(type, new LatencyHistogram());
+            requestErrors.put(type, new AtomicLong());
+        }
+    }
+    
+    /**
+     * Register this instance with the platform MBean server
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            mbeanServer.registerMBean(this, name);
+        } catch (Exception e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+    
+    // Recording
+    
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+    
+    /**
+     * Record a handled request; responses carrying a server error count as errors
+     */
+    public void requestCompleted(ParkingRequestType type, long elapsedNanos, ParkingResponse response) {
+        inFlight.decrementAndGet();
+        totalRequests.incrementAndGet();
+        
+        if (type == null) {
+            return;
+        }
+        
+        requestLatencies.get(type).recordNanos(elapsedNanos);
+        if (response == null || isServerError(response)) {
+            requestErrors.get(type).incrementAndGet();
+            totalErrors.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Record a request dropped without an answer because its client had stopped waiting
+     */
+    public void requestExpired(ParkingRequestType type, long elapsedNanos) {
+        inFlight.decrementAndGet();
+        totalRequests.incrementAndGet();
+        totalExpired.incrementAndGet();
+        
+        if (type != null) {
+            requestLatencies.get(type).recordNanos(elapsedNanos);
+        }
+    }
+    
+    public void responseSent(long elapsedNanos) {
+        sendLatency.recordNanos(elapsedNanos);
+    }
+    
+    @Override
+    public void queryExecuted(String sql, Object[] parameters, long elapsedNanos, boolean failed) {
+        QueryTiming timing = queryTimings.computeIfAbsent(sql, QueryTiming::new);
+        timing.latency.recordNanos(elapsedNanos);
+        if (failed) {
+            timing.failures.incrementAndGet();
+        }
+        slowQueryLog.queryExecuted(sql, parameters, elapsedNanos, failed);
+    }
+    
+    private static boolean isServerError(ParkingResponse response) {
+        return !response.isSuccess() && response.getMessage() != null &&
+               response.getMessage().startsWith("Server error");
+    }
+    
+    // MBean attributes
+    
+    public int getConnectedClients() { return connectedClients.getAsInt(); }
+    public int getInFlightRequests() { return inFlight.get(); }
+    public long getTotalRequests() { return totalRequests.get(); }
+    public long getTotalErrors() { return totalErrors.get(); }
+    public long getExpiredRequests() { return totalExpired.get(); }
+    
+    public double getErrorRate() {
+        long total = totalRequests.get();
+        return total > 0 ? (double) totalErrors.get() / total * 100 : 0;
+    }
+    
+    public String[] getRequestLatencies() {
+        List<String> lines = new ArrayList<>();
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            lines.add(String.format("%-18s errors=%d %s", type, requestErrors.get(type).get(),
+                                    requestLatencies.get(type).getFormattedSummary()));
+        }
+        return lines.toArray(new String[0]);
+    }
+    
+    public String getResponseSendLatency() {
+        return sendLatency.getFormattedSummary();
+    }
+    
+    public String[] getQueryTimings() {
+        List<QueryTiming> timings = new ArrayList<>(queryTimings.values());
+        timings.sort(Comparator.comparingLong((QueryTiming t) -> t.latency.getPercentileMicros(99)).reversed());
+        
+        List<String> lines = new ArrayList<>();
+        for (QueryTiming timing : timings) {
+            lines.add(String.format("%s failures=%d | %s", timing.latency.getFormattedSummary(),
+                                    timing.failures.get(), timing.label));
+        }
+        return lines.toArray(new String[0]);
+    }
+    
+    public String[] getSlowQueries() {
+        return slowQueryLog.getSlowQueries();
+    }
+    
+    public void resetStatistics() {
+        for (ParkingRequestType type : ParkingRequestType.values()) {
+            requestLatencies.get(type).reset();
+            requestErrors.get(type).set(0);
+        }
+        queryTimings.clear();
+        sendLatency.reset();
+        totalRequests.set(0);
+        totalErrors.set(0);
+        totalExpired.set(0);
+    }
+    
+    /**
+     * Get a multi-line report for the #METRICS command
+     */
+    public String getFormattedReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("METRICS: clients=%d inFlight=%d requests=%d errors=%d (%.2f%%) expired=%d%n",
+                                getConnectedClients(), getInFlightRequests(), getTotalRequests(),
+                                getTotalErrors(), getErrorRate(), getExpiredRequests()));
+        
+        sb.append("Requests:\n");
+        for (String line : getRequestLatencies()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        
+        sb.append("Response send: ").append(getResponseSendLatency()).append('\n');
+        
+        sb.append("Queries:\n");
+        for (String line : getQueryTimings()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Get the slowest recent statements for the #SLOWQUERIES command
+     */
+    public String getFormattedSlowQueries() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SLOW QUERIES (threshold ").append(slowQueryLog.getThresholdMillis()).append("ms):\n");
+        for (String line : getSlowQueries()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Timings for one SQL statement text
+     */
+    private static class QueryTiming {
+        final String label;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong failures = new AtomicLong();
+        
+        QueryTiming(String sql) {
+            String normalized = sql.trim().replaceAll("\\s+", " ");
+            this.label = normalized.length() > 100 ? normalized.substring(0, 100) + "..." : normalized;
+        }
+    }
+}
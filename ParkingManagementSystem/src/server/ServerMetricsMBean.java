@@ -0,0 +1,40 @@
+package server;
+
+/**
+ * JMX management interface for the parking server metrics
+ * Registered as parking:type=ServerMetrics
+ */
+public interface ServerMetricsMBean {
+    int getConnectedClients();
+    int getInFlightRequests();
+    long getTotalRequests();
+    long getTotalErrors();
+    
+    /**
+     * Requests dropped unanswered because their client's deadline had passed
+     */
+    long getExpiredRequests();
+    double getErrorRate();
+    
+    /**
+     * Latency summary per ParkingRequestType, one entry per type
+     */
+    String[] getRequestLatencies();
+    
+    /**
+     * Time spent serializing and writing responses to clients
+     */
+    String getResponseSendLatency();
+    
+    /**
+     * Latency summary per SQL statement, slowest p99 first
+     */
+    String[] getQueryTimings();
+    
+    /**
+     * Slowest recent statements with their bound parameters, slowest first
+     */
+    String[] getSlowQueries();
+    
+    void resetStatistics();
+}